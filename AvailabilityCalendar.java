@@ -0,0 +1,236 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps track of which days every car is booked, by rentals and by future reservations.
+// Days are epoch-days and every range is [start, end): the end day itself is free again.
+//
+// Each car has its own calendar of non-overlapping bookings sorted by start day, so checking a
+// range for a clash is one floor lookup, O(log n). For fleet-wide questions like "which SUVs are
+// free from the 10th to the 14th", each car type also keeps a bitmap of booked car ordinals per
+// day; the answer is all cars of that type minus the OR of the bitmaps for the days in the range.
+//
+// Registering a car only notes its type. Its own calendar is created the first time it is booked,
+// so a big fleet that was just loaded costs a byte per car here rather than a map per car.
+public class AvailabilityCalendar {
+    private static final Car.CarType[] TYPES = Car.CarType.values();
+
+    private final Map<Integer, CarCalendar> carCalendars = new ConcurrentHashMap<>();
+    private final Map<Car.CarType, TypeCalendar> typeCalendars = new EnumMap<>(Car.CarType.class);
+    private volatile byte[] typeByOrdinal = new byte[16]; // Type ordinal + 1, or 0 for a car never registered.
+    private volatile long firstKnownDay = Long.MIN_VALUE; // Days before this have been forgotten.
+
+    public AvailabilityCalendar() {
+        for (Car.CarType type : Car.CarType.values()) {
+            typeCalendars.put(type, new TypeCalendar());
+        }
+    }
+
+    // Adds a car (by ordinal) to its type. Re-registering an ordinal with a different type moves it.
+    public void register(int ordinal, Car car) {
+        registerAll(new int[] {ordinal}, Collections.singletonList(car));
+    }
+
+    // Adds a batch of cars, given by ordinal, to their types.
+    public synchronized void registerAll(int[] ordinals, List<Car> batch) {
+        byte[] types = typeByOrdinal;
+        int highest = -1;
+        for (int ordinal : ordinals) {
+            highest = Math.max(highest, ordinal);
+        }
+        if (highest >= types.length) {
+            types = Arrays.copyOf(types, Math.max(highest + 1, types.length * 2));
+        }
+        for (int i = 0; i < ordinals.length; i++) {
+            int ordinal = ordinals[i];
+            Car.CarType type = batch.get(i).getType();
+            if (types[ordinal] == 0) {
+                types[ordinal] = (byte) (type.ordinal() + 1);
+                typeCalendars.get(type).add(ordinal, null);
+            } else if (types[ordinal] != type.ordinal() + 1) {
+                moveToType(ordinal, TYPES[types[ordinal] - 1], type);
+                types[ordinal] = (byte) (type.ordinal() + 1);
+            }
+        }
+        typeByOrdinal = types; // Volatile write publishes the types to calendarOf.
+    }
+
+    // Moves a car that changed type, along with any bookings it has, to the new type's calendar.
+    private void moveToType(int ordinal, Car.CarType from, Car.CarType to) {
+        CarCalendar calendar = carCalendars.get(ordinal);
+        if (calendar == null) {
+            typeCalendars.get(from).remove(ordinal, null);
+            typeCalendars.get(to).add(ordinal, null);
+            return;
+        }
+        synchronized (calendar) {
+            typeCalendars.get(calendar.type).remove(ordinal, calendar.bookings);
+            calendar.type = to;
+            typeCalendars.get(to).add(ordinal, calendar.bookings);
+        }
+    }
+
+    // The car's own calendar, created the first time it is needed.
+    private CarCalendar calendarOf(int ordinal) {
+        CarCalendar calendar = carCalendars.get(ordinal);
+        if (calendar != null) {
+            return calendar;
+        }
+        synchronized (this) { // Holds off registerAll, so the type can't change while the calendar is made.
+            byte[] types = typeByOrdinal;
+            if (ordinal >= types.length || types[ordinal] == 0) {
+                throw new IllegalArgumentException("Car " + ordinal + " is not in the calendar");
+            }
+            return carCalendars.computeIfAbsent(ordinal, o -> new CarCalendar(TYPES[types[o] - 1]));
+        }
+    }
+
+    // Books the car for [start, end) on behalf of the holder (a Rental or a Reservation).
+    // Returns false, and books nothing, if the range is empty or any day in it is already taken.
+    public boolean tryBook(int ordinal, long start, long end, Object holder) {
+        if (end <= start) {
+            return false; // An empty booking would block nothing and couldn't be told apart on release.
+        }
+        CarCalendar calendar = calendarOf(ordinal);
+        synchronized (calendar) {
+            Map.Entry<Long, Booking> before = calendar.bookings.floorEntry(end - 1);
+            if (before != null && before.getValue().end > start) {
+                return false;
+            }
+            calendar.bookings.put(start, new Booking(end, holder));
+            typeCalendars.get(calendar.type).mark(ordinal, start, end, true);
+            return true;
+        }
+    }
+
+    // Releases the holder's booking that starts on the given day. Returns false if there was none.
+    public boolean release(int ordinal, long start, Object holder) {
+        CarCalendar calendar = carCalendars.get(ordinal);
+        if (calendar == null) {
+            return false; // Never booked.
+        }
+        synchronized (calendar) {
+            Booking booking = calendar.bookings.get(start);
+            if (booking == null || booking.holder != holder) {
+                return false;
+            }
+            calendar.bookings.remove(start);
+            typeCalendars.get(calendar.type).mark(ordinal, start, booking.end, false);
+            return true;
+        }
+    }
+
+    // True if the car has nothing booked in [start, end). A range starting on a forgotten day is
+    // never free: those days can't be booked any more, whatever was on them.
+    public boolean isFree(int ordinal, long start, long end) {
+        if (start < firstKnownDay) {
+            return false;
+        }
+        CarCalendar calendar = carCalendars.get(ordinal);
+        if (calendar == null) {
+            return true; // Never booked.
+        }
+        synchronized (calendar) {
+            Map.Entry<Long, Booking> before = calendar.bookings.floorEntry(end - 1);
+            return before == null || before.getValue().end <= start;
+        }
+    }
+
+    // Ordinals of every car of the type with nothing booked in [start, end). None for a range starting
+    // on a forgotten day, whose bitmaps are gone and would otherwise make booked cars look free.
+    public BitSet freeCars(Car.CarType type, long start, long end) {
+        if (start < firstKnownDay) {
+            return new BitSet();
+        }
+        return typeCalendars.get(type).free(start, end);
+    }
+
+    // Drops the per-day bitmaps for days before the given one; from then on ranges starting before it
+    // are never reported free. RentalManager calls this once a day, from its overdue tracker's first
+    // tick of the day.
+    public synchronized void forgetDaysBefore(long day) {
+        firstKnownDay = Math.max(firstKnownDay, day);
+        for (TypeCalendar calendar : typeCalendars.values()) {
+            calendar.forgetDaysBefore(day);
+        }
+    }
+
+    // One booking in a car's calendar: it runs from its key (the start day) up to "end".
+    private static class Booking {
+        private final long end;
+        private final Object holder;
+
+        private Booking(long end, Object holder) {
+            this.end = end;
+            this.holder = holder;
+        }
+    }
+
+    // A single car's bookings, sorted by start day. Guarded by its own monitor.
+    private static class CarCalendar {
+        private final TreeMap<Long, Booking> bookings = new TreeMap<>();
+        private Car.CarType type;
+
+        private CarCalendar(Car.CarType type) {
+            this.type = type;
+        }
+    }
+
+    // Which cars of one type exist, and which of them are booked on each day.
+    private static class TypeCalendar {
+        private final BitSet cars = new BitSet();
+        private final TreeMap<Long, BitSet> bookedByDay = new TreeMap<>();
+
+        private synchronized void add(int ordinal, TreeMap<Long, Booking> existingBookings) {
+            cars.set(ordinal);
+            if (existingBookings != null) {
+                for (Map.Entry<Long, Booking> booking : existingBookings.entrySet()) {
+                    mark(ordinal, booking.getKey(), booking.getValue().end, true);
+                }
+            }
+        }
+
+        private synchronized void remove(int ordinal, TreeMap<Long, Booking> existingBookings) {
+            cars.clear(ordinal);
+            if (existingBookings == null) {
+                return;
+            }
+            for (Map.Entry<Long, Booking> booking : existingBookings.entrySet()) {
+                mark(ordinal, booking.getKey(), booking.getValue().end, false);
+            }
+        }
+
+        private synchronized void mark(int ordinal, long start, long end, boolean booked) {
+            for (long day = start; day < end; day++) {
+                if (booked) {
+                    bookedByDay.computeIfAbsent(day, d -> new BitSet()).set(ordinal);
+                } else {
+                    BitSet bookedCars = bookedByDay.get(day);
+                    if (bookedCars != null) {
+                        bookedCars.clear(ordinal);
+                        if (bookedCars.isEmpty()) {
+                            bookedByDay.remove(day);
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized BitSet free(long start, long end) {
+            BitSet free = (BitSet) cars.clone();
+            for (BitSet booked : bookedByDay.subMap(start, end).values()) {
+                free.andNot(booked);
+            }
+            return free;
+        }
+
+        private synchronized void forgetDaysBefore(long day) {
+            bookedByDay.headMap(day).clear();
+        }
+    }
+}
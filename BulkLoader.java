@@ -0,0 +1,379 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Streams cars or customers from a file into a RentalManager (or a sharded one) in batches, for
+// onboarding a whole branch at once instead of adding records one by one.
+//
+// Two formats are understood, picked by the file extension:
+//   .csv              a header line, then one record per line. Fields may be "quoted" (with "" for a quote).
+//                     cars:      carId,brand,model,basePricePerDay,type
+//                     customers: customerId,name,contactPhone
+//   .ndjson / .jsonl  one flat JSON object per line with the same field names, e.g.
+//                     {"carId":"C100","brand":"Kia","model":"Seltos","basePricePerDay":4200,"type":"SUV"}
+//
+// Rows with a missing or bad field, or an ID already in the file or in the manager, are skipped
+// and reported; everything else is added with addCars/addCustomers one batch at a time.
+public class BulkLoader {
+    private static final String[] CAR_FIELDS = {"carId", "brand", "model", "basePricePerDay", "type"};
+    private static final String[] CUSTOMER_FIELDS = {"customerId", "name", "contactPhone"};
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final CarRentalService manager;
+    private final int batchSize;
+
+    public BulkLoader(CarRentalService manager, int batchSize) {
+        this.manager = manager;
+        this.batchSize = batchSize;
+    }
+
+    public Result loadCars(Path file) throws IOException {
+        Result result = new Result();
+        Set<String> seenIds = new HashSet<>();
+        List<Car> batch = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        read(file, CAR_FIELDS, result, fields -> {
+            Car.CarType type;
+            double price;
+            try {
+                type = Car.CarType.valueOf(fields[4].trim().toUpperCase(Locale.ROOT));
+                price = Double.parseDouble(fields[3].trim());
+            } catch (IllegalArgumentException e) {
+                return "bad price or car type";
+            }
+            if (!Double.isFinite(price) || price <= 0) { // parseDouble also accepts "NaN" and "Infinity".
+                return "price must be a positive number";
+            }
+            if (manager.findCarById(fields[0]) != null || !seenIds.add(fields[0])) {
+                return "duplicate car ID " + fields[0];
+            }
+            batch.add(new Car(fields[0], fields[1], fields[2], price, type));
+            if (batch.size() == batchSize) {
+                manager.addCars(batch);
+                batch.clear();
+            }
+            return null;
+        });
+        if (!batch.isEmpty()) {
+            manager.addCars(batch);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    public Result loadCustomers(Path file) throws IOException {
+        Result result = new Result();
+        Set<String> seenIds = new HashSet<>();
+        List<Customer> batch = new ArrayList<>(batchSize);
+        long start = System.nanoTime();
+        read(file, CUSTOMER_FIELDS, result, fields -> {
+            if (manager.findCustomerById(fields[0]) != null || !seenIds.add(fields[0])) {
+                return "duplicate customer ID " + fields[0];
+            }
+            batch.add(new Customer(fields[0], fields[1], fields[2]));
+            if (batch.size() == batchSize) {
+                manager.addCustomers(batch);
+                batch.clear();
+            }
+            return null;
+        });
+        if (!batch.isEmpty()) {
+            manager.addCustomers(batch);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // --- Reading ---
+
+    // Turns one row's fields (in the order of the field names) into a record.
+    // Returns null if the row was accepted, or why it was rejected.
+    private interface RowHandler {
+        String accept(String[] fields);
+    }
+
+    private void read(Path file, String[] fieldNames, Result result, RowHandler handler) throws IOException {
+        boolean json = file.getFileName().toString().matches("(?i).*\\.(ndjson|jsonl)");
+        String[] fields = new String[fieldNames.length]; // Reused for every row.
+        StringBuilder token = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(Channels.newReader(
+                FileChannel.open(file, StandardOpenOption.READ), StandardCharsets.UTF_8.newDecoder(), -1), 1 << 16)) {
+            int[] columns = json ? null : headerColumns(reader.readLine(), fieldNames, token);
+            int lineNumber = json ? 0 : 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.rowsRead++;
+                Arrays.fill(fields, null);
+                boolean parsed = json ? parseJsonLine(line, fieldNames, fields, token) : parseCsvLine(line, columns, fields, token);
+                String problem;
+                if (!parsed) {
+                    problem = "could not parse the line";
+                } else if (hasMissingField(fields)) {
+                    problem = "a field is missing or empty";
+                } else {
+                    problem = handler.accept(fields);
+                }
+                if (problem == null) {
+                    result.rowsLoaded++;
+                } else {
+                    result.reject("line " + lineNumber + ": " + problem);
+                }
+            }
+        }
+    }
+
+    private static boolean hasMissingField(String[] fields) {
+        for (String field : fields) {
+            if (field == null || field.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Works out which CSV column holds each field, so the columns can come in any order.
+    private static int[] headerColumns(String header, String[] fieldNames, StringBuilder token) throws IOException {
+        if (header == null) {
+            throw new IOException("The CSV file is empty; expected a header line with " + String.join(",", fieldNames));
+        }
+        List<String> names = new ArrayList<>();
+        splitCsv(header, names, token);
+        int[] columns = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            columns[i] = -1;
+            for (int column = 0; column < names.size(); column++) {
+                if (names.get(column).trim().equalsIgnoreCase(fieldNames[i])) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] < 0) {
+                throw new IOException("The CSV header has no \"" + fieldNames[i] + "\" column");
+            }
+        }
+        return columns;
+    }
+
+    private static boolean parseCsvLine(String line, int[] columns, String[] fields, StringBuilder token) {
+        int column = 0;
+        int i = 0;
+        while (i <= line.length()) {
+            token.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        return false; // Unterminated quote.
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            token.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        token.append(c);
+                    }
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    return false;
+                }
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = line.length();
+                }
+                token.append(line, i, end);
+                i = end;
+            }
+            for (int f = 0; f < columns.length; f++) {
+                if (columns[f] == column) {
+                    fields[f] = token.toString().trim();
+                }
+            }
+            column++;
+            i++; // Skip the comma.
+        }
+        return true;
+    }
+
+    private static void splitCsv(String line, List<String> out, StringBuilder token) {
+        int i = 0;
+        while (i <= line.length()) {
+            int end = line.indexOf(',', i);
+            if (end < 0) {
+                end = line.length();
+            }
+            token.setLength(0);
+            token.append(line, i, end);
+            out.add(token.toString().replace("\"", ""));
+            i = end + 1;
+        }
+    }
+
+    // Reads a flat JSON object of string and number values. Unknown keys are ignored.
+    private static boolean parseJsonLine(String line, String[] fieldNames, String[] fields, StringBuilder token) {
+        int i = skipSpaces(line, 0);
+        if (i >= line.length() || line.charAt(i) != '{') {
+            return false;
+        }
+        i = skipSpaces(line, i + 1);
+        if (i < line.length() && line.charAt(i) == '}') {
+            return true;
+        }
+        while (i < line.length()) {
+            i = readJsonString(line, i, token);
+            if (i < 0) {
+                return false;
+            }
+            int field = indexOf(fieldNames, token);
+            i = skipSpaces(line, i);
+            if (i >= line.length() || line.charAt(i) != ':') {
+                return false;
+            }
+            i = skipSpaces(line, i + 1);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i = readJsonString(line, i, token);
+                if (i < 0) {
+                    return false;
+                }
+            } else {
+                token.setLength(0);
+                while (i < line.length() && ",} \t".indexOf(line.charAt(i)) < 0) {
+                    token.append(line.charAt(i++));
+                }
+            }
+            if (field >= 0) {
+                fields[field] = token.toString();
+            }
+            i = skipSpaces(line, i);
+            if (i >= line.length()) {
+                return false;
+            }
+            char c = line.charAt(i);
+            if (c == '}') {
+                return true;
+            }
+            if (c != ',') {
+                return false;
+            }
+            i = skipSpaces(line, i + 1);
+        }
+        return false;
+    }
+
+    // Reads a quoted JSON string starting at i into the token. Returns the index after the closing quote, or -1.
+    private static int readJsonString(String line, int i, StringBuilder token) {
+        if (i >= line.length() || line.charAt(i) != '"') {
+            return -1;
+        }
+        token.setLength(0);
+        i++;
+        while (i < line.length()) {
+            char c = line.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c != '\\') {
+                token.append(c);
+                continue;
+            }
+            if (i >= line.length()) {
+                return -1;
+            }
+            char escaped = line.charAt(i++);
+            switch (escaped) {
+                case 'n': token.append('\n'); break;
+                case 't': token.append('\t'); break;
+                case 'r': token.append('\r'); break;
+                case 'b': token.append('\b'); break;
+                case 'f': token.append('\f'); break;
+                case 'u':
+                    if (i + 4 > line.length()) {
+                        return -1;
+                    }
+                    try {
+                        token.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                    i += 4;
+                    break;
+                default: token.append(escaped); // \" \\ \/
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(String[] names, CharSequence name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // What happened during one load.
+    public static class Result {
+        private long rowsRead;
+        private long rowsLoaded;
+        private long elapsedNanos;
+        private final List<String> errors = new ArrayList<>();
+
+        private void reject(String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getRowsLoaded() {
+            return rowsLoaded;
+        }
+
+        public long getRowsRejected() {
+            return rowsRead - rowsLoaded;
+        }
+
+        // The first few rejected rows and why they were rejected.
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowsRead * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Loaded %,d of %,d rows (%,d rejected) in %.2f s, %,.0f rows/sec",
+                    rowsLoaded, rowsRead, getRowsRejected(), elapsedNanos / 1e9, getRowsPerSecond());
+        }
+    }
+}
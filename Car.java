@@ -1,4 +1,9 @@
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 // Represents a car available for rent in the system.
+// Cars are kept small because a fleet can run into millions: brand and model names repeat across
+// thousands of cars, so each distinct name is stored once and a car only holds its int code, and the
+// price and availability are plain primitive fields.
 public class Car {
 
     // Enum to represent the type of car.
@@ -6,37 +11,51 @@ public class Car {
         SEDAN, SUV, HATCHBACK, SPORTS
     }
 
-    private String carId;
-    private String brand;
-    private String model;
-    private double basePricePerDay;
-    private boolean isAvailable;
-    private CarType type;
+    // Every brand and model name seen so far, each stored once and numbered by its code.
+    // This is one table for the whole process on purpose: a Car is built before (and apart from) any
+    // manager, and the same car may sit in several managers, so no per-manager table could decode it.
+    // The codes never leave the process (SnapshotFile writes the names with its own numbering), so
+    // nothing depends on which code a name gets. Names are never dropped, which is fine because they
+    // come from the catalogue of makes and models, not from the size of the fleet.
+    private static final OrdinalRegistry<String> NAMES = new OrdinalRegistry<>();
+    private static final AtomicIntegerFieldUpdater<Car> AVAILABLE =
+            AtomicIntegerFieldUpdater.newUpdater(Car.class, "available");
+
+    private final String carId;
+    private final int brandCode;
+    private final int modelCode;
+    private final long basePricePaise; // The price per day in whole paise, which is what pricing works with.
+    private final CarType type;
+    private volatile int available = 1; // 1 = available, 0 = rented. A new car is always available.
 
     public Car(String carId, String brand, String model, double basePricePerDay, CarType type) {
         this.carId = carId;
-        this.brand = brand;
-        this.model = model;
-        this.basePricePerDay = basePricePerDay;
-        this.isAvailable = true; // A new car is always available.
+        this.brandCode = codeOf(brand);
+        this.modelCode = codeOf(model);
+        this.basePricePaise = Math.round(basePricePerDay * 100);
         this.type = type;
     }
 
+    private static int codeOf(String name) {
+        int code = NAMES.ordinalOf(name);
+        return code >= 0 ? code : NAMES.register(name, name);
+    }
+
     // --- Getters ---
     public String getCarId() {
         return carId;
     }
 
     public String getBrand() {
-        return brand;
+        return NAMES.get(brandCode);
     }
 
     public String getModel() {
-        return model;
+        return NAMES.get(modelCode);
     }
 
     public boolean isAvailable() {
-        return isAvailable;
+        return available == 1;
     }
     
     public CarType getType() {
@@ -44,44 +63,36 @@ public class Car {
     }
 
     public double getBasePricePerDay() {
-        return basePricePerDay;
+        return basePricePaise / 100.0;
+    }
+
+    public long getBasePricePaise() {
+        return basePricePaise;
     }
 
     // Calculates the final rental price, applying any discounts or surcharges.
+    // The rules themselves live in PricingEngine.
     public double calculatePrice(int rentalDays) {
-        double currentPrice = basePricePerDay;
-
-        // Surcharge for sports cars.
-        if (this.type == CarType.SPORTS) {
-            currentPrice *= 1.20; // 20% surcharge.
-        }
-
-        double totalPrice = currentPrice * rentalDays;
-
-        // Discount for rentals longer than a week.
-        if (rentalDays > 7) {
-            totalPrice *= 0.90; // 10% discount.
-        }
-        
-        return totalPrice;
+        return PricingEngine.standard().quote(this, rentalDays) / 100.0;
     }
 
     // --- State Modifiers ---
     // Marks the car as rented (not available).
-    public void rent() {
-        isAvailable = false;
+    // This is a compare-and-set, so if two counters race for the same car only one of them gets true back.
+    public boolean rent() {
+        return AVAILABLE.compareAndSet(this, 1, 0);
     }
 
-    // Marks the car as returned (available).
-    public void returnCar() {
-        isAvailable = true;
+    // Marks the car as returned (available). Returns false if the car was not rented.
+    public boolean returnCar() {
+        return AVAILABLE.compareAndSet(this, 0, 1);
     }
 
     // Provides a simple summary of the car's details.
     @Override
     public String toString() {
         return String.format("ID: %-5s | %-12s %-15s | Type: %-10s | Price/Day: ₹%.2f", 
-                                  carId, brand, model, type, basePricePerDay);
+                                  carId, getBrand(), getModel(), type, getBasePricePerDay());
     }
 }
 
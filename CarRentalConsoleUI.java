@@ -1,14 +1,20 @@
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
 import java.util.concurrent.atomic.AtomicInteger;
 
 // Handles all console-based user interactions for the Car Rental System.
 public class CarRentalConsoleUI {
-    private RentalManager rentalManager;
+    private static final int PAGE_SIZE = 20; // Rows shown before asking whether to go on.
+    private static final int CUSTOMER_MATCHES = 10; // Customers shown for a name or phone search.
+
+    private CarRentalService rentalManager;
     private Scanner scanner;
+    private PriceBreakdown priceBreakdown = new PriceBreakdown(); // Reused for every quote.
+    private ConsoleRenderer renderer = new ConsoleRenderer(PAGE_SIZE);
 
-    public CarRentalConsoleUI(RentalManager rentalManager) {
+    public CarRentalConsoleUI(CarRentalService rentalManager) {
         this.rentalManager = rentalManager;
         this.scanner = new Scanner(System.in);
     }
@@ -76,8 +82,9 @@ public class CarRentalConsoleUI {
 
         String confirm = getStringInput("\nConfirm rental (Y/N): ");
         if (confirm.equalsIgnoreCase("Y")) {
-            rentalManager.rentCar(selectedCar, customer, rentalDays);
-            System.out.println("\nCar rented successfully!");
+            if (rentalManager.rentCar(selectedCar, customer, rentalDays)) {
+                System.out.println("\nCar rented successfully!");
+            }
         } else {
             System.out.println("\nRental canceled.");
         }
@@ -87,7 +94,7 @@ public class CarRentalConsoleUI {
         System.out.println("\n== Return a Car ==");
         displayRentedCars();
 
-        if (rentalManager.getAllRentedCars().isEmpty()) return;
+        if (rentalManager.countRented() == 0) return;
 
         String carId = getStringInput("Enter the car ID you want to return: ");
         Car carToReturn = rentalManager.findCarById(carId);
@@ -97,24 +104,21 @@ public class CarRentalConsoleUI {
             return;
         }
 
-        rentalManager.returnCar(carToReturn);
-        System.out.println("Car returned successfully!");
+        if (rentalManager.returnCar(carToReturn)) {
+            System.out.println("Car returned successfully!");
+        }
     }
 
     private void handleSearchAndListAvailableCars() {
         String query = getStringInput("Enter search term (brand, model, type) or leave blank to list all: ");
         List<Car> cars = rentalManager.searchAvailableCars(query);
-        System.out.println("\n-- Available Cars --");
-        if (cars.isEmpty()) {
-            System.out.println("No cars found matching your criteria.");
-        } else {
-            cars.forEach(System.out::println);
-        }
+        listPaged("Available Cars", cars.size(), cars.iterator(), ConsoleRenderer::car,
+                "No cars found matching your criteria.");
     }
 
     private void handleViewRentalHistory() {
         System.out.println("\n== View Rental History ==");
-        displayAllCustomers();
+        findCustomers();
         String customerId = getStringInput("Enter Customer ID to view history: ");
         Customer customer = rentalManager.findCustomerById(customerId);
 
@@ -123,13 +127,9 @@ public class CarRentalConsoleUI {
             return;
         }
 
-        List<CompletedRental> history = rentalManager.getCustomerRentalHistory(customerId);
-        System.out.println("\n-- Rental History for " + customer.getName() + " --");
-        if (history.isEmpty()) {
-            System.out.println("No rental history found for this customer.");
-        } else {
-            history.forEach(System.out::println);
-        }
+        listPaged("Rental History for " + customer.getName() + ", most recent first",
+                rentalManager.countCustomerRentals(customerId), rentalManager.customerRentalHistoryIterator(customerId),
+                ConsoleRenderer::completedRental, "No rental history found for this customer.");
     }
 
     private void handleAddCar() {
@@ -161,83 +161,108 @@ public class CarRentalConsoleUI {
 
     private void handleAddCustomer() {
         System.out.println("\n== Add a New Customer ==");
-        // Generate a simple new customer ID.
-        String customerId = "CUS" + (rentalManager.getAllCustomers().size() + 1);
         String name = getStringInput("Enter customer name: ");
         String phone = getStringInput("Enter customer phone: ");
-        rentalManager.addCustomer(new Customer(customerId, name, phone));
-        System.out.println("Customer " + name + " added with ID: " + customerId);
+        // The manager picks a new customer ID that isn't already taken.
+        Customer customer = rentalManager.registerNewCustomer(name, phone);
+        System.out.println("Customer " + name + " added with ID: " + customer.getCustomerId());
     }
 
     // --- Helper & Display Methods ---
 
     private void displayPriceBreakdown(Car car, int days) {
+        rentalManager.getPricingEngine().breakdown(car, days, priceBreakdown);
         System.out.println("\n== Price Breakdown ==");
         System.out.printf("Car: %s %s (%s)\n", car.getBrand(), car.getModel(), car.getType());
-        System.out.printf("Base Price per Day: ₹%.2f\n", car.getBasePricePerDay());
+        System.out.printf("Base Price per Day: ₹%s\n", PricingEngine.rupees(priceBreakdown.getBasePricePerDay()));
 
-        if (car.getType() == Car.CarType.SPORTS) {
-            System.out.printf("Sports Car Surcharge (20%%): +₹%.2f/day\n", car.getBasePricePerDay() * 0.20);
+        if (priceBreakdown.getSurchargePerDay() != 0) {
+            System.out.printf("%s Surcharge (%s%%): +₹%s/day\n", car.getType(),
+                    PricingEngine.percent(priceBreakdown.getSurchargeBasisPoints()),
+                    PricingEngine.rupees(priceBreakdown.getSurchargePerDay()));
         }
 
-        double subtotal = car.calculatePrice(days);
-        if (days > 7) {
-            double originalPrice = car.getBasePricePerDay() * (car.getType() == Car.CarType.SPORTS ? 1.2 : 1.0) * days;
-            System.out.printf("Subtotal for %d days: ₹%.2f\n", days, originalPrice);
-            System.out.printf("Long-Term Discount (10%%): -₹%.2f\n", originalPrice - subtotal);
+        if (priceBreakdown.getDiscount() != 0) {
+            System.out.printf("Subtotal for %d days: ₹%s\n", days, PricingEngine.rupees(priceBreakdown.getSubtotal()));
+            System.out.printf("Long-Term Discount (%s%%): -₹%s\n",
+                    PricingEngine.percent(priceBreakdown.getDiscountBasisPoints()),
+                    PricingEngine.rupees(priceBreakdown.getDiscount()));
         }
 
         System.out.println("--------------------------");
-        System.out.printf("Total Price for %d days: ₹%.2f\n", days, subtotal);
+        System.out.printf("Total Price for %d days: ₹%s\n", days, PricingEngine.rupees(priceBreakdown.getTotal()));
     }
     
     private Customer getCustomerForRental() {
         String choice = getStringInput("Are you a (N)ew or (E)xisting customer? ");
         if (choice.equalsIgnoreCase("E")) {
-            displayAllCustomers();
+            findCustomers();
             String customerId = getStringInput("Enter your Customer ID: ");
             Customer customer = rentalManager.findCustomerById(customerId);
             if(customer == null) System.out.println("Customer ID not found.");
             return customer;
         } else {
-            // Auto-generate a new ID for simplicity.
-            String customerId = "CUS" + (rentalManager.getAllCustomers().size() + 1);
             String name = getStringInput("Enter your name: ");
             String phone = getStringInput("Enter your phone number: ");
-            Customer newCustomer = new Customer(customerId, name, phone);
-            rentalManager.addCustomer(newCustomer);
-            System.out.println("New customer created with ID: " + customerId);
+            Customer newCustomer = rentalManager.registerNewCustomer(name, phone);
+            System.out.println("New customer created with ID: " + newCustomer.getCustomerId());
             return newCustomer;
         }
     }
     
     private void displayAvailableCars() {
-        System.out.println("\n-- Available Cars --");
-        List<Car> availableCars = rentalManager.getAllAvailableCars();
-        if (availableCars.isEmpty()) {
-            System.out.println("No cars are currently available.");
-        } else {
-            availableCars.forEach(System.out::println);
-        }
+        listPaged("Available Cars", rentalManager.countAvailable(), rentalManager.availableCarsIterator(),
+                ConsoleRenderer::car, "No cars are currently available.");
     }
 
     private void displayRentedCars() {
-        System.out.println("\n-- Rented Cars --");
-        List<Car> rentedCars = rentalManager.getAllRentedCars();
-        if (rentedCars.isEmpty()) {
-            System.out.println("No cars are currently rented.");
-        } else {
-            rentedCars.forEach(System.out::println);
+        listPaged("Rented Cars", rentalManager.countRented(), rentalManager.rentedCarsIterator(),
+                ConsoleRenderer::car, "No cars are currently rented.");
+        List<Rental> overdue = rentalManager.getOverdueTracker().getOverdueRentals();
+        if (!overdue.isEmpty()) {
+            listPaged("Overdue, longest first", overdue.size(), overdue.iterator(), ConsoleRenderer::overdueRental, "");
+        }
+    }
+
+    // Shows the customers whose name or phone starts with what the user types, so they can pick out an ID.
+    // Leaving it blank lists everyone.
+    private void findCustomers() {
+        String query = getStringInput("Search customers by name or phone (blank to list all): ").trim();
+        if (query.isEmpty()) {
+            displayAllCustomers();
+            return;
         }
+        List<Customer> matches = rentalManager.searchCustomers(query, CUSTOMER_MATCHES);
+        listPaged("Best matches for \"" + query + "\"", matches.size(), matches.iterator(), ConsoleRenderer::customer,
+                "No customers match.");
     }
 
     private void displayAllCustomers() {
-        System.out.println("\n-- All Customers --");
-        List<Customer> customers = rentalManager.getAllCustomers();
-        if (customers.isEmpty()) {
-            System.out.println("No customers registered yet.");
-        } else {
-            customers.forEach(System.out::println);
+        listPaged("All Customers", rentalManager.countCustomers(), rentalManager.customersIterator(),
+                ConsoleRenderer::customer, "No customers registered yet.");
+    }
+
+    // Shows a listing a page at a time under a header with its row count, asking before each further
+    // page. The iterator is the cursor: it is only read as far as the pages actually shown.
+    private <T> void listPaged(String title, int count, Iterator<? extends T> cursor,
+                               ConsoleRenderer.RowFormat<T> format, String emptyMessage) {
+        renderer.header(title, count);
+        if (!cursor.hasNext()) {
+            renderer.line(emptyMessage);
+            renderer.flush();
+            return;
+        }
+        int shown = 0;
+        while (true) {
+            shown += renderer.page(cursor, format);
+            if (!cursor.hasNext()) {
+                return;
+            }
+            String answer = getStringInput(String.format("-- Showing %,d of %,d. Press Enter for more, or Q to stop: ",
+                    shown, Math.max(shown, count)));
+            if (answer.trim().equalsIgnoreCase("Q")) {
+                return;
+            }
         }
     }
 
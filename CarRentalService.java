@@ -0,0 +1,100 @@
+import java.util.Iterator;
+import java.util.List;
+
+// The everyday operations of the rental system: the fleet, customers, renting and returning, and
+// looking things up. RentalManager is one branch's worth of all this; ShardedRentalManager spreads
+// the same API over many RentalManagers, so the console (or anything else) can use either.
+public interface CarRentalService {
+
+    // --- Adding data ---
+
+    void addCar(Car car);
+
+    void addCars(List<Car> batch);
+
+    void addCustomer(Customer customer);
+
+    void addCustomers(List<Customer> batch);
+
+    Customer registerNewCustomer(String name, String contactPhone);
+
+    // --- Renting and returning ---
+
+    boolean rentCar(Car car, Customer customer, int days);
+
+    // Like rentCar, but hands back the new rental (with the price it was quoted at), or null.
+    Rental rent(Car car, Customer customer, int days);
+
+    boolean returnCar(Car car);
+
+    PricingEngine getPricingEngine();
+
+    void setPricingEngine(PricingEngine pricingEngine);
+
+    long quote(Car car, int days);
+
+    // Notices rentals that are past due (see OverdueTracker).
+    OverdueTracker getOverdueTracker();
+
+    // Publishes cars and customers added and cars rented and returned (see RentalEventStream).
+    void setEventStream(RentalEventStream events);
+
+    RentalEventStream getEventStream();
+
+    // --- Finding data ---
+
+    Car findCarById(String carId);
+
+    Customer findCustomerById(String customerId);
+
+    Rental findActiveRental(String carId);
+
+    List<Rental> getActiveRentalsForCustomer(String customerId);
+
+    List<Car> getAllCars();
+
+    List<Car> getAllAvailableCars();
+
+    List<Car> getAllRentedCars();
+
+    List<Car> getAvailableCarsByType(Car.CarType type);
+
+    List<Car> searchAvailableCars(String query);
+
+    List<Customer> getAllCustomers();
+
+    // Type-ahead search over customers' names and phone numbers, best matches first.
+    List<Customer> searchCustomers(String query, int limit);
+
+    int countAvailable();
+
+    int countAvailable(Car.CarType type);
+
+    int countRented();
+
+    int countRented(Car.CarType type);
+
+    int countCustomers();
+
+    // --- Walking the fleet and customers without copying them into a list ---
+
+    Iterator<Car> availableCarsIterator();
+
+    Iterator<Car> rentedCarsIterator();
+
+    Iterator<Customer> customersIterator();
+
+    // --- Rental history ---
+
+    List<CompletedRental> getCustomerRentalHistory(String customerId);
+
+    Iterator<CompletedRental> customerRentalHistoryIterator(String customerId);
+
+    double getCustomerTotalSpent(String customerId);
+
+    List<CompletedRental> getCarRentalHistory(String carId);
+
+    int countCustomerRentals(String customerId);
+
+    int getRentalHistorySize();
+}
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// An inverted index from the words in a car's brand, model and type to car ordinals.
+// A search term matches a car when it appears anywhere inside one of the car's words, the same
+// "contains" rule the old full scan used. Since the vocabulary of brands and models is tiny compared
+// to the fleet, a term is resolved against the vocabulary and the matching postings are combined as bitsets.
+public class CarSearchIndex {
+    private final Map<String, BitSet> postings = new HashMap<>(); // word -> car ordinals
+    private final List<String[]> wordsByOrdinal = new ArrayList<>();
+    // The words for each brand, model and type seen so far. Thousands of cars share a model, so they
+    // share one array, and the words are only worked out once per model.
+    private final Map<String, String[]> wordsByModel = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Indexes a car under its ordinal, replacing whatever was indexed for that ordinal before.
+    public void add(int ordinal, Car car) {
+        String[] words = wordsOf(car);
+        lock.writeLock().lock();
+        try {
+            addLocked(ordinal, words);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Indexes a batch of cars (ordinals[i] belongs to cars.get(i)) under a single write lock,
+    // so searches are held up once per batch instead of once per car.
+    public void addAll(int[] ordinals, List<Car> cars) {
+        String[][] words = new String[cars.size()][];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordsOf(cars.get(i));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < words.length; i++) {
+                addLocked(ordinals[i], words[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(int ordinal, String[] words) {
+        while (wordsByOrdinal.size() <= ordinal) {
+            wordsByOrdinal.add(null);
+        }
+        String[] oldWords = wordsByOrdinal.set(ordinal, words);
+        if (oldWords != null) {
+            for (String word : oldWords) {
+                BitSet cars = postings.get(word);
+                cars.clear(ordinal);
+                if (cars.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+        for (String word : words) {
+            postings.computeIfAbsent(word, w -> new BitSet()).set(ordinal);
+        }
+    }
+
+    // Returns the ordinals of every car that contains ALL of the (lowercase) search terms.
+    // Empty terms are ignored, so an all-empty query matches every car.
+    public BitSet match(String[] terms) {
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (String term : terms) {
+                if (term.isEmpty()) {
+                    continue;
+                }
+                BitSet termMatches = new BitSet();
+                for (Map.Entry<String, BitSet> entry : postings.entrySet()) {
+                    if (entry.getKey().contains(term)) {
+                        termMatches.or(entry.getValue());
+                    }
+                }
+                if (result == null) {
+                    result = termMatches;
+                } else {
+                    result.and(termMatches);
+                }
+                if (result.isEmpty()) {
+                    return result; // No point looking at the remaining terms.
+                }
+            }
+            if (result == null) {
+                result = new BitSet();
+                result.set(0, wordsByOrdinal.size());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Splits a car's details into the lowercase words we index.
+    private String[] wordsOf(Car car) {
+        String details = car.getBrand() + " " + car.getModel() + " " + car.getType().toString();
+        return wordsByModel.computeIfAbsent(details,
+                key -> new LinkedHashSet<>(List.of(key.toLowerCase().trim().split("\\s+"))).toArray(new String[0]));
+    }
+}
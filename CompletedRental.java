@@ -3,12 +3,15 @@ import java.time.format.DateTimeFormatter;
 
 // Represents a completed rental for historical records.
 public class CompletedRental {
+    // Formatters are immutable and thread-safe, so one is shared by every record.
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
     private Car car;
     private Customer customer;
     private LocalDate rentalDate;
     private LocalDate returnDate;
     private int daysRented;
-    private double finalPrice;
+    private long finalPricePaise;
 
     // Creates a historical record from an active rental.
     public CompletedRental(Rental rental) {
@@ -17,7 +20,18 @@ public class CompletedRental {
         this.daysRented = rental.getDays();
         this.rentalDate = rental.getRentalDate();
         this.returnDate = LocalDate.now(); // Assumes the car is returned today.
-        this.finalPrice = car.calculatePrice(daysRented);
+        this.finalPricePaise = rental.isQuoted() ? rental.getQuotedPricePaise() : PricingEngine.standard().quote(car, daysRented);
+    }
+
+    // Creates a historical record with known dates and price (in paise), e.g. when restoring saved state.
+    public CompletedRental(Car car, Customer customer, LocalDate rentalDate, LocalDate returnDate,
+                           int daysRented, long finalPricePaise) {
+        this.car = car;
+        this.customer = customer;
+        this.rentalDate = rentalDate;
+        this.returnDate = returnDate;
+        this.daysRented = daysRented;
+        this.finalPricePaise = finalPricePaise;
     }
 
     // --- Getters ---
@@ -28,18 +42,37 @@ public class CompletedRental {
     public Customer getCustomer() {
         return customer;
     }
+
+    public LocalDate getRentalDate() {
+        return rentalDate;
+    }
+
+    public LocalDate getReturnDate() {
+        return returnDate;
+    }
+
+    public int getDaysRented() {
+        return daysRented;
+    }
+
+    public double getFinalPrice() {
+        return finalPricePaise / 100.0;
+    }
+
+    public long getFinalPricePaise() {
+        return finalPricePaise;
+    }
     
     // Provides a formatted summary for rental history logs.
     @Override
     public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         return String.format("Car: %-25s | Rented by: %-15s | Rented: %s | Returned: %s | Days: %-3d | Total: ₹%.2f",
                 car.getBrand() + " " + car.getModel(),
                 customer.getName(),
-                rentalDate.format(formatter),
-                returnDate.format(formatter),
+                rentalDate.format(DATE_FORMAT),
+                returnDate.format(DATE_FORMAT),
                 daysRented,
-                finalPrice);
+                getFinalPrice());
     }
 }
 
@@ -0,0 +1,147 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+
+// Writes listings (cars, customers, rental history) to the console.
+//
+// Every row is built in one reused StringBuilder, padded by hand instead of through String.format,
+// and goes into a large buffered writer, so the terminal gets the text in big chunks rather than a
+// line at a time. Long listings come a page at a time: each page is read off an iterator the caller
+// passes in, which stays on the next row (the cursor) until the next page is asked for, so nothing
+// is copied into a list first.
+public class ConsoleRenderer {
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    // Appends one item to the row being built.
+    public interface RowFormat<T> {
+        void append(StringBuilder row, T item);
+    }
+
+    private final Writer out;
+    private final int pageSize;
+    private final StringBuilder row = new StringBuilder(160); // Reused for every row.
+
+    // Writes to standard output, pageSize rows at a time.
+    public ConsoleRenderer(int pageSize) {
+        this(new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_CHARS), pageSize);
+    }
+
+    public ConsoleRenderer(Writer out, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("A page needs at least one row");
+        }
+        this.out = out;
+        this.pageSize = pageSize;
+    }
+
+    // Writes a listing's header with its row count, e.g. "-- Available Cars (1,234) --".
+    public void header(String title, long count) {
+        row.setLength(0);
+        row.append('\n').append("-- ").append(title).append(" (").append(String.format("%,d", count)).append(") --");
+        writeRow();
+    }
+
+    public void line(String text) {
+        row.setLength(0);
+        row.append(text);
+        writeRow();
+    }
+
+    // Writes up to one page of rows from the cursor, flushes, and returns how many rows were written.
+    public <T> int page(Iterator<? extends T> cursor, RowFormat<T> format) {
+        int written = 0;
+        while (written < pageSize && cursor.hasNext()) {
+            row.setLength(0);
+            format.append(row, cursor.next());
+            writeRow();
+            written++;
+        }
+        flush();
+        return written;
+    }
+
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRow() {
+        try {
+            out.append(row).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // --- Row formats, laid out like the toString() of each class ---
+
+    public static void car(StringBuilder row, Car car) {
+        row.append("ID: ");
+        padded(row, car.getCarId(), 5).append(" | ");
+        padded(row, car.getBrand(), 12).append(' ');
+        padded(row, car.getModel(), 15).append(" | Type: ");
+        padded(row, car.getType().name(), 10).append(" | Price/Day: ₹");
+        rupees(row, car.getBasePricePaise());
+    }
+
+    public static void customer(StringBuilder row, Customer customer) {
+        row.append("ID: ");
+        padded(row, customer.getCustomerId(), 8).append(" | Name: ");
+        padded(row, customer.getName(), 20).append(" | Phone: ").append(customer.getContactPhone());
+    }
+
+    public static void completedRental(StringBuilder row, CompletedRental rental) {
+        int start = row.append("Car: ").length();
+        row.append(rental.getCar().getBrand()).append(' ').append(rental.getCar().getModel());
+        padTo(row, start, 25).append(" | Rented by: ");
+        padded(row, rental.getCustomer().getName(), 15).append(" | Rented: ");
+        CompletedRental.DATE_FORMAT.formatTo(rental.getRentalDate(), row);
+        row.append(" | Returned: ");
+        CompletedRental.DATE_FORMAT.formatTo(rental.getReturnDate(), row);
+        start = row.append(" | Days: ").length();
+        padTo(row.append(rental.getDaysRented()), start, 3).append(" | Total: ₹");
+        rupees(row, rental.getFinalPricePaise());
+    }
+
+    public static void overdueRental(StringBuilder row, Rental rental) {
+        row.append("Car: ");
+        padded(row, rental.getCar().getCarId(), 5).append(" | Rented by: ");
+        padded(row, rental.getCustomer().getName(), 15).append(" (").append(rental.getCustomer().getContactPhone())
+                .append(") | Due: ");
+        CompletedRental.DATE_FORMAT.formatTo(rental.getDueDate(), row);
+        row.append(" | Days late: ").append(rental.getDueDate().until(LocalDate.now(), ChronoUnit.DAYS));
+    }
+
+    // --- Helpers ---
+
+    // Appends the value and pads it with spaces to the width, like "%-<width>s".
+    private static StringBuilder padded(StringBuilder row, String value, int width) {
+        int start = row.length();
+        return padTo(row.append(value), start, width);
+    }
+
+    private static StringBuilder padTo(StringBuilder row, int start, int width) {
+        for (int i = row.length() - start; i < width; i++) {
+            row.append(' ');
+        }
+        return row;
+    }
+
+    // Appends an amount in paise as rupees with two decimals, e.g. 250050 -> "2500.50".
+    private static void rupees(StringBuilder row, long paise) {
+        long abs = Math.abs(paise);
+        long fraction = abs % 100;
+        if (paise < 0) {
+            row.append('-');
+        }
+        row.append(abs / 100).append(fraction < 10 ? ".0" : ".").append(fraction);
+    }
+}
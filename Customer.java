@@ -1,13 +1,31 @@
 // Represents a customer in the car rental system.
+// An ordinary phone number (just digits, not starting with 0) is kept as a number rather than a
+// String, which saves a couple of objects per customer when there are millions of them.
 public class Customer {
-    private String customerId;
-    private String name;
-    private String contactPhone;
+    private static final long NO_NUMBER = -1;
+
+    private final String customerId;
+    private final String name;
+    private final long phoneNumber;  // The phone as a number, or NO_NUMBER if it isn't plain digits.
+    private final String phoneText;  // Only set when the phone can't be stored as a number.
 
     public Customer(String customerId, String name, String contactPhone) {
         this.customerId = customerId;
         this.name = name;
-        this.contactPhone = contactPhone;
+        this.phoneNumber = asNumber(contactPhone);
+        this.phoneText = phoneNumber == NO_NUMBER ? contactPhone : null;
+    }
+
+    private static long asNumber(String phone) {
+        if (phone == null || phone.isEmpty() || phone.length() > 18 || phone.charAt(0) == '0') {
+            return NO_NUMBER;
+        }
+        for (int i = 0; i < phone.length(); i++) {
+            if (phone.charAt(i) < '0' || phone.charAt(i) > '9') {
+                return NO_NUMBER;
+            }
+        }
+        return Long.parseLong(phone);
     }
 
     // --- Getters ---
@@ -18,15 +36,14 @@ public class Customer {
     public String getName() {
         return name;
     }
-    
+
     public String getContactPhone() {
-        return contactPhone;
+        return phoneNumber == NO_NUMBER ? phoneText : Long.toString(phoneNumber);
     }
 
     // Provides a simple summary of the customer.
     @Override
     public String toString() {
-        return String.format("ID: %-8s | Name: %-20s | Phone: %s", customerId, name, contactPhone);
+        return String.format("ID: %-8s | Name: %-20s | Phone: %s", customerId, name, getContactPhone());
     }
 }
-
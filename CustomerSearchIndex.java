@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// A type-ahead index over customers' names and phone numbers.
+//
+// Every word of a customer's name (lowercased) and the digits of their phone number become keys,
+// each paired with the customer's ordinal. The pairs are kept sorted in two plain arrays, so all the
+// keys starting with a prefix sit next to each other. A search counts each query word's keys with two
+// binary searches, then walks the keys of the word with the fewest, checking each customer against
+// the other words. For one word nearly every key walked is a match, so that is O(log n + k) for k
+// results. With more words the walk is O(log n + m), where m is the number of keys of the rarest
+// word: customers that miss the other words cost time, but the walk goes on until it has k matches
+// or runs out of keys, so a real match is never left out. There are no
+// per-entry objects beyond the key strings (and name words are shared between customers).
+//
+// New customers go into a small sorted side run, which is merged into the main arrays once it grows
+// past about the square root of their size; big batches are sorted and merged in directly. Searches
+// look at both. A customer re-added under the same ID with new details keeps their old keys, but
+// every match is checked against the customer's current details, so old keys never match wrongly.
+public class CustomerSearchIndex {
+    private static final int MIN_SIDE_RUN = 256;
+    private static final int NATIONAL_DIGITS = 10; // A phone number without its country code.
+    private static final Comparator<Entry> ENTRY_ORDER =
+            Comparator.comparing((Entry entry) -> entry.key).thenComparingInt(entry -> entry.ordinal);
+
+    private final OrdinalRegistry<Customer> customerOrdinals;
+    private final Map<String, String> nameWords = new HashMap<>(); // Each distinct name word, stored once.
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The main run and the side run, each sorted by key and then ordinal.
+    private String[] keys = new String[0];
+    private int[] ordinals = new int[0];
+    private String[] sideKeys = new String[MIN_SIDE_RUN];
+    private int[] sideOrdinals = new int[MIN_SIDE_RUN];
+    private int sideSize;
+
+    public CustomerSearchIndex(OrdinalRegistry<Customer> customerOrdinals) {
+        this.customerOrdinals = customerOrdinals;
+    }
+
+    public void add(int ordinal, Customer customer) {
+        addAll(new int[] {ordinal}, List.of(customer));
+    }
+
+    // Indexes a batch of customers (ordinals[i] belongs to customers.get(i)) under a single write lock.
+    public void addAll(int[] ordinals, List<Customer> customers) {
+        List<Entry> entries = new ArrayList<>(customers.size() * 3);
+        for (int i = 0; i < ordinals.length; i++) {
+            for (String key : keysOf(customers.get(i))) {
+                entries.add(new Entry(key, ordinals[i]));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (Entry entry : entries) {
+                if (!Character.isDigit(entry.key.charAt(0))) { // Phone numbers are nearly all different; not worth sharing.
+                    String shared = nameWords.putIfAbsent(entry.key, entry.key);
+                    if (shared != null) {
+                        entry.key = shared;
+                    }
+                }
+            }
+            if (entries.size() <= sideRunLimit()) {
+                for (Entry entry : entries) {
+                    insertIntoSideRun(entry.key, entry.ordinal);
+                }
+            } else {
+                entries.sort(ENTRY_ORDER);
+                String[] batchKeys = new String[entries.size()];
+                int[] batchOrdinals = new int[entries.size()];
+                for (int i = 0; i < batchKeys.length; i++) {
+                    batchKeys[i] = entries.get(i).key;
+                    batchOrdinals[i] = entries.get(i).ordinal;
+                }
+                mergeIntoMainRun(batchKeys, batchOrdinals, batchKeys.length);
+            }
+            if (sideSize >= sideRunLimit()) {
+                mergeIntoMainRun(sideKeys, sideOrdinals, sideSize);
+                sideSize = 0;
+                Arrays.fill(sideKeys, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Finds up to limit customers matching every word of the query. A word matches when it is the
+    // start of one of the customer's name words or of their phone number, so "pri sh" finds
+    // "Priya Sharma" and "98765" finds 9876543210. Matches come in the order of the keys the rarest
+    // query word matched, so exact and shorter words come before longer ones sharing the prefix.
+    public List<Customer> search(String query, int limit) {
+        List<Customer> result = new ArrayList<>();
+        String[] words = queryWords(query);
+        if (words.length == 0 || limit <= 0) {
+            return result;
+        }
+        Set<Integer> seen = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            String prefix = words[0];
+            int fewest = Integer.MAX_VALUE;
+            for (String word : words) {
+                int count = countWithPrefix(word);
+                if (count < fewest) {
+                    prefix = word;
+                    fewest = count;
+                }
+            }
+            int main = firstAtOrAfter(keys, ordinals.length, prefix);
+            int side = firstAtOrAfter(sideKeys, sideSize, prefix);
+            while (result.size() < limit) {
+                boolean mainMatches = main < keys.length && keys[main].startsWith(prefix);
+                boolean sideMatches = side < sideSize && sideKeys[side].startsWith(prefix);
+                int ordinal;
+                if (mainMatches && (!sideMatches || compare(keys[main], ordinals[main], sideKeys[side], sideOrdinals[side]) <= 0)) {
+                    ordinal = ordinals[main++];
+                } else if (sideMatches) {
+                    ordinal = sideOrdinals[side++];
+                } else {
+                    break;
+                }
+                Customer customer = customerOrdinals.get(ordinal);
+                if (seen.add(ordinal) && matchesAll(customer, words)) {
+                    result.add(customer);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // How many keys are indexed.
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keys.length + sideSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Keys ---
+
+    // A customer's keys: each distinct word of their name in lowercase, and the digits of their phone.
+    // A phone with a country code ("+91 98765 43210") is also keyed by its last ten digits, so it can
+    // be found with or without the code.
+    // Called for every candidate a search walks, so the name is split by hand rather than by a regex.
+    private static List<String> keysOf(Customer customer) {
+        List<String> keys = new ArrayList<>(3);
+        String name = customer.getName() == null ? "" : customer.getName().toLowerCase(Locale.ROOT);
+        int start = 0;
+        while (start < name.length()) {
+            int end = start;
+            while (end < name.length() && !Character.isWhitespace(name.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                String word = name.substring(start, end);
+                if (!keys.contains(word)) {
+                    keys.add(word);
+                }
+            }
+            start = end + 1;
+        }
+        String phone = digitsOf(customer.getContactPhone());
+        if (!phone.isEmpty() && !keys.contains(phone)) {
+            keys.add(phone);
+        }
+        if (phone.length() > NATIONAL_DIGITS) {
+            keys.add(phone.substring(phone.length() - NATIONAL_DIGITS));
+        }
+        return keys;
+    }
+
+    // Each candidate is checked once (search skips ordinals it has seen), so its keys are built once.
+    private static boolean matchesAll(Customer customer, String[] words) {
+        List<String> keys = keysOf(customer);
+        for (String word : words) {
+            boolean found = false;
+            for (String key : keys) {
+                if (key.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Lowercase words of the query; a word that looks like part of a phone number keeps only its digits.
+    private static String[] queryWords(String query) {
+        if (query == null) {
+            return new String[0];
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : query.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+            String digits = digitsOf(word);
+            if (!digits.isEmpty() && word.chars().noneMatch(Character::isLetter)) {
+                word = digits;
+            }
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static String digitsOf(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    // --- Sorted runs (the caller holds the lock) ---
+
+    private int sideRunLimit() {
+        return Math.max(MIN_SIDE_RUN, (int) Math.sqrt(keys.length));
+    }
+
+    private void insertIntoSideRun(String key, int ordinal) {
+        int at = sideSize;
+        while (at > 0 && compare(sideKeys[at - 1], sideOrdinals[at - 1], key, ordinal) > 0) {
+            at--;
+        }
+        if (sideSize == sideKeys.length) {
+            sideKeys = Arrays.copyOf(sideKeys, sideSize * 2);
+            sideOrdinals = Arrays.copyOf(sideOrdinals, sideSize * 2);
+        }
+        System.arraycopy(sideKeys, at, sideKeys, at + 1, sideSize - at);
+        System.arraycopy(sideOrdinals, at, sideOrdinals, at + 1, sideSize - at);
+        sideKeys[at] = key;
+        sideOrdinals[at] = ordinal;
+        sideSize++;
+    }
+
+    // Merges count sorted entries into the main run, building new arrays in one pass.
+    private void mergeIntoMainRun(String[] moreKeys, int[] moreOrdinals, int count) {
+        String[] mergedKeys = new String[keys.length + count];
+        int[] mergedOrdinals = new int[mergedKeys.length];
+        int main = 0;
+        int more = 0;
+        for (int out = 0; out < mergedKeys.length; out++) {
+            if (more == count || (main < keys.length && compare(keys[main], ordinals[main], moreKeys[more], moreOrdinals[more]) <= 0)) {
+                mergedKeys[out] = keys[main];
+                mergedOrdinals[out] = ordinals[main++];
+            } else {
+                mergedKeys[out] = moreKeys[more];
+                mergedOrdinals[out] = moreOrdinals[more++];
+            }
+        }
+        keys = mergedKeys;
+        ordinals = mergedOrdinals;
+    }
+
+    // How many keys, in both runs, start with the prefix.
+    private int countWithPrefix(String prefix) {
+        String end = prefix + Character.MAX_VALUE; // Sorts after every key starting with the prefix.
+        return firstAtOrAfter(keys, keys.length, end) - firstAtOrAfter(keys, keys.length, prefix)
+                + firstAtOrAfter(sideKeys, sideSize, end) - firstAtOrAfter(sideKeys, sideSize, prefix);
+    }
+
+    // The position of the first key that is not less than the prefix.
+    private static int firstAtOrAfter(String[] keys, int size, String prefix) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(String key, int ordinal, String otherKey, int otherOrdinal) {
+        int byKey = key.compareTo(otherKey);
+        return byKey != 0 ? byKey : Integer.compare(ordinal, otherOrdinal);
+    }
+
+    // One key of one customer, while a batch is being sorted.
+    private static class Entry {
+        private String key;
+        private final int ordinal;
+
+        private Entry(String key, int ordinal) {
+            this.key = key;
+            this.ordinal = ordinal;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Raises prices for car types that are nearly sold out.
+//
+// Every so often a background thread reads how much of each CarType is rented, looks up the surcharge
+// for that utilization in a table compiled from the tiers (one entry per whole percent), and bakes
+// the surcharges into a new PricingEngine built from the base rules. The engine is immutable and is
+// handed to the manager with setPricingEngine, a single volatile write, so quotes in rentCar and the
+// console's price breakdown stay one volatile read and never wait for or repeat this work. Nothing is
+// swapped while the surcharges stay the same.
+//
+// While this runs it owns the manager's pricing engine; change the base rules here, not on the manager.
+public class DemandPricing {
+    private static final int TYPES = Car.CarType.values().length;
+
+    private final CarRentalService service;
+    private final PricingEngine base;
+    private final TreeMap<Integer, Integer> tiers = new TreeMap<>(); // Utilization % -> surcharge (basis points).
+    private volatile int[] surchargeByPercent = new int[101];
+    private volatile int[] currentSurcharges = new int[TYPES]; // Per CarType ordinal; never changed once published.
+    private PricingEngine published; // The engine last handed to the manager.
+    private ScheduledExecutorService scheduler;
+
+    public DemandPricing(CarRentalService service, PricingEngine base) {
+        this.service = service;
+        this.base = base;
+    }
+
+    // The standard rules plus +10% from 70% rented, +25% from 85% and +50% from 95%.
+    public static DemandPricing standard(CarRentalService service) {
+        return new DemandPricing(service, PricingEngine.standard())
+                .tier(70, 1_000)
+                .tier(85, 2_500)
+                .tier(95, 5_000);
+    }
+
+    // Adds a surcharge (in basis points) for car types with at least the given percentage rented.
+    public synchronized DemandPricing tier(int minUtilizationPercent, int surchargeBasisPoints) {
+        tiers.put(Math.max(0, Math.min(100, minUtilizationPercent)), surchargeBasisPoints);
+        int[] table = new int[101];
+        for (Map.Entry<Integer, Integer> tier : tiers.entrySet()) {
+            // Tiers are visited lowest first, so each one covers the percentages up to the next.
+            Arrays.fill(table, tier.getKey(), table.length, tier.getValue());
+        }
+        surchargeByPercent = table;
+        return this;
+    }
+
+    // Works out the surcharges from the current counts and, if any changed, swaps in a new engine.
+    // Returns the engine now in use.
+    public synchronized PricingEngine recompute() {
+        int[] table = surchargeByPercent;
+        int[] surcharges = new int[TYPES];
+        for (Car.CarType type : Car.CarType.values()) {
+            int rented = service.countRented(type);
+            int fleet = rented + service.countAvailable(type);
+            int percent = fleet == 0 ? 0 : (int) (100L * rented / fleet);
+            surcharges[type.ordinal()] = table[percent];
+        }
+        if (published == null || service.getPricingEngine() != published || !Arrays.equals(surcharges, currentSurcharges)) {
+            published = base.withDemandSurcharges(surcharges);
+            currentSurcharges = surcharges;
+            service.setPricingEngine(published);
+        }
+        return published;
+    }
+
+    // The demand surcharge (in basis points) now applied to a car type.
+    public int getSurchargeBasisPoints(Car.CarType type) {
+        return currentSurcharges[type.ordinal()];
+    }
+
+    // --- Background updates ---
+
+    // Recomputes now and then every periodMillis on a background thread.
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        recompute();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "demand-pricing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                recompute();
+            } catch (RuntimeException e) {
+                System.out.println("Error: Demand pricing update failed: " + e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops the updates and goes back to the base rules.
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        service.setPricingEngine(base);
+        published = null;
+        currentSurcharges = new int[TYPES];
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Builds realistic-looking synthetic data (cars, customers and rental history) of any size,
+// for benchmarks and for trying the console out with a big fleet.
+// The same seed always gives the same data.
+public class FleetGenerator {
+    private static final String[][] MODELS = {
+        {"Maruti Suzuki", "Swift", "HATCHBACK"}, {"Maruti Suzuki", "Baleno", "HATCHBACK"},
+        {"Maruti Suzuki", "Ciaz", "SEDAN"}, {"Hyundai", "Creta", "SUV"}, {"Hyundai", "Verna", "SEDAN"},
+        {"Hyundai", "i20", "HATCHBACK"}, {"Tata", "Nexon", "SUV"}, {"Tata", "Altroz", "HATCHBACK"},
+        {"Mahindra", "Thar", "SUV"}, {"Mahindra", "XUV700", "SUV"}, {"Honda", "City", "SEDAN"},
+        {"Honda", "Amaze", "SEDAN"}, {"Kia", "Seltos", "SUV"}, {"Kia", "Sonet", "SUV"},
+        {"Toyota", "Innova Crysta", "SUV"}, {"Toyota", "Fortuner", "SUV"}, {"Porsche", "911", "SPORTS"},
+        {"BMW", "Z4", "SPORTS"}, {"Skoda", "Slavia", "SEDAN"}, {"Volkswagen", "Virtus", "SEDAN"}
+    };
+    private static final String[] FIRST_NAMES = {
+        "Priya", "Rohan", "Anjali", "Arjun", "Sneha", "Vikram", "Kavya", "Aditya", "Meera", "Rahul",
+        "Divya", "Karan", "Pooja", "Siddharth", "Neha", "Amit", "Ishita", "Varun", "Riya", "Manish"
+    };
+    private static final String[] LAST_NAMES = {
+        "Sharma", "Kumar", "Singh", "Patel", "Reddy", "Iyer", "Gupta", "Nair", "Mehta", "Das",
+        "Joshi", "Rao", "Verma", "Chopra", "Banerjee", "Pillai", "Malhotra", "Kapoor", "Bose", "Menon"
+    };
+
+    // Builds a fleet with IDs C0, C1, ...
+    public static List<Car> cars(int size, long seed) {
+        Random random = new Random(seed);
+        List<Car> fleet = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String[] model = MODELS[random.nextInt(MODELS.length)];
+            double price = 2000 + random.nextInt(60) * 100;
+            fleet.add(new Car("C" + i, model[0], model[1], price, Car.CarType.valueOf(model[2])));
+        }
+        return fleet;
+    }
+
+    // Builds customers with IDs CUS0, CUS1, ...
+    public static List<Customer> customers(int size, long seed) {
+        Random random = new Random(seed);
+        List<Customer> customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String phone = (6 + random.nextInt(4)) + String.format("%09d", random.nextInt(1_000_000_000));
+            customers.add(new Customer("CUS" + i, name, phone));
+        }
+        return customers;
+    }
+
+    // Fills an empty manager with a fleet, its customers and some finished rentals.
+    // The history is made by renting random cars to random customers and returning them straight away.
+    public static void populate(CarRentalService manager, int fleetSize, int customerCount, int historySize, long seed) {
+        List<Car> fleet = cars(fleetSize, seed);
+        List<Customer> customers = customers(customerCount, seed + 1);
+        fleet.forEach(manager::addCar);
+        customers.forEach(manager::addCustomer);
+
+        Random random = new Random(seed + 2);
+        for (int i = 0; i < historySize && !fleet.isEmpty() && !customers.isEmpty(); i++) {
+            Car car = fleet.get(random.nextInt(fleet.size()));
+            if (manager.rentCar(car, customers.get(random.nextInt(customers.size())), 1 + random.nextInt(14))) {
+                manager.returnCar(car);
+            }
+        }
+    }
+}
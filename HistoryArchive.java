@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Columnar storage for completed rentals that lives outside the Java heap.
+//
+// Rows are stored in fixed-size blocks, and inside a block each column is a run of fixed-width
+// primitives: car ordinal, customer ordinal, rental epoch-day, return epoch-day, days rented
+// (all ints) and the final price in paise (a long). A block is either a MappedByteBuffer over a file
+// or, without a file, a direct buffer. Reads go straight to the buffers, so nothing is copied or
+// turned into objects until a caller asks for a CompletedRental.
+//
+// The archive is a place to park history off the heap, not a durable store: the file is started
+// from scratch when opened, and durability comes from the RentalJournal.
+public class HistoryArchive implements AutoCloseable {
+    private static final int ROWS_PER_BLOCK = 1 << 16;
+    private static final int CAR_COLUMN = 0;
+    private static final int CUSTOMER_COLUMN = CAR_COLUMN + 4 * ROWS_PER_BLOCK;
+    private static final int RENTAL_DAY_COLUMN = CUSTOMER_COLUMN + 4 * ROWS_PER_BLOCK;
+    private static final int RETURN_DAY_COLUMN = RENTAL_DAY_COLUMN + 4 * ROWS_PER_BLOCK;
+    private static final int DAYS_COLUMN = RETURN_DAY_COLUMN + 4 * ROWS_PER_BLOCK;
+    private static final int PRICE_COLUMN = DAYS_COLUMN + 4 * ROWS_PER_BLOCK;
+    private static final int BLOCK_BYTES = PRICE_COLUMN + 8 * ROWS_PER_BLOCK;
+
+    private final FileChannel channel; // Null for an archive kept in direct memory.
+    private volatile ByteBuffer[] blocks = new ByteBuffer[0];
+    private volatile int size;
+
+    private HistoryArchive(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    // An archive held in direct (off-heap) memory.
+    public static HistoryArchive inMemory() {
+        return new HistoryArchive(null);
+    }
+
+    // An archive memory-mapped from a file. Any old content of the file is discarded.
+    public static HistoryArchive mapped(Path file) throws IOException {
+        return new HistoryArchive(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // Appends a row and returns its row number. Readers see the row once size() includes it.
+    public synchronized int append(int carOrdinal, int customerOrdinal, long rentalEpochDay, long returnEpochDay,
+                                   int daysRented, long finalPricePaise) {
+        int row = size;
+        int slot = row % ROWS_PER_BLOCK;
+        ByteBuffer block = row / ROWS_PER_BLOCK < blocks.length ? blocks[row / ROWS_PER_BLOCK] : addBlock();
+        block.putInt(CAR_COLUMN + 4 * slot, carOrdinal);
+        block.putInt(CUSTOMER_COLUMN + 4 * slot, customerOrdinal);
+        block.putInt(RENTAL_DAY_COLUMN + 4 * slot, (int) rentalEpochDay);
+        block.putInt(RETURN_DAY_COLUMN + 4 * slot, (int) returnEpochDay);
+        block.putInt(DAYS_COLUMN + 4 * slot, daysRented);
+        block.putLong(PRICE_COLUMN + 8 * slot, finalPricePaise);
+        size = row + 1; // Volatile write publishes the row.
+        return row;
+    }
+
+    // Appends count rows given as columns, copying each column into the blocks in bulk, and returns
+    // the row number of the first one. Readers see the rows once size() includes them.
+    public synchronized int appendAll(int count, int[] carOrdinals, int[] customerOrdinals, int[] rentalEpochDays,
+                                      int[] returnEpochDays, int[] daysRented, long[] finalPricesPaise) {
+        int first = size;
+        int done = 0;
+        while (done < count) {
+            int row = first + done;
+            int slot = row % ROWS_PER_BLOCK;
+            int length = Math.min(count - done, ROWS_PER_BLOCK - slot);
+            ByteBuffer block = row / ROWS_PER_BLOCK < blocks.length ? blocks[row / ROWS_PER_BLOCK] : addBlock();
+            block.duplicate().position(CAR_COLUMN + 4 * slot).asIntBuffer().put(carOrdinals, done, length);
+            block.duplicate().position(CUSTOMER_COLUMN + 4 * slot).asIntBuffer().put(customerOrdinals, done, length);
+            block.duplicate().position(RENTAL_DAY_COLUMN + 4 * slot).asIntBuffer().put(rentalEpochDays, done, length);
+            block.duplicate().position(RETURN_DAY_COLUMN + 4 * slot).asIntBuffer().put(returnEpochDays, done, length);
+            block.duplicate().position(DAYS_COLUMN + 4 * slot).asIntBuffer().put(daysRented, done, length);
+            block.duplicate().position(PRICE_COLUMN + 8 * slot).asLongBuffer().put(finalPricesPaise, done, length);
+            done += length;
+        }
+        size = first + count; // Volatile write publishes the rows.
+        return first;
+    }
+
+    private ByteBuffer addBlock() {
+        ByteBuffer block;
+        if (channel == null) {
+            block = ByteBuffer.allocateDirect(BLOCK_BYTES);
+        } else {
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, (long) blocks.length * BLOCK_BYTES, BLOCK_BYTES);
+                block = mapped;
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not grow the history archive", e);
+            }
+        }
+        ByteBuffer[] grown = Arrays.copyOf(blocks, blocks.length + 1);
+        grown[grown.length - 1] = block;
+        blocks = grown;
+        return block;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // --- Column reads ---
+
+    public int carOrdinal(int row) {
+        return block(row).getInt(CAR_COLUMN + 4 * (row % ROWS_PER_BLOCK));
+    }
+
+    public int customerOrdinal(int row) {
+        return block(row).getInt(CUSTOMER_COLUMN + 4 * (row % ROWS_PER_BLOCK));
+    }
+
+    public int rentalEpochDay(int row) {
+        return block(row).getInt(RENTAL_DAY_COLUMN + 4 * (row % ROWS_PER_BLOCK));
+    }
+
+    public int returnEpochDay(int row) {
+        return block(row).getInt(RETURN_DAY_COLUMN + 4 * (row % ROWS_PER_BLOCK));
+    }
+
+    public int daysRented(int row) {
+        return block(row).getInt(DAYS_COLUMN + 4 * (row % ROWS_PER_BLOCK));
+    }
+
+    public long finalPricePaise(int row) {
+        return block(row).getLong(PRICE_COLUMN + 8 * (row % ROWS_PER_BLOCK));
+    }
+
+    private ByteBuffer block(int row) {
+        return blocks[row / ROWS_PER_BLOCK];
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// Hands out new IDs such as "CUS1", "CUS2", ... in O(1), without ever counting existing records.
+//
+// Numbers come from one shared atomic sequence, one at a time, so IDs are handed out in order and
+// none are lost when a thread goes away. A single getAndIncrement is cheap next to the customer
+// insert that follows it, so there is nothing to gain from handing threads blocks of their own.
+//
+// When several nodes share one journal, give each node its own index: node k of n only uses the
+// numbers k+1, k+1+n, k+1+2n, ..., so nodes never hand out the same ID without talking to each other.
+public class IdAllocator {
+    private final String prefix;
+    private final int nodeIndex;
+    private final int nodeCount;
+    private final AtomicLong nextSlot = new AtomicLong(); // The next slot to hand out.
+
+    public IdAllocator(String prefix) {
+        this(prefix, 0, 1);
+    }
+
+    public IdAllocator(String prefix, int nodeIndex, int nodeCount) {
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount) {
+            throw new IllegalArgumentException("Bad ID allocator settings");
+        }
+        this.prefix = prefix;
+        this.nodeIndex = nodeIndex;
+        this.nodeCount = nodeCount;
+    }
+
+    // Returns a new ID. IDs that were observe()d before the call are never handed out; one observed
+    // at the same moment can still clash, so callers should insert with putIfAbsent and ask again.
+    public String next() {
+        return prefix + numberOf(nextSlot.getAndIncrement());
+    }
+
+    // Tells the allocator an ID is in use (e.g. one typed in, loaded or replayed), so the sequence
+    // moves past it. IDs with another prefix or a non-numeric tail can't clash and are ignored.
+    public void observe(String id) {
+        if (id == null || !id.startsWith(prefix) || id.length() == prefix.length() || id.length() - prefix.length() > 18) {
+            return;
+        }
+        long number = 0;
+        for (int i = prefix.length(); i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return;
+            }
+            number = number * 10 + (c - '0');
+        }
+        // The first slot whose number is above the observed one.
+        long slot = Math.max(0, (number - 1 - nodeIndex) / nodeCount + 1);
+        if (nextSlot.get() < slot) {
+            nextSlot.accumulateAndGet(slot, Math::max);
+        }
+    }
+
+    private long numberOf(long slot) {
+        return slot * nodeCount + nodeIndex + 1;
+    }
+}
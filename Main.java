@@ -1,14 +1,127 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 // The main entry point for the Car Rental System application.
 public class Main {
 
     // The main method that launches the application.
-    public static void main(String[] args) {
-        RentalManager rentalManager = new RentalManager();
-        setupInitialData(rentalManager); // Load initial cars and customers.
+    // Run "java Main --data <directory>" to keep everything in a journal between runs,
+    // and "java Main --http <port>" to also serve the HTTP/JSON API while the console is open.
+    // Without --data, everything is saved to a snapshot file on exit and loaded from it on the next start
+    // ("fleet.snapshot" unless "--snapshot <file>" names another); the sample data is only used the first time.
+    // "java Main --synthetic <cars>" starts with a generated fleet of that size instead of the sample data.
+    // "--import-cars <file>" and "--import-customers <file>" bulk-load a CSV or NDJSON file before the console opens.
+    // "--demand-pricing <seconds>" raises prices for nearly sold-out car types, rechecking every so many seconds.
+    public static void main(String[] args) throws IOException {
+        RentalManager rentalManager;
+        RentalJournal journal = null;
+        Path dataDirectory = dataDirectoryFrom(args);
+        Path snapshotFile = null;
+        if (dataDirectory == null) {
+            rentalManager = new RentalManager();
+            snapshotFile = Paths.get(argumentOrDefault(args, "--snapshot", "fleet.snapshot"));
+        } else {
+            // Rental history is parked in a memory-mapped file, and whatever was saved last time
+            // is loaded back from the journal before the console opens.
+            Files.createDirectories(dataDirectory);
+            rentalManager = new RentalManager(HistoryArchive.mapped(dataDirectory.resolve("history-archive.bin")));
+            journal = RentalJournal.open(dataDirectory, RentalJournal.FsyncPolicy.EVERY_COMMIT, 10, rentalManager);
+            journal.startPeriodicCheckpoints(rentalManager, 300);
+        }
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            long start = System.nanoTime();
+            SnapshotFile.Loading loading = SnapshotFile.load(snapshotFile, rentalManager);
+            System.out.printf("Opened %d cars, %d customers and %d past rentals from %s in %d ms; the rest loads in the background.%n",
+                    loading.getCarCount(), loading.getCustomerCount(), loading.getHistorySize(), snapshotFile,
+                    (System.nanoTime() - start) / 1_000_000);
+        } else if (journal == null || journal.isEmpty()) {
+            String syntheticFleetSize = argumentAfter(args, "--synthetic");
+            if (syntheticFleetSize != null) {
+                int fleetSize = Integer.parseInt(syntheticFleetSize);
+                FleetGenerator.populate(rentalManager, fleetSize, Math.max(1, fleetSize / 10), fleetSize, 1);
+            } else {
+                setupInitialData(rentalManager); // Load initial cars and customers.
+            }
+        }
+
+        BulkLoader loader = new BulkLoader(rentalManager, 5_000);
+        String carFile = argumentAfter(args, "--import-cars");
+        if (carFile != null) {
+            printImport("Cars", loader.loadCars(Paths.get(carFile)));
+        }
+        String customerFile = argumentAfter(args, "--import-customers");
+        if (customerFile != null) {
+            printImport("Customers", loader.loadCustomers(Paths.get(customerFile)));
+        }
+
+        rentalManager.getMetrics().registerMBean(); // Visible in JConsole under "CarRentalSystem".
+
+        DemandPricing demandPricing = null;
+        String demandPeriod = argumentAfter(args, "--demand-pricing");
+        if (demandPeriod != null) {
+            demandPricing = DemandPricing.standard(rentalManager);
+            demandPricing.start(Long.parseLong(demandPeriod) * 1000);
+        }
+
+        // Looks for overdue rentals as each day starts (and at least hourly); "List Rented Cars" shows them.
+        rentalManager.getOverdueTracker().start(60 * 60 * 1000);
+
+        RentalHttpServer httpServer = null;
+        String httpPort = argumentAfter(args, "--http");
+        if (httpPort != null) {
+            httpServer = new RentalHttpServer(rentalManager, Integer.parseInt(httpPort));
+            httpServer.start();
+            System.out.println("HTTP API listening on port " + httpServer.getPort());
+        }
 
         // Create and start the console UI.
         CarRentalConsoleUI consoleUI = new CarRentalConsoleUI(rentalManager);
         consoleUI.start();
+
+        if (httpServer != null) {
+            httpServer.stop();
+        }
+        if (demandPricing != null) {
+            demandPricing.stop();
+        }
+        rentalManager.getOverdueTracker().stop();
+
+        if (journal != null) {
+            rentalManager.checkpoint(); // Leaves a short journal for a fast start next time.
+            journal.close();
+        }
+        if (snapshotFile != null) {
+            SnapshotFile.write(rentalManager, snapshotFile);
+            System.out.println("Saved everything to " + snapshotFile + ".");
+        }
+    }
+
+    // Reads the optional "--data <directory>" argument.
+    private static Path dataDirectoryFrom(String[] args) {
+        String directory = argumentAfter(args, "--data");
+        return directory == null ? null : Paths.get(directory);
+    }
+
+    private static void printImport(String what, BulkLoader.Result result) {
+        System.out.println(what + ": " + result);
+        result.getErrors().forEach(error -> System.out.println("  Skipped " + error));
+    }
+
+    // Gets the value that follows a flag such as "--data", or null if the flag is missing.
+    private static String argumentAfter(String[] args, String flag) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(flag)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static String argumentOrDefault(String[] args, String flag, String defaultValue) {
+        String value = argumentAfter(args, flag);
+        return value != null ? value : defaultValue;
     }
 
     // Sets up the initial sample data for the system.
@@ -0,0 +1,60 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Hands out dense int ordinals (0, 1, 2, ...) for string IDs, so indexes can use arrays and bitsets
+// instead of maps. Lookups are lock-free; registering takes a short lock.
+public class OrdinalRegistry<T> {
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile Object[] values = new Object[16];
+    private volatile int size;
+
+    // Registers a value under its ID and returns its ordinal.
+    // Registering an ID a second time keeps the old ordinal and just swaps the value.
+    public synchronized int register(String id, T value) {
+        Integer existing = ordinals.get(id);
+        int ordinal = existing != null ? existing : size;
+
+        Object[] array = values;
+        if (ordinal >= array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[ordinal] = value;
+        values = array; // Volatile write publishes the new value to readers.
+
+        if (existing == null) {
+            ordinals.put(id, ordinal);
+            size = ordinal + 1;
+        }
+        return ordinal;
+    }
+
+    // Registers a batch of values under one lock and returns their ordinals in the same order.
+    public synchronized int[] registerAll(List<? extends T> batch, Function<T, String> idOf) {
+        int[] result = new int[batch.size()];
+        for (int i = 0; i < result.length; i++) {
+            T value = batch.get(i);
+            result[i] = register(idOf.apply(value), value);
+        }
+        return result;
+    }
+
+    // --- Lookups ---
+
+    // Returns the ordinal for an ID, or -1 if it was never registered.
+    public int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int ordinal) {
+        return (T) values[ordinal];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,200 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Notices rentals that are past due.
+//
+// A rental is due back on its rental date plus its days, and becomes overdue the day after that.
+// Each rental is filed under that day when it starts and taken out again when the car comes back,
+// in a skip list ordered by day, so the rentals expiring next are always at the front. A tick takes
+// entries off the front until it reaches one that isn't due yet: the work is proportional to the
+// rentals that just became overdue, whatever the number of active rentals. Those rentals move to
+// the overdue set and every listener hears about them once.
+//
+// The clock can be swapped (e.g. for a fixed one in a test that calls tick() itself); start() ticks
+// on a background thread, a virtual one where the JVM has them.
+public class OverdueTracker {
+    // Told about each rental once, on the tick that finds it overdue.
+    public interface Listener {
+        void onOverdue(Rental rental, LocalDate dueDate);
+
+        // Called on the first tick of each new day by the clock, for daily housekeeping.
+        default void onNewDay(LocalDate today) {
+        }
+    }
+
+    private final NavigableSet<Entry> schedule = new ConcurrentSkipListSet<>();
+    private final Map<Rental, Entry> entries = new ConcurrentHashMap<>(); // Every filed rental, overdue or not.
+    private final Set<Rental> overdue = ConcurrentHashMap.newKeySet();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong(); // Keeps rentals due the same day apart.
+    private final AtomicLong lastDay = new AtomicLong(Long.MIN_VALUE); // The day of the last tick, as an epoch-day.
+    private volatile Clock clock;
+    private ExecutorService background;
+
+    public OverdueTracker() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public OverdueTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Files a rental that just started.
+    public void track(Rental rental) {
+        Entry entry = new Entry(rental.getDueDate().toEpochDay() + 1, sequence.incrementAndGet(), rental);
+        entries.put(rental, entry);
+        schedule.add(entry);
+    }
+
+    // Forgets a rental whose car came back, whether or not it was overdue.
+    public void untrack(Rental rental) {
+        // Done inside the map's per-key lock, so a tick can't mark the rental overdue halfway through.
+        entries.computeIfPresent(rental, (r, entry) -> {
+            schedule.remove(entry);
+            overdue.remove(r);
+            return null;
+        });
+    }
+
+    // Moves every rental that is overdue by the clock's today to the overdue set and tells the listeners.
+    // Returns how many became overdue.
+    public int tick() {
+        long today = LocalDate.now(clock).toEpochDay();
+        long previous = lastDay.getAndAccumulate(today, Math::max);
+        if (previous < today) { // Only the tick that moved the day on gets here.
+            for (Listener listener : listeners) {
+                try {
+                    listener.onNewDay(LocalDate.ofEpochDay(today));
+                } catch (RuntimeException e) {
+                    System.out.println("Error: Daily housekeeping failed: " + e.getMessage());
+                }
+            }
+        }
+        int found = 0;
+        for (Entry entry : schedule) { // Earliest first; the rest of the list is due later.
+            if (entry.overdueFrom > today) {
+                break;
+            }
+            // remove() hands each entry to one caller, and a rental returned meanwhile is skipped.
+            if (schedule.remove(entry) && markOverdue(entry)) {
+                found++;
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onOverdue(entry.rental, entry.rental.getDueDate());
+                    } catch (RuntimeException e) {
+                        System.out.println("Error: Overdue listener failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // The rentals found overdue whose cars haven't come back yet, longest overdue first.
+    public List<Rental> getOverdueRentals() {
+        List<Rental> rentals = new ArrayList<>(overdue);
+        rentals.sort((a, b) -> a.getDueDate().compareTo(b.getDueDate()));
+        return rentals;
+    }
+
+    public int countOverdue() {
+        return overdue.size();
+    }
+
+    // How many rentals are filed, overdue or not.
+    public int countTracked() {
+        return entries.size();
+    }
+
+    // Moves the entry's rental to the overdue set unless it was returned. Returns true if it moved.
+    private boolean markOverdue(Entry entry) {
+        boolean[] marked = new boolean[1];
+        entries.computeIfPresent(entry.rental, (rental, current) -> {
+            if (current == entry) {
+                marked[0] = overdue.add(rental);
+            }
+            return current;
+        });
+        return marked[0];
+    }
+
+    // --- Background ticks ---
+
+    // Ticks now, then at the start of each day by the clock, and at least every maxWaitMillis in case
+    // the clock is changed or jumps.
+    public synchronized void start(long maxWaitMillis) {
+        if (background != null) {
+            return;
+        }
+        background = VirtualThreads.newPerTaskExecutor("overdue-tracker");
+        background.execute(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    System.out.println("Error: Overdue check failed: " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(Math.max(1, Math.min(maxWaitMillis, millisUntilTomorrow())));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    public synchronized void stop() {
+        if (background != null) {
+            background.shutdownNow();
+            background = null;
+        }
+    }
+
+    private long millisUntilTomorrow() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        return Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(now.getZone())).toMillis();
+    }
+
+    // A rental filed under the first day it is overdue. Ordered by that day, then by when it was filed.
+    private static class Entry implements Comparable<Entry> {
+        private final long overdueFrom; // Epoch-day.
+        private final long sequence;
+        private final Rental rental;
+
+        private Entry(long overdueFrom, long sequence, Rental rental) {
+            this.overdueFrom = overdueFrom;
+            this.sequence = sequence;
+            this.rental = rental;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDay = Long.compare(overdueFrom, other.overdueFrom);
+            return byDay != 0 ? byDay : Long.compare(sequence, other.sequence);
+        }
+    }
+}
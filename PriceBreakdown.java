@@ -0,0 +1,37 @@
+// Every line of a price quote, in paise. PricingEngine.breakdown fills one of these in place,
+// so callers can keep a single instance around instead of allocating one per quote.
+public class PriceBreakdown {
+    private int days;
+    private long basePricePerDay;
+    private int surchargeBasisPoints;
+    private long surchargePerDay;
+    private long dailyRate;
+    private long subtotal;
+    private int discountBasisPoints;
+    private long discount;
+    private long total;
+
+    void set(int days, long basePricePerDay, int surchargeBasisPoints, long surchargePerDay, long dailyRate,
+             long subtotal, int discountBasisPoints, long discount, long total) {
+        this.days = days;
+        this.basePricePerDay = basePricePerDay;
+        this.surchargeBasisPoints = surchargeBasisPoints;
+        this.surchargePerDay = surchargePerDay;
+        this.dailyRate = dailyRate;
+        this.subtotal = subtotal;
+        this.discountBasisPoints = discountBasisPoints;
+        this.discount = discount;
+        this.total = total;
+    }
+
+    // --- Getters ---
+    public int getDays() { return days; }
+    public long getBasePricePerDay() { return basePricePerDay; }
+    public int getSurchargeBasisPoints() { return surchargeBasisPoints; }
+    public long getSurchargePerDay() { return surchargePerDay; }
+    public long getDailyRate() { return dailyRate; }
+    public long getSubtotal() { return subtotal; }
+    public int getDiscountBasisPoints() { return discountBasisPoints; }
+    public long getDiscount() { return discount; }
+    public long getTotal() { return total; }
+}
@@ -0,0 +1,143 @@
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Prices rentals from rules compiled into flat lookup tables, using whole paise instead of doubles
+// so totals never drift. A quote is a couple of array reads and integer multiplications, and
+// neither quote nor breakdown allocates anything.
+//
+// Rules are given in basis points (1/100 of a percent) through the Builder:
+//   - a surcharge per CarType, compiled into a per-type daily rate table, and
+//   - duration tiers ("from N days, take X off"), compiled into a per-day discount table.
+// New kinds of rules (e.g. seasonal ones) should be compiled into tables the same way.
+public class PricingEngine {
+    private static final long BASIS_POINTS = 10_000;
+    private static final PricingEngine STANDARD = new Builder()
+            .surcharge(Car.CarType.SPORTS, 2_000)  // 20% surcharge for sports cars.
+            .durationDiscount(8, 1_000)            // 10% off rentals longer than a week.
+            .build();
+
+    private final int[] rateBasisPoints;     // Indexed by CarType ordinal; 10,000 means no surcharge.
+    private final int[] discountBasisPoints; // Indexed by days; the last entry covers anything longer.
+
+    private PricingEngine(int[] rateBasisPoints, int[] discountBasisPoints) {
+        this.rateBasisPoints = rateBasisPoints;
+        this.discountBasisPoints = discountBasisPoints;
+    }
+
+    // The rules the rental desk has always used.
+    public static PricingEngine standard() {
+        return STANDARD;
+    }
+
+    // The same rules with an extra surcharge (in basis points, per CarType ordinal) on top of each
+    // type's daily rate. Used by DemandPricing to raise prices for types that are nearly sold out.
+    public PricingEngine withDemandSurcharges(int[] surchargeBasisPoints) {
+        int[] rates = new int[rateBasisPoints.length];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = (int) applyBasisPoints(rateBasisPoints[i], BASIS_POINTS + surchargeBasisPoints[i]);
+        }
+        return new PricingEngine(rates, discountBasisPoints); // The discount table never changes, so it can be shared.
+    }
+
+    // --- Quotes ---
+
+    // Total price in paise for renting the car for the given number of days.
+    public long quote(Car car, int days) {
+        return quote(car.getBasePricePaise(), car.getType().ordinal(), days);
+    }
+
+    public long quote(long basePricePaise, int typeOrdinal, int days) {
+        // The surcharge is applied to the whole stay, so it is only rounded once.
+        long subtotal = applyBasisPoints(basePricePaise * days, rateBasisPoints[typeOrdinal]);
+        return subtotal - applyBasisPoints(subtotal, discountFor(days));
+    }
+
+    // Prices many (car, days) pairs in one call; totals[i] gets the price of cars[i] for days[i].
+    public void quoteAll(Car[] cars, int[] days, long[] totals) {
+        for (int i = 0; i < cars.length; i++) {
+            totals[i] = quote(cars[i].getBasePricePaise(), cars[i].getType().ordinal(), days[i]);
+        }
+    }
+
+    // Same as above for callers that keep their cars as primitive columns.
+    public void quoteAll(long[] basePricePaise, int[] typeOrdinals, int[] days, long[] totals, int count) {
+        for (int i = 0; i < count; i++) {
+            totals[i] = quote(basePricePaise[i], typeOrdinals[i], days[i]);
+        }
+    }
+
+    // Fills in every line of the price breakdown. The breakdown object can be reused between calls.
+    public void breakdown(Car car, int days, PriceBreakdown out) {
+        long base = car.getBasePricePaise();
+        int rate = rateBasisPoints[car.getType().ordinal()];
+        long dailyRate = applyBasisPoints(base, rate);
+        long subtotal = applyBasisPoints(base * days, rate);
+        int discount = discountFor(days);
+        long discountAmount = applyBasisPoints(subtotal, discount);
+        out.set(days, base, rate - (int) BASIS_POINTS, dailyRate - base, dailyRate, subtotal,
+                discount, discountAmount, subtotal - discountAmount);
+    }
+
+    // --- Helpers ---
+
+    // Also the one place every quote passes through, so it is where a non-positive stay is turned away.
+    private int discountFor(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Rental days must be positive, got " + days);
+        }
+        return discountBasisPoints[Math.min(days, discountBasisPoints.length - 1)];
+    }
+
+    // amount * basisPoints / 10,000, rounded half up.
+    private static long applyBasisPoints(long amount, long basisPoints) {
+        return (amount * basisPoints + BASIS_POINTS / 2) / BASIS_POINTS;
+    }
+
+    // Formats paise as rupees with exactly two decimals, e.g. 250050 -> "2500.50".
+    public static String rupees(long paise) {
+        long abs = Math.abs(paise);
+        long fraction = abs % 100;
+        return (paise < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    // Formats basis points as a percentage without trailing zeros, e.g. 2000 -> "20", 1250 -> "12.5".
+    public static String percent(int basisPoints) {
+        return BigDecimal.valueOf(basisPoints, 2).stripTrailingZeros().toPlainString();
+    }
+
+    // Collects the pricing rules and compiles them into a PricingEngine.
+    public static class Builder {
+        private final int[] surcharges = new int[Car.CarType.values().length];
+        private final TreeMap<Integer, Integer> discountTiers = new TreeMap<>();
+
+        // Adds a surcharge (in basis points) on the daily rate of one car type.
+        public Builder surcharge(Car.CarType type, int basisPoints) {
+            surcharges[type.ordinal()] = basisPoints;
+            return this;
+        }
+
+        // Takes the given basis points off the total for rentals of at least minDays days.
+        public Builder durationDiscount(int minDays, int basisPoints) {
+            discountTiers.put(minDays, basisPoints);
+            return this;
+        }
+
+        public PricingEngine build() {
+            int[] rates = new int[surcharges.length];
+            for (int i = 0; i < rates.length; i++) {
+                rates[i] = (int) BASIS_POINTS + surcharges[i];
+            }
+
+            int longestTier = discountTiers.isEmpty() ? 0 : discountTiers.lastKey();
+            int[] discounts = new int[longestTier + 1];
+            for (Map.Entry<Integer, Integer> tier : discountTiers.entrySet()) {
+                // Tiers are visited shortest first, so each one covers the days up to the next.
+                for (int days = Math.max(tier.getKey(), 0); days < discounts.length; days++) {
+                    discounts[days] = tier.getValue();
+                }
+            }
+            return new PricingEngine(rates, discounts);
+        }
+    }
+}
@@ -2,16 +2,34 @@ import java.time.LocalDate;
 
 // Represents an active rental, linking a car, a customer, and the rental duration.
 public class Rental {
+    public static final long NOT_QUOTED = -1;
+
     private Car car;
     private Customer customer;
     private int days;
     private LocalDate rentalDate;
+    private long quotedPricePaise; // The price agreed when the car was rented, or NOT_QUOTED.
 
     public Rental(Car car, Customer customer, int days) {
         this.car = car;
         this.customer = customer;
         this.days = days;
         this.rentalDate = LocalDate.now(); // Sets rental date to today.
+        this.quotedPricePaise = NOT_QUOTED;
+    }
+
+    // Recreates a rental that started on a known date, e.g. when restoring saved state.
+    public Rental(Car car, Customer customer, int days, LocalDate rentalDate) {
+        this(car, customer, days, rentalDate, NOT_QUOTED);
+    }
+
+    // A rental whose price (in paise) was fixed when it started, so later price changes don't affect it.
+    public Rental(Car car, Customer customer, int days, LocalDate rentalDate, long quotedPricePaise) {
+        this.car = car;
+        this.customer = customer;
+        this.days = days;
+        this.rentalDate = rentalDate;
+        this.quotedPricePaise = quotedPricePaise;
     }
 
     // --- Getters ---
@@ -19,6 +37,11 @@ public class Rental {
     public Customer getCustomer() { return customer; }
     public int getDays() { return days; }
     public LocalDate getRentalDate() { return rentalDate; }
+    public long getQuotedPricePaise() { return quotedPricePaise; }
+    public boolean isQuoted() { return quotedPricePaise != NOT_QUOTED; }
+
+    // The day the car is due back.
+    public LocalDate getDueDate() { return rentalDate.plusDays(days); }
 
     // Provides a simple summary of the rental.
     @Override
@@ -0,0 +1,188 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running revenue, duration and utilization totals over the rental history, updated as each
+// rental is completed so nothing ever has to scan the history to answer a question.
+//
+// Totals per car type live in arrays indexed by type ordinal, totals per brand in a map, and
+// time-based totals in day, week and month buckets (keyed by epoch-day, by the epoch-day of the
+// week's Monday, and by year*12+month). Revenue is counted on the day the car came back; for
+// utilization a car counts as out on each day from its rental date up to its return date (at least one day).
+// Everything is a LongAdder, so many returns can be recorded at once without locking.
+public class RentalAnalytics {
+    private static final int TYPES = Car.CarType.values().length;
+
+    private final Totals overall = new Totals();
+    private final Totals[] byType = new Totals[TYPES];
+    private final Map<String, Totals> byBrand = new ConcurrentHashMap<>();
+    private final Map<Long, Bucket> days = new ConcurrentHashMap<>();
+    private final Map<Long, Bucket> weeks = new ConcurrentHashMap<>();
+    private final Map<Long, Bucket> months = new ConcurrentHashMap<>();
+
+    public RentalAnalytics() {
+        for (int i = 0; i < TYPES; i++) {
+            byType[i] = new Totals();
+        }
+    }
+
+    // Adds one completed rental to every total it belongs to.
+    public void record(Car.CarType type, String brand, long rentalEpochDay, long returnEpochDay, int daysRented, long pricePaise) {
+        overall.add(daysRented, pricePaise);
+        byType[type.ordinal()].add(daysRented, pricePaise);
+        byBrand.computeIfAbsent(brand, b -> new Totals()).add(daysRented, pricePaise);
+
+        days.computeIfAbsent(returnEpochDay, d -> new Bucket()).addRevenue(pricePaise);
+        weeks.computeIfAbsent(weekOf(returnEpochDay), w -> new Bucket()).addRevenue(pricePaise);
+        months.computeIfAbsent(monthOf(returnEpochDay), m -> new Bucket()).addRevenue(pricePaise);
+        long lastDayOut = Math.max(rentalEpochDay, returnEpochDay - 1);
+        for (long day = rentalEpochDay; day <= lastDayOut; day++) {
+            days.computeIfAbsent(day, d -> new Bucket()).carDaysOut[type.ordinal()].increment();
+        }
+    }
+
+    // --- Revenue (in paise) ---
+
+    public long totalRevenuePaise() {
+        return overall.revenuePaise.sum();
+    }
+
+    public long revenuePaise(Car.CarType type) {
+        return byType[type.ordinal()].revenuePaise.sum();
+    }
+
+    public long revenuePaiseForBrand(String brand) {
+        Totals totals = byBrand.get(brand);
+        return totals == null ? 0 : totals.revenuePaise.sum();
+    }
+
+    // Revenue for every brand seen so far, in brand order.
+    public Map<String, Long> revenuePaiseByBrand() {
+        Map<String, Long> result = new TreeMap<>();
+        byBrand.forEach((brand, totals) -> result.put(brand, totals.revenuePaise.sum()));
+        return result;
+    }
+
+    public long revenuePaiseOn(LocalDate day) {
+        return revenueIn(days, day.toEpochDay());
+    }
+
+    // Revenue for the Monday-to-Sunday week that contains the given day.
+    public long revenuePaiseForWeek(LocalDate anyDayInWeek) {
+        return revenueIn(weeks, weekOf(anyDayInWeek.toEpochDay()));
+    }
+
+    public long revenuePaiseForMonth(YearMonth month) {
+        return revenueIn(months, month.getYear() * 12L + month.getMonthValue() - 1);
+    }
+
+    // Revenue for the days from start up to (not including) end: one bucket lookup per day.
+    public long revenuePaiseBetween(LocalDate start, LocalDate end) {
+        long total = 0;
+        for (long day = start.toEpochDay(); day < end.toEpochDay(); day++) {
+            total += revenueIn(days, day);
+        }
+        return total;
+    }
+
+    // --- Rentals and durations ---
+
+    public long rentalCount() {
+        return overall.rentals.sum();
+    }
+
+    public long rentalCount(Car.CarType type) {
+        return byType[type.ordinal()].rentals.sum();
+    }
+
+    public double averageRentalDays() {
+        return overall.averageDays();
+    }
+
+    public double averageRentalDays(Car.CarType type) {
+        return byType[type.ordinal()].averageDays();
+    }
+
+    // --- Utilization ---
+
+    // Share of the fleet's car-days in [start, end) that cars were out on completed rentals, from 0 to 1.
+    public double utilization(LocalDate start, LocalDate end, int fleetSize) {
+        long booked = 0;
+        for (Car.CarType type : Car.CarType.values()) {
+            booked += carDaysOut(type, start, end);
+        }
+        return share(booked, fleetSize, start, end);
+    }
+
+    public double utilization(Car.CarType type, LocalDate start, LocalDate end, int carsOfType) {
+        return share(carDaysOut(type, start, end), carsOfType, start, end);
+    }
+
+    private long carDaysOut(Car.CarType type, LocalDate start, LocalDate end) {
+        long booked = 0;
+        for (long day = start.toEpochDay(); day < end.toEpochDay(); day++) {
+            Bucket bucket = days.get(day);
+            if (bucket != null) {
+                booked += bucket.carDaysOut[type.ordinal()].sum();
+            }
+        }
+        return booked;
+    }
+
+    private static double share(long carDaysOut, int cars, LocalDate start, LocalDate end) {
+        long carDays = (long) cars * (end.toEpochDay() - start.toEpochDay());
+        return carDays <= 0 ? 0 : (double) carDaysOut / carDays;
+    }
+
+    // --- Helpers ---
+
+    private static long revenueIn(Map<Long, Bucket> buckets, long key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.revenuePaise.sum();
+    }
+
+    // The epoch-day of the Monday starting the week (1970-01-01, epoch-day 0, was a Thursday).
+    private static long weekOf(long epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    private static long monthOf(long epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static class Totals {
+        private final LongAdder rentals = new LongAdder();
+        private final LongAdder rentalDays = new LongAdder();
+        private final LongAdder revenuePaise = new LongAdder();
+
+        private void add(int days, long pricePaise) {
+            rentals.increment();
+            rentalDays.add(days);
+            revenuePaise.add(pricePaise);
+        }
+
+        private double averageDays() {
+            long count = rentals.sum();
+            return count == 0 ? 0 : (double) rentalDays.sum() / count;
+        }
+    }
+
+    private static class Bucket {
+        private final LongAdder revenuePaise = new LongAdder();
+        private final LongAdder[] carDaysOut = new LongAdder[TYPES];
+
+        private Bucket() {
+            for (int i = 0; i < TYPES; i++) {
+                carDaysOut[i] = new LongAdder();
+            }
+        }
+
+        private void addRevenue(long pricePaise) {
+            revenuePaise.add(pricePaise);
+        }
+    }
+}
@@ -0,0 +1,1242 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// A small timing harness for the RentalManager hot paths. The JMH benchmarks in benchmarks/ (built
+// with "mvn -B package") are the ones to track over time; this one needs nothing but javac.
+// Compile everything with "javac *.java" and run with "java RentalBenchmark [scenario] [options]".
+//
+// The "hotpaths" scenario takes comma-separated sizes and can save its results as JSON, e.g.
+//   java RentalBenchmark hotpaths --fleet 1000,100000 --customers 10000 --history 100000 --threads 1,8 --json results.json
+// and the "shards" scenario compares one manager with sharded ones, e.g.
+//   java RentalBenchmark shards --fleet 100000 --shards 1,4,16 --threads 1,8
+// The "startup" scenario times loading a snapshot, 1M cars by default (give it a few GB of heap), e.g.
+//   java -Xmx4g RentalBenchmark startup --fleet 1000000
+public class RentalBenchmark {
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "all";
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length - 1; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        if (runs(scenario, "return")) benchmarkReturnLatency();
+        if (runs(scenario, "search")) benchmarkSearch();
+        if (runs(scenario, "journal")) benchmarkJournal();
+        if (runs(scenario, "pricing")) benchmarkPricing();
+        if (runs(scenario, "calendar")) benchmarkCalendar();
+        if (runs(scenario, "http")) benchmarkHttp();
+        if (runs(scenario, "hotpaths")) benchmarkHotPaths(options);
+        if (runs(scenario, "metrics")) benchmarkMetricsOverhead();
+        if (runs(scenario, "bulk")) benchmarkBulk();
+        if (runs(scenario, "heap")) benchmarkHeap();
+        if (runs(scenario, "ids")) benchmarkCustomerIds();
+        if (runs(scenario, "analytics")) benchmarkAnalytics();
+        if (runs(scenario, "shards")) benchmarkShards(options);
+        if (runs(scenario, "waitlist")) benchmarkWaitlist();
+        if (runs(scenario, "startup")) benchmarkStartup(options);
+        if (runs(scenario, "console")) benchmarkConsole();
+        if (runs(scenario, "customers")) benchmarkCustomerSearch();
+        if (runs(scenario, "overdue")) benchmarkOverdue();
+        if (runs(scenario, "events")) benchmarkEvents();
+        if (runs(scenario, "cache")) benchmarkSearchCache();
+    }
+
+    private static boolean runs(String selected, String scenario) {
+        return selected.equals("all") || selected.equals(scenario);
+    }
+
+    // --- Scenarios ---
+
+    // Measures how long a return takes as the number of cars on rent grows.
+    // With the active rentals indexed by car ID this should stay flat.
+    private static void benchmarkReturnLatency() {
+        System.out.println("\n== returnCar latency vs. active rentals ==");
+        for (int activeCount : new int[] {1_000, 10_000, 100_000}) {
+            RentalManager manager = new RentalManager();
+            Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+            manager.addCustomer(customer);
+            Car[] cars = new Car[activeCount];
+            for (int i = 0; i < activeCount; i++) {
+                cars[i] = new Car("C" + i, "Brand", "Model", 2500.0, Car.CarType.SEDAN);
+                manager.addCar(cars[i]);
+                manager.rentCar(cars[i], customer, 3);
+            }
+
+            // Return a car and rent it straight back so the active count stays the same.
+            int operations = 200_000;
+            for (int warmup = 0; warmup < 2; warmup++) {
+                returnAndRentAgain(manager, cars, customer, operations);
+            }
+            long start = System.nanoTime();
+            returnAndRentAgain(manager, cars, customer, operations);
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("Active rentals: %,9d | %,8.1f ns per return+rent%n",
+                    activeCount, (double) elapsed / operations);
+        }
+    }
+
+    private static void returnAndRentAgain(RentalManager manager, Car[] cars, Customer customer, int operations) {
+        for (int i = 0; i < operations; i++) {
+            Car car = cars[i % cars.length];
+            manager.returnCar(car);
+            manager.rentCar(car, customer, 3);
+        }
+    }
+
+    // Compares the inverted search index against the old scan-and-contains implementation, and both
+    // against a repeat of the same search answered from the result cache.
+    private static void benchmarkSearch() {
+        System.out.println("\n== searchAvailableCars: cached vs. index vs. full scan ==");
+        String[] queries = {"suv", "maruti swift", "hyundai creta suv", "toyota (innova)"};
+        for (int fleetSize : new int[] {1_000, 100_000, 1_000_000}) {
+            List<Car> fleet = FleetGenerator.cars(fleetSize, 42);
+            RentalManager manager = new RentalManager();
+            fleet.forEach(manager::addCar);
+            Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+            manager.addCustomer(customer);
+            for (int i = 0; i < fleetSize; i += 3) {
+                manager.rentCar(fleet.get(i), customer, 2); // Leave about two thirds available.
+            }
+
+            int iterations = Math.max(5, 2_000_000 / fleetSize);
+            for (String query : queries) {
+                double cached = timePerCall(100_000, () -> manager.searchAvailableCars(query).size());
+                double indexed = timePerCall(iterations, () -> {
+                    manager.getSearchCache().catalogChanged(); // Makes every lookup a miss.
+                    return manager.searchAvailableCars(query).size();
+                });
+                double scanned = timePerCall(iterations, () -> legacySearch(fleet, query).size());
+                System.out.printf("Fleet: %,9d | %-20s | cached: %,8.0f ns | index: %,12.0f ns | scan: %,12.0f ns%n",
+                        fleetSize, "\"" + query + "\"", cached, indexed, scanned);
+            }
+        }
+    }
+
+    // The search as it was before the index: a lowercase concatenation and a contains per car per term.
+    private static List<Car> legacySearch(List<Car> fleet, String query) {
+        String[] searchTerms = query.toLowerCase().replaceAll("[(),]", "").trim().split("\\s+");
+        List<Car> results = new ArrayList<>();
+        for (Car car : fleet) {
+            if (!car.isAvailable()) {
+                continue;
+            }
+            String carDetails = (car.getBrand() + " " + car.getModel() + " " + car.getType().toString()).toLowerCase();
+            boolean matches = true;
+            for (String term : searchTerms) {
+                if (!term.isEmpty() && !carDetails.contains(term)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                results.add(car);
+            }
+        }
+        return results;
+    }
+
+    // Measures rent/return throughput with a journal attached under each fsync policy,
+    // then how long it takes to recover the state from that journal.
+    private static void benchmarkJournal() throws Exception {
+        System.out.println("\n== Journal write throughput and recovery ==");
+        int threads = 8;
+        int carsPerThread = 1_000;
+        long runMillis = 2_000;
+        for (RentalJournal.FsyncPolicy policy : RentalJournal.FsyncPolicy.values()) {
+            Path directory = Files.createTempDirectory("rental-journal-bench");
+            RentalManager manager = new RentalManager();
+            RentalJournal journal = RentalJournal.open(directory, policy, 5, manager);
+            Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+            manager.addCustomer(customer);
+            List<Car> fleet = FleetGenerator.cars(threads * carsPerThread, 7);
+            fleet.forEach(manager::addCar);
+
+            // Each thread rents and returns its own slice of the fleet as fast as it can.
+            long deadline = System.currentTimeMillis() + runMillis;
+            long[] operations = new long[threads];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int slice = t;
+                workers[t] = new Thread(() -> {
+                    int i = 0;
+                    while (System.currentTimeMillis() < deadline) {
+                        Car car = fleet.get(slice * carsPerThread + (i++ % carsPerThread));
+                        manager.rentCar(car, customer, 2);
+                        manager.returnCar(car);
+                        operations[slice] += 2;
+                    }
+                });
+                workers[t].start();
+            }
+            long total = 0;
+            for (int t = 0; t < threads; t++) {
+                workers[t].join();
+                total += operations[t];
+            }
+            journal.close();
+
+            long journalBytes = Files.size(directory.resolve("journal-0.log"));
+            long start = System.nanoTime();
+            RentalJournal recovered = RentalJournal.open(directory, policy, 5, new RentalManager());
+            long recoveryNanos = System.nanoTime() - start;
+            recovered.close();
+
+            System.out.printf("%-12s | %d threads | %,10.0f ops/sec | journal %,7.1f MB | recovery %,8.1f ms%n",
+                    policy, threads, total * 1000.0 / runMillis, journalBytes / 1e6, recoveryNanos / 1e6);
+            deleteDirectory(directory);
+        }
+    }
+
+    // Compares single quotes from the pricing engine with the old double-based calculation,
+    // and measures bulk quoting.
+    private static void benchmarkPricing() {
+        System.out.println("\n== Pricing ==");
+        int count = 10_000;
+        Car[] cars = FleetGenerator.cars(count, 3).toArray(new Car[0]);
+        int[] days = new int[count];
+        Random random = new Random(5);
+        for (int i = 0; i < count; i++) {
+            days[i] = 1 + random.nextInt(30);
+        }
+        long[] totals = new long[count];
+        PricingEngine engine = PricingEngine.standard();
+
+        double engineNanos = timePerCall(2_000, () -> {
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += engine.quote(cars[i], days[i]);
+            }
+            return (int) sum;
+        }) / count;
+        double legacyNanos = timePerCall(2_000, () -> {
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += legacyPrice(cars[i], days[i]);
+            }
+            return (int) sum;
+        }) / count;
+        double bulkNanos = timePerCall(2_000, () -> {
+            engine.quoteAll(cars, days, totals);
+            return (int) totals[count - 1];
+        }) / count;
+
+        System.out.printf("PricingEngine.quote  | %,6.1f ns per quote%n", engineNanos);
+        System.out.printf("legacy double price  | %,6.1f ns per quote%n", legacyNanos);
+        System.out.printf("PricingEngine.quoteAll (%,d pairs per call) | %,6.1f ns per quote%n", count, bulkNanos);
+
+        // Quotes through the manager, then again while demand pricing recomputes every millisecond and
+        // another thread keeps renting out and returning nearly the whole fleet, so the tiers keep changing.
+        RentalManager manager = new RentalManager();
+        manager.addCars(Arrays.asList(cars));
+        Customer customer = new Customer("CUS1", "Bench Customer", "9000000000");
+        manager.addCustomer(customer);
+        double fixedNanos = timePerCall(200_000, () -> (int) manager.quote(cars[random.nextInt(count)], 3));
+        DemandPricing demand = DemandPricing.standard(manager);
+        demand.start(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread churn = new Thread(() -> {
+            List<Rental> rentals = new ArrayList<>();
+            for (int i = 0; i < count * 96 / 100; i++) {
+                rentals.add(new Rental(cars[i], customer, 2));
+            }
+            while (running.get()) {
+                manager.rentAll(rentals);
+                manager.returnAll(manager.getAllRentedCars());
+            }
+        });
+        churn.start();
+        int swaps = 0;
+        PricingEngine seen = manager.getPricingEngine();
+        double demandNanos = 0;
+        for (int round = 0; round < 200; round++) {
+            demandNanos += timePerCall(20_000, () -> (int) manager.quote(cars[random.nextInt(count)], 3)) / 200;
+            if (manager.getPricingEngine() != seen) {
+                swaps++;
+                seen = manager.getPricingEngine();
+            }
+        }
+        running.set(false);
+        try {
+            churn.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        demand.stop();
+        System.out.printf("RentalManager.quote  | %,6.1f ns fixed rules | %,6.1f ns with demand pricing (%d engine swaps seen)%n",
+                fixedNanos, demandNanos, swaps);
+    }
+
+    // Car.calculatePrice as it was before the pricing engine.
+    private static double legacyPrice(Car car, int rentalDays) {
+        double currentPrice = car.getBasePricePerDay();
+        if (car.getType() == Car.CarType.SPORTS) {
+            currentPrice *= 1.20;
+        }
+        double totalPrice = currentPrice * rentalDays;
+        if (rentalDays > 7) {
+            totalPrice *= 0.90;
+        }
+        return totalPrice;
+    }
+
+    // Fills a 100k-car fleet with a year of forward reservations, then times new reservations
+    // and fleet-wide "which SUVs are free for these dates" queries.
+    private static void benchmarkCalendar() {
+        System.out.println("\n== Reservations calendar ==");
+        int fleetSize = 100_000;
+        List<Car> fleet = FleetGenerator.cars(fleetSize, 11);
+        RentalManager manager = new RentalManager();
+        fleet.forEach(manager::addCar);
+        Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+        manager.addCustomer(customer);
+
+        Random random = new Random(13);
+        LocalDate today = LocalDate.now();
+        long start = System.nanoTime();
+        int placed = 0;
+        for (Car car : fleet) {
+            // About one booking a fortnight, each lasting 1-7 days, across the next year.
+            for (int day = random.nextInt(14); day < 365; day += 7 + random.nextInt(14)) {
+                int length = 1 + random.nextInt(7);
+                if (manager.reserveCar(car, customer, today.plusDays(day), today.plusDays(day + length)) != null) {
+                    placed++;
+                }
+            }
+        }
+        double reserveNanos = (double) (System.nanoTime() - start) / placed;
+
+        int queries = 200;
+        long found = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            LocalDate from = today.plusDays(random.nextInt(360));
+            found += manager.findAvailableCars(Car.CarType.SUV, from, from.plusDays(4)).size();
+        }
+        double queryMicros = (System.nanoTime() - start) / 1e3 / queries;
+
+        System.out.printf("Fleet %,d cars | %,d reservations | %,6.0f ns per reservation%n", fleetSize, placed, reserveNanos);
+        System.out.printf("Free SUVs for a 4-day range | %,8.0f us per query | %,d SUVs free on average%n",
+                queryMicros, found / queries);
+    }
+
+    // Starts the HTTP API on a free port and hits it from many concurrent clients with a mix of
+    // searches, listings, history pages and rent/return pairs, then reports latency and throughput.
+    private static void benchmarkHttp() throws Exception {
+        System.out.println("\n== HTTP API under load (" + (VirtualThreads.available() ? "virtual" : "platform") + " threads) ==");
+        RentalManager manager = new RentalManager();
+        FleetGenerator.cars(10_000, 17).forEach(manager::addCar);
+        for (int i = 0; i < 1_000; i++) {
+            manager.addCustomer(new Customer("CUS" + i, "Customer " + i, "90000" + String.format("%05d", i)));
+        }
+        RentalHttpServer server = new RentalHttpServer(manager, 0);
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(VirtualThreads.newPerTaskExecutor("bench-client")).build();
+
+        int clients = 200;
+        int requestsPerClient = 100;
+        ExecutorService pool = VirtualThreads.newPerTaskExecutor("bench-load");
+        try {
+            runHttpLoad(pool, client, base, 20, 20); // Warm-up.
+            long start = System.nanoTime();
+            long[] latencies = runHttpLoad(pool, client, base, clients, requestsPerClient);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+            System.out.printf("%d clients x %d requests | %,8.0f req/s | p50 %,6.0f us | p99 %,6.0f us%n",
+                    clients, requestsPerClient, latencies.length / seconds,
+                    latencies[latencies.length / 2] / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3);
+        } finally {
+            pool.shutdownNow();
+            server.stop();
+        }
+    }
+
+    // Runs the clients side by side and returns the latency of every request in nanoseconds.
+    private static long[] runHttpLoad(ExecutorService pool, HttpClient client, String base,
+                                      int clients, int requestsPerClient) throws Exception {
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            results.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] latencies = new long[requestsPerClient];
+                String rentedCarId = null;
+                for (int i = 0; i < requestsPerClient; i++) {
+                    HttpRequest request;
+                    int pick = random.nextInt(10);
+                    String customerId = "CUS" + random.nextInt(1_000);
+                    String carId = "C" + random.nextInt(10_000); // Each client returns the car it last rented.
+                    if (pick < 4) {
+                        request = HttpRequest.newBuilder(URI.create(base + "/cars?q=" + (pick < 2 ? "kia" : "hyundai+creta"))).build();
+                    } else if (pick < 6) {
+                        request = HttpRequest.newBuilder(URI.create(base + "/customers/" + customerId + "/history?limit=10")).build();
+                    } else if (rentedCarId == null) {
+                        rentedCarId = carId;
+                        request = HttpRequest.newBuilder(URI.create(base + "/rentals?carId=" + carId + "&customerId=" + customerId + "&days=3"))
+                                .POST(HttpRequest.BodyPublishers.noBody()).build();
+                    } else {
+                        request = HttpRequest.newBuilder(URI.create(base + "/returns?carId=" + rentedCarId))
+                                .POST(HttpRequest.BodyPublishers.noBody()).build();
+                        rentedCarId = null;
+                    }
+                    long start = System.nanoTime();
+                    client.send(request, HttpResponse.BodyHandlers.discarding());
+                    latencies[i] = System.nanoTime() - start;
+                }
+                return latencies;
+            }));
+        }
+        long[] all = new long[clients * requestsPerClient];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(results.get(c).get(), 0, all, c * requestsPerClient, requestsPerClient);
+        }
+        return all;
+    }
+
+    // Times the everyday RentalManager calls for every combination of fleet, customer and history
+    // size, on one thread and with several threads sharing the manager, and optionally writes the
+    // results to a JSON file so runs can be compared over time.
+    private static void benchmarkHotPaths(Map<String, String> options) throws Exception {
+        System.out.println("\n== Hot paths ==");
+        int[] fleetSizes = sizes(options, "fleet", "1000,100000");
+        int[] customerCounts = sizes(options, "customers", "10000");
+        int[] historySizes = sizes(options, "history", "100000");
+        int[] threadCounts = sizes(options, "threads", "1,4");
+        long runMillis = Long.parseLong(options.getOrDefault("millis", "1000"));
+        String[] queries = {"suv", "maruti swift", "hyundai creta suv", "kia"};
+        List<String> results = new ArrayList<>();
+
+        for (int fleetSize : fleetSizes) {
+            for (int customerCount : customerCounts) {
+                for (int historySize : historySizes) {
+                    RentalManager manager = new RentalManager();
+                    FleetGenerator.populate(manager, fleetSize, customerCount, historySize, 21);
+                    Car[] cars = manager.getAllCars().toArray(new Car[0]);
+                    Customer[] customers = manager.getAllCustomers().toArray(new Customer[0]);
+                    for (int i = 0; i < cars.length; i += 3) {
+                        manager.rentCar(cars[i], customers[i % customers.length], 5); // Leave about two thirds available.
+                    }
+                    String sizes = String.format("fleet %,d | customers %,d | history %,d", fleetSize, customerCount, historySize);
+
+                    Map<String, ThreadedTask> tasks = new LinkedHashMap<>();
+                    tasks.put("searchAvailableCars", random -> manager.searchAvailableCars(queries[random.nextInt(queries.length)]).size());
+                    tasks.put("getAllAvailableCars", random -> manager.getAllAvailableCars().size());
+                    tasks.put("getCustomerRentalHistory", random ->
+                            manager.getCustomerRentalHistory(customers[random.nextInt(customers.length)].getCustomerId()).size());
+                    tasks.put("Car.calculatePrice", random -> (int) cars[random.nextInt(cars.length)].calculatePrice(1 + random.nextInt(30)));
+                    // Runs last because every return adds to the history the other tasks read.
+                    // Threads pick cars from the whole fleet, so they do compete for the same cars.
+                    tasks.put("rentCar+returnCar", random -> {
+                        Car car = cars[random.nextInt(cars.length)];
+                        if (car.isAvailable() && manager.rentCar(car, customers[random.nextInt(customers.length)], 3)) {
+                            manager.returnCar(car);
+                            return 1;
+                        }
+                        return 0;
+                    });
+
+                    for (Map.Entry<String, ThreadedTask> task : tasks.entrySet()) {
+                        for (int threads : threadCounts) {
+                            runThreaded(threads, runMillis / 3, task.getValue()); // Warm-up.
+                            long operations = runThreaded(threads, runMillis, task.getValue());
+                            double opsPerSecond = operations * 1000.0 / runMillis;
+                            double nanosPerOp = threads * 1e9 / opsPerSecond;
+                            System.out.printf("%-26s | %s | %2d threads | %,12.0f ops/sec | %,12.1f ns per op%n",
+                                    task.getKey(), sizes, threads, opsPerSecond, nanosPerOp);
+                            results.add(String.format(Locale.ROOT,
+                                    "{\"benchmark\":\"%s\",\"fleet\":%d,\"customers\":%d,\"history\":%d,\"threads\":%d,"
+                                            + "\"opsPerSec\":%.1f,\"nsPerOp\":%.1f}",
+                                    task.getKey(), fleetSize, customerCount, historySize, threads, opsPerSecond, nanosPerOp));
+                        }
+                    }
+                }
+            }
+        }
+
+        if (options.containsKey("json")) {
+            Path file = Paths.get(options.get("json"));
+            try (BufferedWriter out = Files.newBufferedWriter(file)) {
+                out.write("{\"timestamp\":\"" + Instant.now() + "\",\"java\":\"" + System.getProperty("java.version")
+                        + "\",\"processors\":" + Runtime.getRuntime().availableProcessors() + ",\"results\":[\n  ");
+                out.write(String.join(",\n  ", results));
+                out.write("\n]}\n");
+            }
+            System.out.println("Results written to " + file.toAbsolutePath());
+        }
+    }
+
+    // Runs the same workloads with metrics switched on and off, to show what recording costs.
+    private static void benchmarkMetricsOverhead() throws Exception {
+        System.out.println("\n== Metrics overhead ==");
+        RentalManager manager = new RentalManager();
+        FleetGenerator.populate(manager, 10_000, 1_000, 10_000, 23);
+        Car[] cars = manager.getAllCars().toArray(new Car[0]);
+        Customer[] customers = manager.getAllCustomers().toArray(new Customer[0]);
+        ThreadedTask rentAndReturn = random -> {
+            Car car = cars[random.nextInt(cars.length)];
+            if (car.isAvailable() && manager.rentCar(car, customers[random.nextInt(customers.length)], 3)) {
+                manager.returnCar(car);
+                return 1;
+            }
+            return 0;
+        };
+        ThreadedTask search = random -> manager.searchAvailableCars(random.nextBoolean() ? "kia seltos" : "honda city").size();
+        LatencyHistogram histogram = new LatencyHistogram();
+        ThreadedTask record = random -> {
+            histogram.record(random.nextInt(1_000_000));
+            return 0;
+        };
+
+        Map<String, ThreadedTask> tasks = new LinkedHashMap<>();
+        tasks.put("rentCar+returnCar", rentAndReturn);
+        tasks.put("searchAvailableCars", search);
+        for (Map.Entry<String, ThreadedTask> task : tasks.entrySet()) {
+            for (int threads : new int[] {1, 4}) {
+                double[] nanosPerOp = new double[2];
+                for (int round = 0; round < 2; round++) { // The first round is a warm-up.
+                    for (int on = 0; on < 2; on++) {
+                        manager.getMetrics().setEnabled(on == 1);
+                        long operations = runThreaded(threads, 1_000, task.getValue());
+                        nanosPerOp[on] = threads * 1e9 / operations;
+                    }
+                }
+                System.out.printf("%-20s | %d threads | off %,9.1f ns | on %,9.1f ns | overhead %5.1f%%%n", task.getKey(), threads,
+                        nanosPerOp[0], nanosPerOp[1], (nanosPerOp[1] - nanosPerOp[0]) * 100 / nanosPerOp[0]);
+            }
+        }
+        for (int threads : new int[] {1, 4}) {
+            runThreaded(threads, 300, record);
+            long operations = runThreaded(threads, 1_000, record);
+            System.out.printf("LatencyHistogram.record | %d threads | %,9.1f ns per record%n", threads, threads * 1e9 / operations);
+        }
+        manager.getMetrics().setEnabled(true);
+        System.out.print(manager.getMetrics().getTextDump());
+    }
+
+    // Onboards a 50k-car, 200k-customer branch from CSV and NDJSON files, with and without a journal,
+    // then compares batched rentAll/returnAll against one call per car with the journal attached.
+    private static void benchmarkBulk() throws Exception {
+        System.out.println("\n== Bulk import and batched operations ==");
+        Path directory = Files.createTempDirectory("rental-bulk-bench");
+        Path carFile = directory.resolve("cars.csv");
+        Path customerFile = directory.resolve("customers.ndjson");
+        try (BufferedWriter out = Files.newBufferedWriter(carFile)) {
+            out.write("carId,brand,model,basePricePerDay,type\n");
+            for (Car car : FleetGenerator.cars(50_000, 31)) {
+                out.write(car.getCarId() + "," + car.getBrand() + "," + car.getModel() + ","
+                        + car.getBasePricePerDay() + "," + car.getType() + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(customerFile)) {
+            for (Customer customer : FleetGenerator.customers(200_000, 37)) {
+                out.write("{\"customerId\":\"" + customer.getCustomerId() + "\",\"name\":\"" + customer.getName()
+                        + "\",\"contactPhone\":\"" + customer.getContactPhone() + "\"}\n");
+            }
+        }
+
+        for (int run = 0; run < 2; run++) { // The first run warms up the parser.
+            RentalManager manager = new RentalManager();
+            BulkLoader loader = new BulkLoader(manager, 5_000);
+            BulkLoader.Result cars = loader.loadCars(carFile);
+            BulkLoader.Result customers = loader.loadCustomers(customerFile);
+            if (run == 1) {
+                System.out.println("In memory    | cars.csv         | " + cars);
+                System.out.println("In memory    | customers.ndjson | " + customers);
+            }
+        }
+
+        Path journalDirectory = directory.resolve("journal");
+        RentalManager manager = new RentalManager();
+        RentalJournal journal = RentalJournal.open(journalDirectory, RentalJournal.FsyncPolicy.EVERY_COMMIT, 5, manager);
+        BulkLoader loader = new BulkLoader(manager, 5_000);
+        System.out.println("EVERY_COMMIT | cars.csv         | " + loader.loadCars(carFile));
+        System.out.println("EVERY_COMMIT | customers.ndjson | " + loader.loadCustomers(customerFile));
+
+        // Rent and return 10k cars one call at a time, then as batches of 1,000.
+        List<Car> fleet = manager.getAllCars().subList(0, 10_000);
+        Customer customer = manager.getAllCustomers().get(0);
+        long start = System.nanoTime();
+        for (Car car : fleet) {
+            manager.rentCar(car, customer, 2);
+        }
+        for (Car car : fleet) {
+            manager.returnCar(car);
+        }
+        double singleSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        for (int from = 0; from < fleet.size(); from += 1_000) {
+            List<Car> batch = fleet.subList(from, from + 1_000);
+            List<Rental> rentals = new ArrayList<>();
+            for (Car car : batch) {
+                rentals.add(new Rental(car, customer, 2));
+            }
+            manager.rentAll(rentals);
+            manager.returnAll(batch);
+        }
+        double batchSeconds = (System.nanoTime() - start) / 1e9;
+        journal.close();
+        System.out.printf("EVERY_COMMIT | rent+return %,d cars | one by one %,9.0f ops/sec | batches of 1,000 %,11.0f ops/sec%n",
+                fleet.size(), 2 * fleet.size() / singleSeconds, 2 * fleet.size() / batchSeconds);
+
+        deleteDirectory(journalDirectory);
+        deleteDirectory(directory);
+    }
+
+    // Measures the heap taken by a million cars and a million customers in the compact layout, against
+    // the old layout (separate brand/model/phone Strings, an AtomicBoolean and a double per car).
+    // Every record gets its own String instances, as if it had just been read from a file.
+    private static void benchmarkHeap() {
+        System.out.println("\n== Heap per million records ==");
+        int count = 1_000_000;
+        List<Car> models = FleetGenerator.cars(1_000, 41);
+        List<Customer> people = FleetGenerator.customers(1_000, 43);
+
+        long legacyCars = heapUsedBy(count, i -> {
+            Car model = models.get(i % models.size());
+            return new LegacyCar("C" + i, new String(model.getBrand()), new String(model.getModel()),
+                    model.getBasePricePerDay(), model.getType());
+        });
+        long compactCars = heapUsedBy(count, i -> {
+            Car model = models.get(i % models.size());
+            return new Car("C" + i, new String(model.getBrand()), new String(model.getModel()),
+                    model.getBasePricePerDay(), model.getType());
+        });
+        long legacyCustomers = heapUsedBy(count, i -> {
+            Customer person = people.get(i % people.size());
+            return new LegacyCustomer("CUS" + i, new String(person.getName()), new String(person.getContactPhone()));
+        });
+        long compactCustomers = heapUsedBy(count, i -> {
+            Customer person = people.get(i % people.size());
+            return new Customer("CUS" + i, new String(person.getName()), new String(person.getContactPhone()));
+        });
+
+        System.out.printf("Cars      | old layout %,6.1f MB | compact %,6.1f MB | %,4d -> %,4d bytes each%n",
+                legacyCars / 1e6, compactCars / 1e6, legacyCars / count, compactCars / count);
+        System.out.printf("Customers | old layout %,6.1f MB | compact %,6.1f MB | %,4d -> %,4d bytes each%n",
+                legacyCustomers / 1e6, compactCustomers / 1e6, legacyCustomers / count, compactCustomers / count);
+    }
+
+    // Compares registering customers through the ID allocator with the old way of making an ID
+    // (counting a copy of every customer), then registers from several threads at once.
+    private static void benchmarkCustomerIds() throws Exception {
+        System.out.println("\n== New customer IDs ==");
+        for (int existing : new int[] {1_000, 100_000}) {
+            RentalManager manager = new RentalManager();
+            manager.addCustomers(FleetGenerator.customers(existing, 47));
+            double oldNanos = timePerCall(200, () -> ("CUS" + (manager.getAllCustomers().size() + 1)).length());
+            double newNanos = timePerCall(200, () -> manager.registerNewCustomer("Bench Customer", "9000000000").getCustomerId().length());
+            System.out.printf("%,7d customers | count-based ID %,12.0f ns | registerNewCustomer %,8.0f ns%n", existing, oldNanos, newNanos);
+        }
+        RentalManager manager = new RentalManager();
+        for (int threads : new int[] {1, 4}) {
+            runThreaded(threads, 300, random -> manager.registerNewCustomer("Bench Customer", "9000000000").getCustomerId().length());
+            long registered = runThreaded(threads, 1_000, random -> manager.registerNewCustomer("Bench Customer", "9000000000").getCustomerId().length());
+            System.out.printf("registerNewCustomer | %d threads | %,10.0f per second%n", threads, registered / 1.0);
+        }
+        System.out.printf("%,d customers registered, %,d distinct IDs%n", manager.getAllCustomers().size(),
+                manager.getAllCustomers().stream().map(Customer::getCustomerId).distinct().count());
+    }
+
+    // Loads two years of history, then compares answering revenue questions from the running totals
+    // with scanning the history, and times a parallel rebuild of the totals against a single thread.
+    private static void benchmarkAnalytics() {
+        System.out.println("\n== Revenue analytics ==");
+        int historySize = 2_000_000;
+        RentalManager manager = new RentalManager();
+        List<Car> fleet = FleetGenerator.cars(40_000, 51);
+        List<Customer> customers = FleetGenerator.customers(10_000, 53);
+        manager.addCars(fleet);
+        manager.addCustomers(customers);
+        Random random = new Random(55);
+        LocalDate firstDay = LocalDate.now().minusDays(730);
+        PricingEngine engine = manager.getPricingEngine();
+        for (int i = 0; i < historySize; i++) {
+            Car car = fleet.get(random.nextInt(fleet.size()));
+            int days = 1 + random.nextInt(14);
+            LocalDate rentalDate = firstDay.plusDays(random.nextInt(716));
+            manager.restoreCompletedRental(new CompletedRental(car, customers.get(random.nextInt(customers.size())),
+                    rentalDate, rentalDate.plusDays(days), days, engine.quote(car, days)));
+        }
+
+        YearMonth month = YearMonth.from(firstDay.plusDays(400));
+        RentalAnalytics analytics = manager.getAnalytics();
+        double totalsNanos = timePerCall(1_000, () -> (int) (analytics.revenuePaiseForMonth(month)
+                + analytics.revenuePaise(Car.CarType.SUV) + analytics.revenuePaiseForBrand("Kia")));
+        long start = System.nanoTime();
+        long scannedMonth = 0;
+        long scannedSuv = 0;
+        long scannedKia = 0;
+        for (Iterator<CompletedRental> history = manager.rentalHistoryIterator(); history.hasNext(); ) {
+            CompletedRental rental = history.next();
+            if (YearMonth.from(rental.getReturnDate()).equals(month)) {
+                scannedMonth += rental.getFinalPricePaise();
+            }
+            if (rental.getCar().getType() == Car.CarType.SUV) {
+                scannedSuv += rental.getFinalPricePaise();
+            }
+            if (rental.getCar().getBrand().equals("Kia")) {
+                scannedKia += rental.getFinalPricePaise();
+            }
+        }
+        double scanNanos = System.nanoTime() - start;
+        boolean same = scannedMonth == analytics.revenuePaiseForMonth(month) && scannedSuv == analytics.revenuePaise(Car.CarType.SUV)
+                && scannedKia == analytics.revenuePaiseForBrand("Kia");
+        System.out.printf("History %,d | month + type + brand revenue: running totals %,8.0f ns | full scan %,8.1f ms | same answer: %s%n",
+                historySize, totalsNanos, scanNanos / 1e6, same);
+        System.out.printf("Utilization over %s: %.1f%% | average rental %.2f days%n", month,
+                100 * manager.getFleetUtilization(month.atDay(1), month.plusMonths(1).atDay(1)), analytics.averageRentalDays());
+
+        for (int parallelism : IntStream.of(1, Runtime.getRuntime().availableProcessors()).distinct().toArray()) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            manager.rebuildAnalytics(pool); // Warm-up.
+            start = System.nanoTime();
+            long rebuiltTotal = manager.rebuildAnalytics(pool).totalRevenuePaise();
+            System.out.printf("Rebuild from history | %d threads | %,8.1f ms | total matches: %s%n", parallelism,
+                    (System.nanoTime() - start) / 1e6, rebuiltTotal == analytics.totalRevenuePaise());
+            pool.shutdown();
+        }
+    }
+
+    // The same fleet in one manager and spread over several shards: searches and listings fan out to
+    // every shard, rents and returns only touch one. Takes --fleet, --shards and --threads lists.
+    private static void benchmarkShards(Map<String, String> options) throws Exception {
+        System.out.println("\n== Sharded manager (" + Runtime.getRuntime().availableProcessors() + " processors) ==");
+        int[] fleetSizes = sizes(options, "fleet", "100000");
+        int[] shardCounts = sizes(options, "shards", "1,4,16");
+        int[] threadCounts = sizes(options, "threads", "1,4");
+        String[] queries = {"suv", "maruti swift", "hyundai creta suv", "kia"};
+        for (int fleetSize : fleetSizes) {
+            for (int shardCount : shardCounts) {
+                CarRentalService service = shardCount == 1 ? new RentalManager() : new ShardedRentalManager(shardCount);
+                FleetGenerator.populate(service, fleetSize, 10_000, 10_000, 61);
+                Car[] cars = service.getAllCars().toArray(new Car[0]);
+                Customer[] customers = service.getAllCustomers().toArray(new Customer[0]);
+                String name = shardCount == 1 ? "RentalManager" : shardCount + " shards";
+
+                Map<String, ThreadedTask> tasks = new LinkedHashMap<>();
+                tasks.put("searchAvailableCars", random -> service.searchAvailableCars(queries[random.nextInt(queries.length)]).size());
+                tasks.put("countAvailable", random -> service.countAvailable(Car.CarType.SUV));
+                tasks.put("rentCar+returnCar", random -> {
+                    Car car = cars[random.nextInt(cars.length)];
+                    if (car.isAvailable() && service.rentCar(car, customers[random.nextInt(customers.length)], 3)) {
+                        service.returnCar(car);
+                        return 1;
+                    }
+                    return 0;
+                });
+                for (Map.Entry<String, ThreadedTask> task : tasks.entrySet()) {
+                    for (int threads : threadCounts) {
+                        runThreaded(threads, 300, task.getValue()); // Warm-up.
+                        long operations = runThreaded(threads, 1_000, task.getValue());
+                        System.out.printf("%-20s | %-13s | fleet %,9d | %2d threads | %,12.0f ops/sec%n",
+                                task.getKey(), name, fleetSize, threads, operations / 1.0);
+                    }
+                }
+            }
+        }
+    }
+
+    // Saves a fleet with customers, rentals and history to a snapshot and times starting up from it:
+    // how long until the manager answers, its first lookup by ID and search, everything being loaded
+    // in the background, and the analytics rebuild after that. For comparison, the same state is also
+    // added record by record, which is how snapshots used to be loaded. Takes a --fleet list; customers
+    // and open rentals are a tenth of the fleet and the history is as long as the fleet.
+    private static void benchmarkStartup(Map<String, String> options) throws Exception {
+        System.out.println("\n== Startup from a snapshot ==");
+        for (int fleetSize : sizes(options, "fleet", "1000000")) {
+            Path file = Files.createTempFile("rental-startup", ".snapshot");
+            try {
+                RentalManager original = new RentalManager();
+                FleetGenerator.populate(original, fleetSize, fleetSize / 10, fleetSize, 71);
+                List<Car> fleet = original.getAllCars();
+                List<Customer> customers = original.getAllCustomers();
+                for (int i = 0; i < fleetSize / 10; i++) {
+                    original.rentCar(fleet.get(i), customers.get(i % customers.size()), 1 + i % 14);
+                }
+                long start = System.nanoTime();
+                SnapshotFile.write(original, file);
+                System.out.printf("Fleet %,d | write %,6.0f ms | %,d MB%n", fleetSize, (System.nanoTime() - start) / 1e6,
+                        Files.size(file) >> 20);
+
+                System.out.printf("Fleet %,d | record by record        | %,6.0f ms%n", fleetSize, addRecordByRecord(original) / 1e6);
+                String idleCarId = fleet.get(fleet.size() - 1).getCarId(); // Not rented, so only in the snapshot at first.
+                original = null;
+                fleet = null;
+                customers = null;
+
+                for (int round = 0; round < 3; round++) {
+                    settledHeapUsed();
+                    start = System.nanoTime();
+                    RentalManager loaded = new RentalManager();
+                    SnapshotFile.Loading loading = SnapshotFile.load(file, loaded);
+                    long openedNanos = System.nanoTime() - start;
+                    Car idleCar = loaded.findCarById(idleCarId);
+                    long lookedUpNanos = System.nanoTime() - start;
+                    if (idleCar == null) {
+                        throw new IllegalStateException("Car " + idleCarId + " is missing from the snapshot");
+                    }
+                    int matches = loaded.searchAvailableCars("hyundai creta").size();
+                    String someone = loaded.getAllActiveRentals().get(0).getCustomer().getCustomerId();
+                    int history = loaded.getCustomerRentalHistory(someone).size();
+                    long loadedNanos = System.nanoTime() - start;
+                    while (loaded.getAnalytics().rentalCount() < loading.getHistorySize()) {
+                        Thread.sleep(1);
+                    }
+                    System.out.printf("Fleet %,d | snapshot load, round %d | open %,6.0f ms | first lookup %,6.0f ms | all loaded, search (%,d) and history (%d) %,6.0f ms | analytics ready %,6.0f ms%n",
+                            fleetSize, round + 1, openedNanos / 1e6, lookedUpNanos / 1e6, matches, history, loadedNanos / 1e6,
+                            (System.nanoTime() - start) / 1e6);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Lists a 100k-car fleet and a long rental history the way the console used to (println of each
+    // toString() on an auto-flushing stream, like System.out) and through ConsoleRenderer. Output goes
+    // nowhere, so this measures formatting and writing rather than the terminal.
+    private static void benchmarkConsole() {
+        System.out.println("\n== Console listings ==");
+        RentalManager manager = new RentalManager();
+        FleetGenerator.populate(manager, 100_000, 10_000, 200_000, 81);
+        Customer busiest = manager.getAllCustomers().stream()
+                .max(Comparator.comparingInt(customer -> manager.countCustomerRentals(customer.getCustomerId()))).get();
+        int historyRows = manager.countCustomerRentals(busiest.getCustomerId());
+        List<CompletedRental> history = new ArrayList<>();
+        for (int i = 0; i < 100_000 / Math.max(1, historyRows); i++) {
+            history.addAll(manager.getCustomerRentalHistory(busiest.getCustomerId()));
+        }
+
+        for (int round = 0; round < 3; round++) {
+            PrintStream stream = new PrintStream(OutputStream.nullOutputStream(), true);
+            long start = System.nanoTime();
+            manager.getAllAvailableCars().forEach(stream::println);
+            long printlnCars = System.nanoTime() - start;
+            start = System.nanoTime();
+            history.forEach(stream::println);
+            long printlnHistory = System.nanoTime() - start;
+
+            ConsoleRenderer renderer = new ConsoleRenderer(new BufferedWriter(
+                    new OutputStreamWriter(OutputStream.nullOutputStream()), 1 << 16), Integer.MAX_VALUE);
+            start = System.nanoTime();
+            renderer.header("Available Cars", manager.countAvailable());
+            renderer.page(manager.availableCarsIterator(), ConsoleRenderer::car);
+            long renderedCars = System.nanoTime() - start;
+            start = System.nanoTime();
+            renderer.page(history.iterator(), ConsoleRenderer::completedRental);
+            long renderedHistory = System.nanoTime() - start;
+
+            System.out.printf("%,d cars: println %,6.1f ms | renderer %,6.1f ms || %,d history rows: println %,6.1f ms | renderer %,6.1f ms%n",
+                    manager.countAvailable(), printlnCars / 1e6, renderedCars / 1e6, history.size(),
+                    printlnHistory / 1e6, renderedHistory / 1e6);
+        }
+        ConsoleRenderer firstPage = new ConsoleRenderer(new BufferedWriter(
+                new OutputStreamWriter(OutputStream.nullOutputStream())), 20);
+        double pageNanos = timePerCall(1_000, () -> {
+            firstPage.header("Available Cars", manager.countAvailable());
+            return firstPage.page(manager.availableCarsIterator(), ConsoleRenderer::car);
+        });
+        System.out.printf("First page of 20 with its count header: %,.1f us (listing used to copy all %,d cars first)%n",
+                pageNanos / 1e3, manager.countAvailable());
+    }
+
+    // Compares the customer prefix index with scanning every customer for the same top 10, and
+    // times adding customers one at a time while the index is kept up to date.
+    private static void benchmarkCustomerSearch() {
+        System.out.println("\n== searchCustomers: prefix index vs. full scan ==");
+        String[] queries = {"pri", "rahul sh", "98", "9876543"};
+        for (int customerCount : new int[] {10_000, 100_000, 500_000}) {
+            List<Customer> customers = FleetGenerator.customers(customerCount, 91);
+            RentalManager manager = new RentalManager();
+            manager.addCustomers(customers);
+
+            int iterations = Math.max(10, 5_000_000 / customerCount);
+            for (String query : queries) {
+                double indexed = timePerCall(20_000, () -> manager.searchCustomers(query, 10).size());
+                double scanned = timePerCall(iterations, () -> scanCustomers(customers, query, 10).size());
+                System.out.printf("%,9d customers | %-10s | index %,10.1f ns | scan %,14.1f ns | %,8.0fx%n",
+                        customerCount, "\"" + query + "\"", indexed, scanned, scanned / indexed);
+            }
+
+            RentalManager oneByOne = new RentalManager();
+            long start = System.nanoTime();
+            customers.forEach(oneByOne::addCustomer);
+            System.out.printf("%,9d customers | addCustomer one at a time: %,.0f ns each%n",
+                    customerCount, (double) (System.nanoTime() - start) / customerCount);
+        }
+    }
+
+    // Times a tick of the overdue tracker, which only touches the rentals that just expired, against
+    // scanning every active rental for ones past due, as the number of active rentals grows.
+    private static void benchmarkOverdue() {
+        System.out.println("\n== Overdue checks: tick vs. scanning active rentals ==");
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now();
+        for (int active : new int[] {10_000, 100_000, 1_000_000}) {
+            RentalManager manager = new RentalManager();
+            List<Car> fleet = FleetGenerator.cars(active, 23);
+            manager.addCars(fleet);
+            Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+            manager.addCustomer(customer);
+            Random random = new Random(23);
+            for (Car car : fleet) {
+                manager.rentCar(car, customer, 1 + random.nextInt(365)); // About 1 in 365 expire each day.
+            }
+            OverdueTracker tracker = manager.getOverdueTracker();
+
+            long tickNanos = 0;
+            int expired = 0;
+            for (int day = 1; day <= 30; day++) {
+                tracker.setClock(Clock.fixed(today.plusDays(day).atStartOfDay(zone).toInstant(), zone));
+                long start = System.nanoTime();
+                expired += tracker.tick();
+                tickNanos += System.nanoTime() - start;
+            }
+            LocalDate checkDay = today.plusDays(30);
+            double scanNanos = timePerCall(Math.max(3, 3_000_000 / active), () -> {
+                int late = 0;
+                for (Rental rental : manager.getAllActiveRentals()) {
+                    if (rental.getDueDate().isBefore(checkDay)) {
+                        late++;
+                    }
+                }
+                return late;
+            });
+            System.out.printf("%,9d active rentals | tick %,10.1f us per day (%,d expire a day) | scan %,10.1f us%n",
+                    active, tickNanos / 30 / 1e3, expired / 30, scanNanos / 1e3);
+        }
+    }
+
+    // Measures what publishing change events adds to a rent+return, then how many events per second
+    // get through the ring to 1, 2 and 4 consumers polling on their own threads under each policy.
+    private static void benchmarkEvents() throws Exception {
+        System.out.println("\n== Change events: publish cost and throughput ==");
+        RentalManager manager = new RentalManager();
+        List<Car> fleet = FleetGenerator.cars(1_000, 17);
+        manager.addCars(fleet);
+        Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+        manager.addCustomer(customer);
+        Car[] cars = fleet.toArray(new Car[0]);
+        int[] next = new int[1];
+        IntSupplier rentAndReturn = () -> {
+            Car car = cars[next[0]++ % cars.length];
+            manager.rentCar(car, customer, 3);
+            return manager.returnCar(car) ? 1 : 0;
+        };
+        RentalEventStream stream = new RentalEventStream(1 << 16, RentalEventStream.Policy.OVERWRITE_OLDEST);
+        double withoutNanos = Double.MAX_VALUE;
+        double withNanos = Double.MAX_VALUE;
+        for (int round = 0; round < 3; round++) { // Alternated, best of three, so GC of the growing history evens out.
+            manager.setEventStream(null);
+            withoutNanos = Math.min(withoutNanos, timePerCall(200_000, rentAndReturn));
+            manager.setEventStream(stream);
+            withNanos = Math.min(withNanos, timePerCall(200_000, rentAndReturn));
+        }
+        manager.setEventStream(null);
+        double publishNanos = timePerCall(2_000_000,
+                () -> stream.publish(RentalEventStream.Type.RENTED, "C1", "CUS001", 3, 20_000, 750_000) ? 1 : 0);
+        System.out.printf("rent+return: %,.0f ns without a stream, %,.0f ns with one | one publish: %,.1f ns%n",
+                withoutNanos, withNanos, publishNanos);
+
+        int events = 5_000_000;
+        for (RentalEventStream.Policy policy : RentalEventStream.Policy.values()) {
+            for (int consumerCount : new int[] {1, 2, 4}) {
+                RentalEventStream ring = new RentalEventStream(1 << 16, policy);
+                List<RentalEventStream.Consumer> consumers = new ArrayList<>();
+                long[] received = new long[consumerCount];
+                for (int i = 0; i < consumerCount; i++) {
+                    int index = i;
+                    RentalEventStream.Consumer consumer = ring.subscribe(256);
+                    consumer.start((batch, count) -> received[index] += count);
+                    consumers.add(consumer);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < events; i++) {
+                    ring.publish(RentalEventStream.Type.RENTED, "C1", "CUS001", 3, 20_000, i);
+                }
+                long published = System.nanoTime() - start;
+                long deadline = System.nanoTime() + 10_000_000_000L;
+                while (System.nanoTime() < deadline && consumers.stream().anyMatch(consumer -> consumer.getLag() > 0)) {
+                    Thread.sleep(1);
+                }
+                long drained = System.nanoTime() - start;
+                consumers.forEach(RentalEventStream.Consumer::close);
+                long delivered = Arrays.stream(received).sum();
+                long lost = policy == RentalEventStream.Policy.DROP_NEWEST ? ring.getDropped()
+                        : consumers.stream().mapToLong(RentalEventStream.Consumer::getMissed).sum();
+                System.out.printf("%-16s | %d consumers | publish %,6.1f M events/s | delivered %,6.1f M events/s in total | %s %,d%n",
+                        policy, consumerCount, events / (published / 1e9) / 1e6, delivered / (drained / 1e9) / 1e6,
+                        policy == RentalEventStream.Policy.DROP_NEWEST ? "dropped" : "missed", lost);
+            }
+        }
+    }
+
+    // Mixes searches with rents and returns, one rent or return per so many searches, and reports the
+    // cache hit rate and the average search time. Only the SUVs are ever rented, so the searches that
+    // can't match an SUV should stay cached throughout.
+    private static void benchmarkSearchCache() {
+        System.out.println("\n== Search cache under a read-mostly mix ==");
+        String[] queries = {"", "suv", "hyundai", "hyundai creta", "maruti swift", "honda city", "sedan", "kia"};
+        List<Car> fleet = FleetGenerator.cars(100_000, 64);
+        Car[] suvs = fleet.stream().filter(car -> car.getType() == Car.CarType.SUV).toArray(Car[]::new);
+        Customer customer = new Customer("CUS001", "Bench Customer", "9000000000");
+        for (int searchesPerChange : new int[] {1, 10, 100, 1_000}) {
+            RentalManager manager = new RentalManager();
+            manager.addCars(fleet);
+            manager.addCustomer(customer);
+            Random random = new Random(64);
+            int searches = 200_000;
+            long searchNanos = 0;
+            for (int i = 0; i < searches; i++) {
+                if (i % searchesPerChange == 0) {
+                    Car car = suvs[random.nextInt(suvs.length)];
+                    if (!manager.rentCar(car, customer, 2)) {
+                        manager.returnCar(car);
+                    }
+                }
+                String query = queries[random.nextInt(queries.length)];
+                long start = System.nanoTime();
+                manager.searchAvailableCars(query);
+                searchNanos += System.nanoTime() - start;
+            }
+            SearchCache cache = manager.getSearchCache();
+            System.out.printf("1 change per %,5d searches | hit rate %5.1f%% | %,10.0f ns per search%n", searchesPerChange,
+                    100.0 * cache.getHits() / (cache.getHits() + cache.getMisses()), (double) searchNanos / searches);
+        }
+    }
+
+    // What finding a customer took before the index: check everyone's name words and phone in turn.
+    private static List<Customer> scanCustomers(List<Customer> customers, String query, int limit) {
+        String[] words = query.toLowerCase(Locale.ROOT).split("\\s+");
+        List<Customer> matches = new ArrayList<>();
+        for (Customer customer : customers) {
+            String[] nameWords = customer.getName().toLowerCase(Locale.ROOT).split("\\s+");
+            String phone = customer.getContactPhone().replaceAll("[^0-9]", "");
+            boolean all = true;
+            for (String word : words) {
+                boolean found = phone.startsWith(word);
+                for (int i = 0; i < nameWords.length && !found; i++) {
+                    found = nameWords[i].startsWith(word);
+                }
+                all &= found;
+            }
+            if (all && matches.size() < limit) {
+                matches.add(customer);
+            }
+        }
+        return matches;
+    }
+
+    // Copies a manager's state into a new one a record at a time and returns how long that took.
+    private static long addRecordByRecord(RentalManager original) {
+        long start = System.nanoTime();
+        RentalManager copy = new RentalManager();
+        for (Car car : original.getAllCars()) {
+            copy.addCar(new Car(car.getCarId(), car.getBrand(), car.getModel(), car.getBasePricePerDay(), car.getType()));
+        }
+        original.getAllCustomers().forEach(copy::addCustomer);
+        for (Rental rental : original.getAllActiveRentals()) {
+            copy.startRental(new Rental(copy.findCarById(rental.getCar().getCarId()), rental.getCustomer(), rental.getDays(),
+                    rental.getRentalDate(), rental.getQuotedPricePaise()));
+        }
+        original.rentalHistoryIterator().forEachRemaining(copy::restoreCompletedRental);
+        return System.nanoTime() - start;
+    }
+
+    // Rents out the whole fleet, queues up waiting requests, then times returning every car, each of
+    // which goes straight to the next customer in line.
+    private static void benchmarkWaitlist() {
+        System.out.println("\n== Waitlist hand-over on return ==");
+        for (int round = 0; round < 3; round++) {
+            timeReturnsWithWaitlist(100_000, false); // Warm-up.
+        }
+        for (int waiting : new int[] {0, 10_000, 100_000, 1_000_000}) {
+            timeReturnsWithWaitlist(waiting, true);
+        }
+    }
+
+    private static void timeReturnsWithWaitlist(int waiting, boolean print) {
+        RentalManager manager = new RentalManager();
+        List<Car> fleet = FleetGenerator.cars(10_000, 71);
+        List<Customer> customers = FleetGenerator.customers(1_000, 73);
+        manager.addCars(fleet);
+        manager.addCustomers(customers);
+        for (Car car : fleet) {
+            manager.rentCar(car, customers.get(0), 2);
+        }
+        Random random = new Random(75);
+        Car.CarType[] types = Car.CarType.values();
+        List<CompletableFuture<Rental>> requests = new ArrayList<>(waiting);
+        for (int i = 0; i < waiting; i++) {
+            requests.add(manager.requestCar(customers.get(random.nextInt(customers.size())),
+                    types[random.nextInt(types.length)], null, 1 + random.nextInt(7), random.nextInt(3)));
+        }
+        long start = System.nanoTime();
+        int returned = manager.returnAll(fleet);
+        long elapsed = System.nanoTime() - start;
+        long served = requests.stream().filter(CompletableFuture::isDone).count();
+        if (print) {
+            System.out.printf("%,9d waiting | %,8.0f ns per return | %,d cars handed over | %,d still waiting%n",
+                    waiting, (double) elapsed / returned, served, manager.getWaitlistSize());
+        }
+    }
+
+    // Roughly how many bytes of heap the objects made by the factory take, with their IDs and the array holding them.
+    private static long heapUsedBy(int count, IntFunction<Object> factory) {
+        long before = settledHeapUsed();
+        Object[] records = new Object[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = factory.apply(i);
+        }
+        long used = settledHeapUsed() - before;
+        if (records[count - 1] == null) {
+            System.out.print(""); // Keeps the records reachable until after the measurement.
+        }
+        return used;
+    }
+
+    private static long settledHeapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Car and Customer as they were before the compact layout.
+    private static class LegacyCar {
+        private final String carId;
+        private final String brand;
+        private final String model;
+        private final double basePricePerDay;
+        private final long basePricePaise;
+        private final AtomicBoolean available = new AtomicBoolean(true);
+        private final Car.CarType type;
+
+        private LegacyCar(String carId, String brand, String model, double basePricePerDay, Car.CarType type) {
+            this.carId = carId;
+            this.brand = brand;
+            this.model = model;
+            this.basePricePerDay = basePricePerDay;
+            this.basePricePaise = Math.round(basePricePerDay * 100);
+            this.type = type;
+        }
+    }
+
+    private static class LegacyCustomer {
+        private final String customerId;
+        private final String name;
+        private final String contactPhone;
+
+        private LegacyCustomer(String customerId, String name, String contactPhone) {
+            this.customerId = customerId;
+            this.name = name;
+            this.contactPhone = contactPhone;
+        }
+    }
+
+    // One operation of a multi-threaded benchmark. Returns something derived from its work
+    // so the JIT can't drop it.
+    private interface ThreadedTask {
+        int run(ThreadLocalRandom random);
+    }
+
+    // Runs the task on the given number of threads until the time is up and returns how many times it ran.
+    private static long runThreaded(int threads, long runMillis, ThreadedTask task) throws InterruptedException {
+        long[] operations = new long[threads];
+        long[] sinks = new long[threads];
+        long deadline = System.currentTimeMillis() + runMillis;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int slot = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long sink = 0;
+                while (System.currentTimeMillis() < deadline) {
+                    sink += task.run(random);
+                    count++;
+                }
+                operations[slot] = count;
+                sinks[slot] = sink;
+            });
+            workers[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += operations[t];
+        }
+        return total;
+    }
+
+    // Reads a comma-separated list of sizes such as "1000,100000".
+    private static int[] sizes(Map<String, String> options, String name, String defaults) {
+        return Arrays.stream(options.getOrDefault(name, defaults).split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim().replace("_", "")))
+                .toArray();
+    }
+
+    // --- Helpers ---
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    // Runs the task a few times to warm up, then returns the average nanoseconds per call.
+    private static double timePerCall(int iterations, IntSupplier task) {
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += task.getAsInt();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += task.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print(""); // Keeps the JIT from throwing the work away.
+        }
+        return (double) elapsed / iterations;
+    }
+}
@@ -0,0 +1,300 @@
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// A stream of changes (cars and customers added, cars rented and returned) for jobs like billing or
+// reporting that would otherwise have to poll the manager.
+//
+// Events go into a ring of pre-allocated slots, one array per field, so publishing allocates
+// nothing: a producer claims the next sequence number, writes the fields into slot (sequence mod
+// capacity) and then publishes the slot by storing its sequence number. Any thread may publish.
+// Consumers each keep their own position and read at their own pace, copying up to a batch of
+// events at a time into objects of their own; nothing a consumer does can hold up a producer.
+//
+// When a consumer falls a whole ring behind, the policy decides who loses out:
+//   OVERWRITE_OLDEST - producers carry on over the old events; the slow consumer notices the gap,
+//                      skips to the oldest event still in the ring and counts what it missed.
+//   DROP_NEWEST      - the new event is dropped (and counted) until the slowest consumer catches up.
+// Either way a producer never waits on a consumer.
+public class RentalEventStream {
+    private static final long WRITING = Long.MIN_VALUE; // A slot's sequence while a producer fills it.
+
+    public enum Type { CAR_ADDED, CUSTOMER_ADDED, RENTED, RETURNED }
+
+    public enum Policy { OVERWRITE_OLDEST, DROP_NEWEST }
+
+    // Gets each batch a consumer reads. The events are reused for the next batch, so copy what you keep.
+    public interface BatchHandler {
+        void onEvents(Event[] events, int count);
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final int capacity;
+    private final int mask;
+    private final Policy policy;
+    private final AtomicLong nextSequence = new AtomicLong(); // The next sequence a producer will claim.
+    private final AtomicLongArray published; // The sequence each slot holds, or WRITING.
+    private final byte[] types;
+    private final String[] carIds;
+    private final String[] customerIds;
+    private final int[] days;
+    private final long[] epochDays;
+    private final long[] pricesPaise;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long gate; // DROP_NEWEST: the slowest consumer's position when last looked at.
+
+    // The capacity is rounded up to a power of two.
+    public RentalEventStream(int capacity, Policy policy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("The ring needs at least two slots");
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.policy = policy;
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, i - this.capacity); // "Published a lap ago", so the first lap reads as not yet written.
+        }
+        this.types = new byte[this.capacity];
+        this.carIds = new String[this.capacity];
+        this.customerIds = new String[this.capacity];
+        this.days = new int[this.capacity];
+        this.epochDays = new long[this.capacity];
+        this.pricesPaise = new long[this.capacity];
+    }
+
+    // --- Publishing ---
+
+    public boolean carAdded(Car car) {
+        return publish(Type.CAR_ADDED, car.getCarId(), null, 0, 0, car.getBasePricePaise());
+    }
+
+    public boolean customerAdded(Customer customer) {
+        return publish(Type.CUSTOMER_ADDED, null, customer.getCustomerId(), 0, 0, 0);
+    }
+
+    // The price is the one quoted when the car was rented, or Rental.NOT_QUOTED.
+    public boolean rented(Rental rental) {
+        return publish(Type.RENTED, rental.getCar().getCarId(), rental.getCustomer().getCustomerId(), rental.getDays(),
+                rental.getRentalDate().toEpochDay(), rental.getQuotedPricePaise());
+    }
+
+    public boolean returned(CompletedRental rental) {
+        return publish(Type.RETURNED, rental.getCar().getCarId(), rental.getCustomer().getCustomerId(),
+                rental.getDaysRented(), rental.getReturnDate().toEpochDay(), rental.getFinalPricePaise());
+    }
+
+    // Puts an event in the ring. Returns false if it was dropped (DROP_NEWEST with the ring full).
+    public boolean publish(Type type, String carId, String customerId, int days, long epochDay, long pricePaise) {
+        long sequence = policy == Policy.DROP_NEWEST ? claimIfRoom() : nextSequence.getAndIncrement();
+        if (sequence < 0) {
+            dropped.increment();
+            return false;
+        }
+        int slot = (int) sequence & mask;
+        // Take the slot. It is only still being written, or already newer, if producers went a whole
+        // lap around the ring while one of them was writing, which can only happen with OVERWRITE_OLDEST.
+        while (true) {
+            long current = published.get(slot);
+            if (current == WRITING) {
+                Thread.onSpinWait();
+            } else if (current > sequence) {
+                return true; // Already overwritten by a later lap; consumers count this one as missed.
+            } else if (published.compareAndSet(slot, current, WRITING)) {
+                break;
+            }
+        }
+        types[slot] = (byte) type.ordinal();
+        carIds[slot] = carId;
+        customerIds[slot] = customerId;
+        this.days[slot] = days;
+        epochDays[slot] = epochDay;
+        pricesPaise[slot] = pricePaise;
+        published.set(slot, sequence); // Volatile store: the fields above are visible to whoever sees it.
+        return true;
+    }
+
+    // DROP_NEWEST: claims the next sequence if every consumer has room for it, else returns -1.
+    private long claimIfRoom() {
+        while (true) {
+            long sequence = nextSequence.get();
+            if (sequence - gate >= capacity) {
+                long slowest = slowestConsumer(sequence);
+                gate = slowest;
+                if (sequence - slowest >= capacity) {
+                    return -1;
+                }
+            }
+            if (nextSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private long slowestConsumer(long upTo) {
+        long slowest = upTo;
+        for (Consumer consumer : consumers) {
+            slowest = Math.min(slowest, consumer.position.get());
+        }
+        return slowest;
+    }
+
+    // --- Consuming ---
+
+    // Adds a consumer that reads up to batchSize events at a time, starting with the next one published.
+    public Consumer subscribe(int batchSize) {
+        Consumer consumer = new Consumer(batchSize, nextSequence.get());
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    // How many events have been published (or claimed) so far; the next event gets this sequence.
+    public long getPublished() {
+        return nextSequence.get();
+    }
+
+    // Events dropped because the ring was full (DROP_NEWEST only).
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // One event as a consumer sees it: a copy taken out of the ring.
+    public static final class Event {
+        private long sequence;
+        private Type type;
+        private String carId;
+        private String customerId;
+        private int days;
+        private long epochDay;
+        private long pricePaise;
+
+        // --- Getters ---
+        public long getSequence() { return sequence; }
+        public Type getType() { return type; }
+        public String getCarId() { return carId; } // Null for CUSTOMER_ADDED.
+        public String getCustomerId() { return customerId; } // Null for CAR_ADDED.
+        public int getDays() { return days; } // Days booked (RENTED) or charged (RETURNED).
+        public long getEpochDay() { return epochDay; } // The rental date (RENTED) or return date (RETURNED).
+        public long getPricePaise() { return pricePaise; } // Base price per day, quoted price, or final price.
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + type + " car=" + carId + " customer=" + customerId + " days=" + days
+                    + " day=" + epochDay + " price=" + pricePaise;
+        }
+    }
+
+    // Reads the stream from its own position, on the caller's thread (poll) or its own (start).
+    public final class Consumer {
+        private final AtomicLong position; // The next sequence to read; producers read it under DROP_NEWEST.
+        private final Event[] batch;
+        private final AtomicLong missed = new AtomicLong();
+        private ExecutorService thread;
+
+        private Consumer(int batchSize, long start) {
+            this.position = new AtomicLong(start);
+            this.batch = new Event[Math.max(1, batchSize)];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = new Event();
+            }
+        }
+
+        // Reads whatever has been published since the last call, up to one batch, hands it to the
+        // handler and returns how many events that was (0 if there was nothing new).
+        public int poll(BatchHandler handler) {
+            long sequence = position.get();
+            int count = 0;
+            while (count < batch.length) {
+                int slot = (int) sequence & mask;
+                long current = published.get(slot);
+                if (current == WRITING || current < sequence) {
+                    break; // Not published yet.
+                }
+                if (current == sequence) {
+                    Event event = batch[count];
+                    event.type = TYPES[types[slot]];
+                    event.carId = carIds[slot];
+                    event.customerId = customerIds[slot];
+                    event.days = days[slot];
+                    event.epochDay = epochDays[slot];
+                    event.pricePaise = pricesPaise[slot];
+                    VarHandle.acquireFence(); // Finish reading the fields before checking they weren't overwritten.
+                    if (published.get(slot) == sequence) {
+                        event.sequence = sequence++;
+                        count++;
+                        continue;
+                    }
+                }
+                // Lapped: the slot moved on to a later event. Skip to the oldest event still in the ring.
+                long oldest = Math.max(sequence + 1, nextSequence.get() - capacity);
+                missed.addAndGet(oldest - sequence);
+                sequence = oldest;
+            }
+            position.set(sequence); // Frees the slots for DROP_NEWEST producers before the handler runs.
+            if (count > 0) {
+                handler.onEvents(batch, count);
+            }
+            return count;
+        }
+
+        // Polls on a background thread (a virtual one where the JVM has them) until stopped, backing
+        // off to short sleeps while the stream is quiet.
+        public synchronized void start(BatchHandler handler) {
+            if (thread != null) {
+                return;
+            }
+            thread = VirtualThreads.newPerTaskExecutor("rental-events");
+            thread.execute(() -> {
+                int idle = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        if (poll(handler) > 0) {
+                            idle = 0;
+                        } else if (++idle < 100) {
+                            Thread.onSpinWait();
+                        } else {
+                            LockSupport.parkNanos(Math.min(1_000_000L, 1_000L * (idle - 99)));
+                        }
+                    } catch (RuntimeException e) {
+                        System.out.println("Error: Event consumer failed: " + e.getMessage());
+                    }
+                }
+            });
+        }
+
+        // Stops the background thread, if any, and leaves the stream.
+        public synchronized void close() {
+            if (thread != null) {
+                thread.shutdownNow();
+                thread = null;
+            }
+            consumers.remove(this);
+        }
+
+        // The next sequence this consumer will read.
+        public long getPosition() {
+            return position.get();
+        }
+
+        // Events this consumer never saw because producers lapped it (OVERWRITE_OLDEST only).
+        public long getMissed() {
+            return missed.get();
+        }
+
+        // How far behind the producers this consumer is.
+        public long getLag() {
+            return Math.max(0, nextSequence.get() - position.get());
+        }
+    }
+}
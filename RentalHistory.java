@@ -0,0 +1,306 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Stores every completed rental, plus per-customer and per-car posting lists of row numbers.
+// Looking up someone's history costs O(k) for their k records, no matter how big the whole history gets.
+// The records themselves live in a columnar HistoryArchive off the heap and only become
+// CompletedRental objects when a caller reads them.
+// Appends take a short lock; readers never lock and just see a consistent prefix of each list.
+// Every append also feeds the running RentalAnalytics totals.
+public class RentalHistory implements Iterable<CompletedRental> {
+    private static final int BACKFILL_CHUNK = 1 << 14; // Rows a single backfill task handles without splitting.
+
+    private final HistoryArchive archive;
+    private final OrdinalRegistry<Car> carOrdinals;
+    private final OrdinalRegistry<Customer> customerOrdinals;
+    private final Map<String, Postings> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, Postings> byCar = new ConcurrentHashMap<>();
+    private volatile RentalAnalytics analytics = new RentalAnalytics();
+    private List<CompletedRental> deferred; // Rentals returned while older rows are still loading; guarded by this.
+
+    public RentalHistory(HistoryArchive archive, OrdinalRegistry<Car> carOrdinals,
+                         OrdinalRegistry<Customer> customerOrdinals) {
+        this.archive = archive;
+        this.carOrdinals = carOrdinals;
+        this.customerOrdinals = customerOrdinals;
+    }
+
+    // Appends a completed rental to the history. Its car and customer must already be registered.
+    public synchronized void add(CompletedRental rental) {
+        String carId = rental.getCar().getCarId();
+        String customerId = rental.getCustomer().getCustomerId();
+        int carOrdinal = carOrdinals.ordinalOf(carId);
+        int customerOrdinal = customerOrdinals.ordinalOf(customerId);
+        if (carOrdinal < 0 || customerOrdinal < 0) {
+            throw new IllegalArgumentException("Unknown car or customer in rental history: " + carId + ", " + customerId);
+        }
+        if (deferred != null) {
+            deferred.add(rental); // Goes in after the older rows, once they are loaded.
+            return;
+        }
+
+        int row = archive.append(carOrdinal, customerOrdinal, rental.getRentalDate().toEpochDay(),
+                rental.getReturnDate().toEpochDay(), rental.getDaysRented(), rental.getFinalPricePaise());
+        byCustomer.computeIfAbsent(customerId, id -> new Postings()).add(row);
+        byCar.computeIfAbsent(carId, id -> new Postings()).add(row);
+        analytics.record(rental.getCar().getType(), rental.getCar().getBrand(), rental.getRentalDate().toEpochDay(),
+                rental.getReturnDate().toEpochDay(), rental.getDaysRented(), rental.getFinalPricePaise());
+    }
+
+    // Holds back rentals added from now on until stopDeferring(), so rows loaded meanwhile with addAll()
+    // (e.g. from a snapshot in the background) still come before them, oldest first.
+    public synchronized void startDeferring() {
+        if (deferred == null) {
+            deferred = new ArrayList<>();
+        }
+    }
+
+    // Appends the rentals held back since startDeferring() and goes back to appending straight away.
+    public synchronized void stopDeferring() {
+        List<CompletedRental> held = deferred;
+        deferred = null;
+        if (held != null) {
+            held.forEach(this::add);
+        }
+    }
+
+    // Appends count rows at once, given as columns, e.g. when loading a snapshot. Cars and customers
+    // are given by ordinal and must already be registered. The rows are copied into the archive in bulk
+    // but not fed to the analytics; call rebuildAnalytics() once the whole history is in.
+    public synchronized void addAll(int count, int[] carOrdinalColumn, int[] customerOrdinalColumn, int[] rentalEpochDays,
+                                    int[] returnEpochDays, int[] daysRented, long[] finalPricesPaise) {
+        int cars = carOrdinals.size();
+        int customers = customerOrdinals.size();
+        for (int i = 0; i < count; i++) {
+            if (carOrdinalColumn[i] < 0 || carOrdinalColumn[i] >= cars
+                    || customerOrdinalColumn[i] < 0 || customerOrdinalColumn[i] >= customers) {
+                throw new IllegalArgumentException("Unknown car or customer ordinal in rental history: "
+                        + carOrdinalColumn[i] + ", " + customerOrdinalColumn[i]);
+            }
+        }
+
+        int first = archive.appendAll(count, carOrdinalColumn, customerOrdinalColumn, rentalEpochDays, returnEpochDays,
+                daysRented, finalPricesPaise);
+        for (int i = 0; i < count; i++) {
+            byCustomer.computeIfAbsent(customerOrdinals.get(customerOrdinalColumn[i]).getCustomerId(), id -> new Postings())
+                    .add(first + i);
+            byCar.computeIfAbsent(carOrdinals.get(carOrdinalColumn[i]).getCarId(), id -> new Postings()).add(first + i);
+        }
+    }
+
+    // --- Analytics ---
+
+    public RentalAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    // Rebuilds the analytics from every row in the archive, splitting the rows across the pool.
+    // New rentals recorded meanwhile go straight into the new totals, so nothing is counted twice
+    // or missed; until the rebuild finishes the new totals only cover part of the history.
+    public RentalAnalytics rebuildAnalytics(ForkJoinPool pool) {
+        RentalAnalytics fresh = new RentalAnalytics();
+        int rows;
+        synchronized (this) {
+            rows = archive.size();
+            analytics = fresh; // Rows from here on are recorded by add().
+        }
+        pool.invoke(new Backfill(fresh, 0, rows));
+        return fresh;
+    }
+
+    // Feeds rows [from, to) into the analytics, splitting big ranges in half.
+    private class Backfill extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RentalAnalytics target;
+        private final int from;
+        private final int to;
+
+        private Backfill(RentalAnalytics target, int from, int to) {
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BACKFILL_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Backfill(target, from, middle), new Backfill(target, middle, to));
+                return;
+            }
+            for (int row = from; row < to; row++) {
+                Car car = carOrdinals.get(archive.carOrdinal(row));
+                target.record(car.getType(), car.getBrand(), archive.rentalEpochDay(row), archive.returnEpochDay(row),
+                        archive.daysRented(row), archive.finalPricePaise(row));
+            }
+        }
+    }
+
+    public int size() {
+        return archive.size();
+    }
+
+    // Walks the whole history, oldest first, up to the records that existed when it was called.
+    @Override
+    public Iterator<CompletedRental> iterator() {
+        int count = archive.size();
+        return new Iterator<CompletedRental>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public CompletedRental next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                return materialize(next++);
+            }
+        };
+    }
+
+    // --- Per-customer lookups ---
+
+    // Gets a customer's full history, oldest first.
+    public List<CompletedRental> forCustomer(String customerId) {
+        return oldestFirst(byCustomer.get(customerId));
+    }
+
+    // Gets one page of a customer's history, most recent first.
+    public List<CompletedRental> customerPage(String customerId, int offset, int limit) {
+        return page(byCustomer.get(customerId), offset, limit);
+    }
+
+    // Walks a customer's history most recent first without copying it into a list.
+    public Iterator<CompletedRental> customerIterator(String customerId) {
+        return new NewestFirstIterator(byCustomer.get(customerId));
+    }
+
+    // How many records a customer has.
+    public int customerCount(String customerId) {
+        Postings postings = byCustomer.get(customerId);
+        return postings == null ? 0 : postings.size;
+    }
+
+    // Adds up what a customer has paid, in paise, straight from the price column.
+    public long customerTotalPaise(String customerId) {
+        Postings postings = byCustomer.get(customerId);
+        if (postings == null) {
+            return 0;
+        }
+        int count = postings.size;
+        int[] rows = postings.rows;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += archive.finalPricePaise(rows[i]);
+        }
+        return total;
+    }
+
+    // --- Per-car lookups ---
+
+    public List<CompletedRental> forCar(String carId) {
+        return oldestFirst(byCar.get(carId));
+    }
+
+    public List<CompletedRental> carPage(String carId, int offset, int limit) {
+        return page(byCar.get(carId), offset, limit);
+    }
+
+    public Iterator<CompletedRental> carIterator(String carId) {
+        return new NewestFirstIterator(byCar.get(carId));
+    }
+
+    // --- Helpers ---
+
+    // Turns one archive row back into a CompletedRental.
+    private CompletedRental materialize(int row) {
+        return new CompletedRental(
+                carOrdinals.get(archive.carOrdinal(row)),
+                customerOrdinals.get(archive.customerOrdinal(row)),
+                LocalDate.ofEpochDay(archive.rentalEpochDay(row)),
+                LocalDate.ofEpochDay(archive.returnEpochDay(row)),
+                archive.daysRented(row),
+                archive.finalPricePaise(row));
+    }
+
+    private List<CompletedRental> oldestFirst(Postings postings) {
+        if (postings == null) {
+            return new ArrayList<>();
+        }
+        int count = postings.size;
+        int[] rows = postings.rows;
+        List<CompletedRental> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(materialize(rows[i]));
+        }
+        return result;
+    }
+
+    private List<CompletedRental> page(Postings postings, int offset, int limit) {
+        List<CompletedRental> result = new ArrayList<>();
+        if (postings == null) {
+            return result;
+        }
+        int count = postings.size;
+        int[] rows = postings.rows;
+        for (int i = count - 1 - offset; i >= 0 && result.size() < limit; i--) {
+            result.add(materialize(rows[i]));
+        }
+        return result;
+    }
+
+    // A growable list of row numbers. Only written under the history's lock; size is
+    // published last, so a reader that sees size n can safely read the first n entries.
+    private static class Postings {
+        private volatile int[] rows = new int[4];
+        private volatile int size;
+
+        private void add(int row) {
+            int[] array = rows;
+            if (size == array.length) {
+                array = Arrays.copyOf(array, array.length * 2);
+                rows = array;
+            }
+            array[size] = row;
+            size = size + 1;
+        }
+    }
+
+    // Walks a posting list backwards from the entries that existed when it was created.
+    private class NewestFirstIterator implements Iterator<CompletedRental> {
+        private final int[] rows;
+        private int next;
+
+        private NewestFirstIterator(Postings postings) {
+            int count = postings == null ? 0 : postings.size;
+            this.rows = postings == null ? new int[0] : postings.rows;
+            this.next = count - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public CompletedRental next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            return materialize(rows[next--]);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+// A small HTTP/JSON front-end for a RentalManager, built on the JDK's own HTTP server.
+// Every request runs on its own (virtual, where available) thread, so many operators and
+// API clients can use the same manager at once.
+//
+// Endpoints (parameters go in the query string or a form-encoded body):
+//   GET  /cars?q=...                          available cars, optionally filtered by a search
+//   GET  /cars/rented                         rented cars
+//   GET  /customers                           all customers
+//   GET  /customers/{id}/history?offset=&limit= a customer's rentals, most recent first
+//   POST /rentals?carId=..&customerId=..&days=..
+//   POST /returns?carId=..
+//   GET  /metrics                             counters, latencies and gauges as plain text
+//   GET  /analytics?month=YYYY-MM             revenue and rentals per type and brand, plus that month's
+//                                             revenue and utilization (defaults to the current month)
+public class RentalHttpServer {
+    private final RentalManager rentalManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public RentalHttpServer(RentalManager rentalManager, int port) throws IOException {
+        this.rentalManager = rentalManager;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = VirtualThreads.newPerTaskExecutor("rental-http");
+        server.setExecutor(executor);
+        server.createContext("/cars", exchange -> handle(exchange, "GET", this::handleCars));
+        server.createContext("/customers", exchange -> handle(exchange, "GET", this::handleCustomers));
+        server.createContext("/rentals", exchange -> handle(exchange, "POST", this::handleRent));
+        server.createContext("/returns", exchange -> handle(exchange, "POST", this::handleReturn));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::handleMetrics));
+        server.createContext("/analytics", exchange -> handle(exchange, "GET", this::handleAnalytics));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // The port actually in use (handy when the server was started on port 0).
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // --- Handlers ---
+
+    private void handleCars(HttpExchange exchange, Map<String, String> params) throws IOException {
+        List<Car> cars = exchange.getRequestURI().getPath().equals("/cars/rented")
+                ? rentalManager.getAllRentedCars()
+                : rentalManager.searchAvailableCars(params.get("q"));
+        try (Writer out = startJson(exchange, 200)) {
+            writeArray(out, cars.iterator(), this::writeCar);
+        }
+    }
+
+    private void handleCustomers(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        if (path.length == 4 && path[3].equals("history")) {
+            handleHistory(exchange, path[2], params);
+            return;
+        }
+        try (Writer out = startJson(exchange, 200)) {
+            writeArray(out, rentalManager.getAllCustomers().iterator(), this::writeCustomer);
+        }
+    }
+
+    private void handleHistory(HttpExchange exchange, String customerId, Map<String, String> params) throws IOException {
+        if (rentalManager.findCustomerById(customerId) == null) {
+            sendError(exchange, 404, "No customer found with that ID.");
+            return;
+        }
+        int offset = intParam(params, "offset", 0);
+        int limit = intParam(params, "limit", Integer.MAX_VALUE);
+        // Streams straight off the history iterator, so a long history is never copied into a list.
+        Iterator<CompletedRental> history = rentalManager.customerRentalHistoryIterator(customerId);
+        for (int skipped = 0; skipped < offset && history.hasNext(); skipped++) {
+            history.next();
+        }
+        Iterator<CompletedRental> page = new Iterator<CompletedRental>() {
+            private int written;
+
+            @Override
+            public boolean hasNext() {
+                return written < limit && history.hasNext();
+            }
+
+            @Override
+            public CompletedRental next() {
+                written++;
+                return history.next();
+            }
+        };
+        try (Writer out = startJson(exchange, 200)) {
+            writeArray(out, page, this::writeCompletedRental);
+        }
+    }
+
+    private void handleRent(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Car car = rentalManager.findCarById(params.getOrDefault("carId", ""));
+        Customer customer = rentalManager.findCustomerById(params.getOrDefault("customerId", ""));
+        int days = intParam(params, "days", 0);
+        if (car == null || customer == null || days <= 0) {
+            sendError(exchange, 400, "A valid carId, customerId and a positive number of days are required.");
+            return;
+        }
+        Rental rental = car.isAvailable() ? rentalManager.rent(car, customer, days) : null;
+        if (rental == null) {
+            sendError(exchange, 409, "Car is not available for rent.");
+            return;
+        }
+        try (Writer out = startJson(exchange, 200)) {
+            out.write("{\"rented\":true,\"car\":");
+            writeCar(out, car);
+            // The price locked into the rental, not a fresh quote that a price change could have moved.
+            out.write(",\"days\":" + days + ",\"quotedPrice\":" + PricingEngine.rupees(rental.getQuotedPricePaise()) + "}");
+        }
+    }
+
+    private void handleReturn(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Car car = rentalManager.findCarById(params.getOrDefault("carId", ""));
+        if (car == null) {
+            sendError(exchange, 400, "A valid carId is required.");
+            return;
+        }
+        if (rentalManager.findActiveRental(car.getCarId()) == null || !rentalManager.returnCar(car)) {
+            sendError(exchange, 409, "This car is not currently rented.");
+            return;
+        }
+        try (Writer out = startJson(exchange, 200)) {
+            out.write("{\"returned\":true,\"car\":");
+            writeCar(out, car);
+            out.write("}");
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange, Map<String, String> params) throws IOException {
+        byte[] body = rentalManager.getMetrics().getTextDump().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    // Answered from the running totals, so this costs the same however long the history is.
+    private void handleAnalytics(HttpExchange exchange, Map<String, String> params) throws IOException {
+        YearMonth month;
+        try {
+            month = params.containsKey("month") ? YearMonth.parse(params.get("month")) : YearMonth.now();
+        } catch (DateTimeParseException e) {
+            sendError(exchange, 400, "month must look like 2024-05.");
+            return;
+        }
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.plusMonths(1).atDay(1);
+        RentalAnalytics analytics = rentalManager.getAnalytics();
+        try (Writer out = startJson(exchange, 200)) {
+            out.write("{\"totalRevenue\":" + PricingEngine.rupees(analytics.totalRevenuePaise())
+                    + ",\"rentals\":" + analytics.rentalCount()
+                    + ",\"averageDays\":" + analytics.averageRentalDays()
+                    + ",\"month\":{\"month\":\"" + month + "\",\"revenue\":" + PricingEngine.rupees(analytics.revenuePaiseForMonth(month))
+                    + ",\"utilization\":" + rentalManager.getFleetUtilization(start, end) + "},\"byType\":{");
+            Car.CarType[] types = Car.CarType.values();
+            for (int i = 0; i < types.length; i++) {
+                out.write((i > 0 ? "," : "") + "\"" + types[i] + "\":{\"revenue\":" + PricingEngine.rupees(analytics.revenuePaise(types[i]))
+                        + ",\"rentals\":" + analytics.rentalCount(types[i])
+                        + ",\"averageDays\":" + analytics.averageRentalDays(types[i])
+                        + ",\"utilization\":" + rentalManager.getFleetUtilization(types[i], start, end) + "}");
+            }
+            out.write("},\"revenueByBrand\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> brand : analytics.revenuePaiseByBrand().entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                writeString(out, brand.getKey());
+                out.write(":" + PricingEngine.rupees(brand.getValue()));
+                first = false;
+            }
+            out.write("}}");
+        }
+    }
+
+    // --- Plumbing ---
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    // Checks the method, parses the parameters and turns unexpected failures into a 500. A failure after
+    // the headers went out can't become a 500 any more, so the exchange is aborted instead: the exception
+    // is passed on without ending the body, the server drops the connection, and the client sees the
+    // response was cut short rather than taking a truncated body for a complete one.
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                sendError(exchange, 405, "Use " + method + " for this endpoint.");
+            } else {
+                handler.handle(exchange, readParams(exchange));
+            }
+        } catch (RuntimeException e) {
+            if (exchange.getResponseCode() >= 0) { // The headers have been sent.
+                System.out.println("Error: " + exchange.getRequestURI() + " failed part-way through the response: " + e);
+                throw e;
+            }
+            sendError(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        exchange.close(); // Ends the body; closing the writers from startJson only flushes them.
+    }
+
+    // Collects parameters from the query string and, for form posts, the body.
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream body = exchange.getRequestBody()) {
+                parseForm(new String(body.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        try {
+            return params.containsKey(name) ? Integer.parseInt(params.get(name)) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // Starts a chunked JSON response; whatever is written to the returned writer is streamed to the client.
+    // Closing the writer only flushes it: the body is ended by handle(), and only if nothing failed.
+    private static Writer startJson(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        OutputStream body = new FilterOutputStream(exchange.getResponseBody()) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        return new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 8192);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        try (Writer out = startJson(exchange, status)) {
+            out.write("{\"error\":");
+            writeString(out, message);
+            out.write("}");
+        }
+    }
+
+    private interface JsonWriter<T> {
+        void write(Writer out, T value) throws IOException;
+    }
+
+    private static <T> void writeArray(Writer out, Iterator<T> items, JsonWriter<T> writer) throws IOException {
+        out.write('[');
+        boolean first = true;
+        while (items.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            writer.write(out, items.next());
+            first = false;
+        }
+        out.write(']');
+    }
+
+    private void writeCar(Writer out, Car car) throws IOException {
+        out.write("{\"carId\":");
+        writeString(out, car.getCarId());
+        out.write(",\"brand\":");
+        writeString(out, car.getBrand());
+        out.write(",\"model\":");
+        writeString(out, car.getModel());
+        out.write(",\"type\":\"" + car.getType() + "\",\"pricePerDay\":" + PricingEngine.rupees(car.getBasePricePaise())
+                + ",\"available\":" + car.isAvailable() + "}");
+    }
+
+    private void writeCustomer(Writer out, Customer customer) throws IOException {
+        out.write("{\"customerId\":");
+        writeString(out, customer.getCustomerId());
+        out.write(",\"name\":");
+        writeString(out, customer.getName());
+        out.write(",\"phone\":");
+        writeString(out, customer.getContactPhone());
+        out.write("}");
+    }
+
+    private void writeCompletedRental(Writer out, CompletedRental rental) throws IOException {
+        out.write("{\"carId\":");
+        writeString(out, rental.getCar().getCarId());
+        out.write(",\"customerId\":");
+        writeString(out, rental.getCustomer().getCustomerId());
+        out.write(",\"rentalDate\":\"" + rental.getRentalDate() + "\",\"returnDate\":\"" + rental.getReturnDate()
+                + "\",\"days\":" + rental.getDaysRented() + ",\"finalPrice\":" + PricingEngine.rupees(rental.getFinalPricePaise()) + "}");
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,564 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// An append-only binary journal of every change made to a RentalManager.
+//
+// The data directory holds numbered generations: "snapshot-N.bin" is the full state at the moment
+// "journal-N.log" was started, so recovery loads the newest snapshot and replays the journal
+// segments from that generation on. Records are framed as [length][type][payload][crc32], and
+// a torn record at the end of the last segment (from a crash mid-write) is simply cut off.
+//
+// Writers only copy their record into an in-memory buffer. A background flusher thread writes
+// whole buffers to the FileChannel and forces them to disk according to the FsyncPolicy, so
+// when many sessions commit at once they share a single fsync (group commit).
+public class RentalJournal implements AutoCloseable {
+
+    // How hard the journal works to get each record onto the disk.
+    public enum FsyncPolicy {
+        EVERY_COMMIT, // Each change waits until its record is forced to disk. Concurrent changes share one fsync.
+        INTERVAL,     // Changes return at once; the journal is written and forced every fsyncIntervalMillis.
+        NEVER         // Changes return at once; records reach the OS every interval but are only forced on close.
+    }
+
+    private static final byte ADD_CAR = 1;
+    private static final byte ADD_CUSTOMER = 2;
+    private static final byte RENT = 3;   // With the price quoted at rent time, in paise.
+    private static final byte RETURN = 4; // The price in whole paise.
+    private static final byte RESERVE = 5;
+    private static final byte CANCEL_RESERVATION = 6;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 4; // length + type + crc
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalMillis;
+
+    // Everything below is guarded by "lock".
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private FileChannel channel;
+    private long generation;
+    private long appendedRecords;
+    private long durableRecords;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException writeFailure;
+
+    private final Thread flusher;
+    private ScheduledExecutorService checkpointScheduler;
+
+    // While a thread is inside beginBatch/endBatch: {nesting depth, number of its last record}.
+    private final ThreadLocal<long[]> openBatch = new ThreadLocal<>();
+
+    private RentalJournal(Path directory, FsyncPolicy policy, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.policy = policy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.flusher = new Thread(this::flushLoop, "rental-journal-flusher");
+        this.flusher.setDaemon(true);
+    }
+
+    // Opens the journal in the directory, loads the saved state into the (empty) manager and
+    // attaches the journal to it so every later change is logged.
+    public static RentalJournal open(Path directory, FsyncPolicy policy, long fsyncIntervalMillis,
+                                     RentalManager manager) throws IOException {
+        Files.createDirectories(directory);
+        RentalJournal journal = new RentalJournal(directory, policy, fsyncIntervalMillis);
+        journal.recover(manager);
+        journal.flusher.start();
+        manager.attachJournal(journal);
+        return journal;
+    }
+
+    // True if recovery found no snapshot and no journal records, i.e. this is a brand new data directory.
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return generation == 0 && channelSize() == 0;
+        }
+    }
+
+    // --- Logging changes ---
+
+    public void logAddCar(Car car) {
+        byte[] id = utf8(car.getCarId());
+        byte[] brand = utf8(car.getBrand());
+        byte[] model = utf8(car.getModel());
+        append(ADD_CAR, 6 + id.length + brand.length + model.length + 8 + 1, buffer -> {
+            putBytes(buffer, id);
+            putBytes(buffer, brand);
+            putBytes(buffer, model);
+            buffer.putDouble(car.getBasePricePerDay());
+            buffer.put((byte) car.getType().ordinal());
+        });
+    }
+
+    public void logAddCustomer(Customer customer) {
+        byte[] id = utf8(customer.getCustomerId());
+        byte[] name = utf8(customer.getName());
+        byte[] phone = utf8(customer.getContactPhone());
+        append(ADD_CUSTOMER, 6 + id.length + name.length + phone.length, buffer -> {
+            putBytes(buffer, id);
+            putBytes(buffer, name);
+            putBytes(buffer, phone);
+        });
+    }
+
+    public void logRent(Rental rental) {
+        byte[] carId = utf8(rental.getCar().getCarId());
+        byte[] customerId = utf8(rental.getCustomer().getCustomerId());
+        append(RENT, 4 + carId.length + customerId.length + 4 + 8 + 8, buffer -> {
+            putBytes(buffer, carId);
+            putBytes(buffer, customerId);
+            buffer.putInt(rental.getDays());
+            buffer.putLong(rental.getRentalDate().toEpochDay());
+            buffer.putLong(rental.getQuotedPricePaise());
+        });
+    }
+
+    public void logReturn(CompletedRental completedRental) {
+        byte[] carId = utf8(completedRental.getCar().getCarId());
+        append(RETURN, 2 + carId.length + 8 + 8, buffer -> {
+            putBytes(buffer, carId);
+            buffer.putLong(completedRental.getReturnDate().toEpochDay());
+            buffer.putLong(completedRental.getFinalPricePaise());
+        });
+    }
+
+    public void logReserve(Reservation reservation) {
+        byte[] id = utf8(reservation.getReservationId());
+        byte[] carId = utf8(reservation.getCar().getCarId());
+        byte[] customerId = utf8(reservation.getCustomer().getCustomerId());
+        append(RESERVE, 6 + id.length + carId.length + customerId.length + 8 + 8, buffer -> {
+            putBytes(buffer, id);
+            putBytes(buffer, carId);
+            putBytes(buffer, customerId);
+            buffer.putLong(reservation.getStartDate().toEpochDay());
+            buffer.putLong(reservation.getEndDate().toEpochDay());
+        });
+    }
+
+    public void logCancelReservation(Reservation reservation) {
+        byte[] id = utf8(reservation.getReservationId());
+        append(CANCEL_RESERVATION, 2 + id.length, buffer -> putBytes(buffer, id));
+    }
+
+    // --- Batches ---
+
+    // Starts a batch on this thread: records logged until the matching endBatch() don't wait for the
+    // disk one by one, endBatch() waits once for all of them. Batches can be nested.
+    // Under EVERY_COMMIT this means other threads may see a batched change before it is durable,
+    // but the caller that made it is only told it succeeded after endBatch().
+    public void beginBatch() {
+        long[] batch = openBatch.get();
+        if (batch == null) {
+            openBatch.set(new long[] {1, 0});
+        } else {
+            batch[0]++;
+        }
+    }
+
+    public void endBatch() {
+        long[] batch = openBatch.get();
+        if (batch == null) {
+            throw new IllegalStateException("endBatch() without beginBatch()");
+        }
+        if (--batch[0] > 0) {
+            return;
+        }
+        openBatch.remove();
+        if (policy == FsyncPolicy.EVERY_COMMIT && batch[1] > 0) {
+            awaitDurable(batch[1]);
+        }
+    }
+
+    // Copies one framed record into the pending buffer, and under EVERY_COMMIT waits until it is on disk
+    // (or, inside a batch, leaves the waiting to endBatch).
+    private void append(byte type, int payloadLength, Consumer<ByteBuffer> payload) {
+        long recordNumber;
+        synchronized (lock) {
+            checkUsable();
+            int recordLength = RECORD_OVERHEAD + payloadLength;
+            if (pending.remaining() < recordLength) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordLength));
+                pending.flip();
+                bigger.put(pending);
+                pending = bigger;
+            }
+            int start = pending.position();
+            pending.putInt(payloadLength);
+            pending.put(type);
+            payload.accept(pending);
+            CRC32 crc = new CRC32();
+            crc.update(pending.array(), start + 4, 1 + payloadLength);
+            pending.putInt((int) crc.getValue());
+
+            recordNumber = ++appendedRecords;
+            if (policy == FsyncPolicy.EVERY_COMMIT || start == 0) {
+                lock.notifyAll(); // Wake the flusher if it is idle.
+            }
+        }
+        long[] batch = openBatch.get();
+        if (batch != null) {
+            batch[1] = recordNumber;
+        } else if (policy == FsyncPolicy.EVERY_COMMIT) {
+            awaitDurable(recordNumber);
+        }
+    }
+
+    // Blocks until every record appended so far has been written (and forced, unless the policy is NEVER).
+    public void sync() {
+        long target;
+        synchronized (lock) {
+            target = appendedRecords;
+            flushRequested = true;
+            lock.notifyAll();
+        }
+        awaitDurable(target);
+    }
+
+    private void awaitDurable(long recordNumber) {
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (durableRecords < recordNumber) {
+                if (writeFailure != null) {
+                    throw new UncheckedIOException("Journal write failed", writeFailure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkUsable() {
+        if (writeFailure != null) {
+            throw new UncheckedIOException("Journal write failed", writeFailure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    // --- Background flushing ---
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            FileChannel target;
+            long batchEnd;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Keep going until close() says we are done.
+                    }
+                }
+                if (pending.position() == 0) {
+                    return; // Closed and fully flushed.
+                }
+                // Swap buffers so writers can keep appending while this batch goes to disk.
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                batchEnd = appendedRecords;
+                target = channel;
+                flushRequested = false;
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                batch.clear();
+                if (policy != FsyncPolicy.NEVER) {
+                    target.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    writeFailure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                durableRecords = batchEnd;
+                lock.notifyAll();
+                if (policy != FsyncPolicy.EVERY_COMMIT && !closed) {
+                    // Let a whole interval's worth of changes pile up before the next write.
+                    long deadline = System.currentTimeMillis() + fsyncIntervalMillis;
+                    long now;
+                    while (!flushRequested && !closed && (now = System.currentTimeMillis()) < deadline) {
+                        try {
+                            lock.wait(deadline - now);
+                        } catch (InterruptedException e) {
+                            // Keep going until close() says we are done.
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // --- Snapshots ---
+
+    // Writes a snapshot of the manager and starts the next journal generation. The manager calls this
+    // while holding its state lock, so no changes are in flight.
+    public void checkpoint(RentalManager manager) throws IOException {
+        sync();
+        long next;
+        synchronized (lock) {
+            next = generation + 1;
+        }
+        SnapshotFile.write(manager, snapshotPath(next));
+
+        FileChannel nextChannel = openSegment(next);
+        FileChannel oldChannel;
+        synchronized (lock) {
+            oldChannel = channel;
+            channel = nextChannel;
+            generation = next;
+        }
+        oldChannel.close();
+        deleteGenerationsBefore(next);
+    }
+
+    // Takes a checkpoint on a background thread every so often, keeping the journal tail short.
+    public void startPeriodicCheckpoints(RentalManager manager, long periodSeconds) {
+        checkpointScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rental-journal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                manager.checkpoint();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error: Checkpoint failed: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Flushes everything still pending, forces it to disk and stops the journal.
+    @Override
+    public void close() throws IOException {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdownNow();
+        }
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    // --- Recovery ---
+
+    private void recover(RentalManager manager) throws IOException {
+        long snapshotGeneration = 0;
+        for (long found : listGenerations("snapshot-", ".bin")) {
+            snapshotGeneration = Math.max(snapshotGeneration, found);
+        }
+        if (snapshotGeneration > 0) {
+            SnapshotFile.load(snapshotPath(snapshotGeneration), manager);
+        }
+
+        long lastGeneration = snapshotGeneration;
+        for (long segment : listGenerations("journal-", ".log")) {
+            if (segment >= snapshotGeneration) {
+                replaySegment(segment, manager);
+                lastGeneration = Math.max(lastGeneration, segment);
+            }
+        }
+
+        generation = lastGeneration;
+        channel = openSegment(lastGeneration);
+    }
+
+    // Applies every intact record in a segment, and cuts off a torn record at the end if there is one.
+    private void replaySegment(long segment, RentalManager manager) throws IOException {
+        Path path = segmentPath(segment);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        int validEnd = 0;
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int payloadLength = buffer.getInt();
+            if (payloadLength < 0 || buffer.remaining() < 1 + payloadLength + 4) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + 4, 1 + payloadLength);
+            int expected = buffer.getInt(start + 4 + 1 + payloadLength);
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+
+            byte type = buffer.get();
+            ByteBuffer payload = buffer.slice();
+            payload.limit(payloadLength);
+            apply(type, payload, manager);
+            buffer.position(start + RECORD_OVERHEAD + payloadLength);
+            validEnd = buffer.position();
+        }
+
+        if (validEnd < buffer.capacity()) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                file.truncate(validEnd);
+            }
+        }
+    }
+
+    private static void apply(byte type, ByteBuffer payload, RentalManager manager) {
+        switch (type) {
+            case ADD_CAR: {
+                String id = getString(payload);
+                String brand = getString(payload);
+                String model = getString(payload);
+                double price = payload.getDouble();
+                Car.CarType carType = Car.CarType.values()[payload.get()];
+                manager.addCar(new Car(id, brand, model, price, carType));
+                break;
+            }
+            case ADD_CUSTOMER:
+                manager.addCustomer(new Customer(getString(payload), getString(payload), getString(payload)));
+                break;
+            case RENT: {
+                Car car = manager.findCarById(getString(payload));
+                Customer customer = manager.findCustomerById(getString(payload));
+                int days = payload.getInt();
+                LocalDate rentalDate = LocalDate.ofEpochDay(payload.getLong());
+                long quotedPricePaise = payload.getLong();
+                if (car != null && customer != null) {
+                    manager.startRental(new Rental(car, customer, days, rentalDate, quotedPricePaise));
+                }
+                break;
+            }
+            case RETURN: {
+                Car car = manager.findCarById(getString(payload));
+                LocalDate returnDate = LocalDate.ofEpochDay(payload.getLong());
+                long finalPricePaise = payload.getLong();
+                if (car != null) {
+                    manager.returnCar(car, returnDate, finalPricePaise);
+                }
+                break;
+            }
+            case RESERVE: {
+                String id = getString(payload);
+                Car car = manager.findCarById(getString(payload));
+                Customer customer = manager.findCustomerById(getString(payload));
+                LocalDate start = LocalDate.ofEpochDay(payload.getLong());
+                LocalDate end = LocalDate.ofEpochDay(payload.getLong());
+                if (car != null && customer != null) {
+                    manager.placeReservation(new Reservation(id, car, customer, start, end));
+                }
+                break;
+            }
+            case CANCEL_RESERVATION:
+                manager.cancelReservation(getString(payload));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    // --- File helpers ---
+
+    private FileChannel openSegment(long segment) throws IOException {
+        return FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve("journal-" + segment + ".log");
+    }
+
+    private Path snapshotPath(long snapshot) {
+        return directory.resolve("snapshot-" + snapshot + ".bin");
+    }
+
+    private List<Long> listGenerations(String prefix, String suffix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .forEach(name -> {
+                        try {
+                            generations.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                        } catch (NumberFormatException e) {
+                            // Not one of ours.
+                        }
+                    });
+        }
+        return generations;
+    }
+
+    private void deleteGenerationsBefore(long keep) throws IOException {
+        for (long old : listGenerations("journal-", ".log")) {
+            if (old < keep) {
+                Files.deleteIfExists(segmentPath(old));
+            }
+        }
+        for (long old : listGenerations("snapshot-", ".bin")) {
+            if (old < keep) {
+                Files.deleteIfExists(snapshotPath(old));
+            }
+        }
+    }
+
+    private long channelSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
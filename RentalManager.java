@@ -1,93 +1,1103 @@
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 // Handles all the main logic for renting cars, managing customers, etc.
-public class RentalManager {
+// The manager is safe to share between many front-desk and API sessions: every collection is a
+// concurrent one and a car's availability is flipped atomically, so there is no global lock.
+public class RentalManager implements CarRentalService {
     private Map<String, Car> cars;
+    // The available and rented parts of the fleet, kept up to date by rentCar/returnCar so listing
+    // and counting them never has to walk the whole fleet.
+    private Map<String, Car> availableCars;
+    private Map<String, Car> rentedCars;
+    private Map<Car.CarType, Map<String, Car>> availableCarsByType;
+    private Map<Car.CarType, Map<String, Car>> rentedCarsByType;
+    private OrdinalRegistry<Car> carOrdinals; // Dense car numbers used by the search index.
+    private CarSearchIndex searchIndex;
+    private AvailabilityCalendar calendar; // Which days each car is booked, by rentals and reservations.
+    private Map<String, Reservation> reservations; // Keyed by reservation ID.
+    private AtomicLong reservationSequence;
     private Map<String, Customer> customers;
-    private List<Rental> activeRentals;
-    private List<CompletedRental> rentalHistory;
+    private OrdinalRegistry<Customer> customerOrdinals; // Dense customer numbers used by the history archive.
+    private CustomerSearchIndex customerSearchIndex; // Finds customers by the start of their name or phone.
+    private IdAllocator customerIds; // Hands out IDs for new customers.
+    private final Set<String> claimedCustomerIds = ConcurrentHashMap.newKeySet(); // Being logged, not yet added.
+    private Map<String, Rental> activeRentals; // Keyed by car ID, so returns don't have to scan.
+    private Map<String, Set<Rental>> activeRentalsByCustomer; // Keyed by customer ID.
+    private final Waitlist waitlist = new Waitlist(); // Customers waiting for a car to come back.
+    private final OverdueTracker overdueTracker; // Every active rental, filed by the day it becomes overdue.
+    private RentalHistory rentalHistory;
+    private volatile PricingEngine pricingEngine = PricingEngine.standard();
+    private final RentalMetrics metrics = new RentalMetrics(this);
+    private volatile RentalEventStream events; // Where changes are published, if anyone is listening.
+    private final SearchCache searchCache = new SearchCache(256); // Recent availability searches.
+    private volatile boolean publishCustomerEvents = true;
+
+    // A snapshot whose cars and customers are still being brought in (see SnapshotFile.load), or null.
+    // Until it is done, lookups by ID fetch what they need from it, anything that looks at the whole
+    // fleet or history waits for it, and loadLock keeps it from bringing in a car or customer that was
+    // added or replaced meanwhile.
+    private volatile SnapshotFile.Loading loading;
+    private volatile CompletableFuture<Void> loaded = CompletableFuture.completedFuture(null);
+    private final Object loadLock = new Object();
+
+    // Durability. While a journal is attached every change is logged, and each change holds the
+    // read side of stateLock so a checkpoint (the write side) sees a state that matches the journal.
+    // Changes on different cars still run side by side because read locks are shared.
+    private volatile RentalJournal journal;
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
 
     // Sets up our lists and maps when the manager is created.
+    // The rental history is kept off the heap in direct memory.
     public RentalManager() {
-        cars = new HashMap<>();
-        customers = new HashMap<>();
-        activeRentals = new ArrayList<>();
-        rentalHistory = new ArrayList<>();
+        this(HistoryArchive.inMemory());
+    }
+
+    // Same as above, but the rental history goes into the given archive (e.g. a memory-mapped file).
+    public RentalManager(HistoryArchive historyArchive) {
+        this(historyArchive, new OverdueTracker());
+    }
+
+    // Same again, with the active rentals filed in the given overdue tracker (which can be shared).
+    public RentalManager(HistoryArchive historyArchive, OverdueTracker overdueTracker) {
+        this.overdueTracker = overdueTracker;
+        cars = new ConcurrentHashMap<>();
+        availableCars = new ConcurrentHashMap<>();
+        rentedCars = new ConcurrentHashMap<>();
+        availableCarsByType = new EnumMap<>(Car.CarType.class);
+        rentedCarsByType = new EnumMap<>(Car.CarType.class);
+        for (Car.CarType type : Car.CarType.values()) {
+            availableCarsByType.put(type, new ConcurrentHashMap<>());
+            rentedCarsByType.put(type, new ConcurrentHashMap<>());
+        }
+        carOrdinals = new OrdinalRegistry<>();
+        searchIndex = new CarSearchIndex();
+        calendar = new AvailabilityCalendar();
+        reservations = new ConcurrentHashMap<>();
+        reservationSequence = new AtomicLong();
+        customers = new ConcurrentHashMap<>();
+        customerOrdinals = new OrdinalRegistry<>();
+        customerSearchIndex = new CustomerSearchIndex(customerOrdinals);
+        customerIds = new IdAllocator("CUS");
+        activeRentals = new ConcurrentHashMap<>();
+        activeRentalsByCustomer = new ConcurrentHashMap<>();
+        rentalHistory = new RentalHistory(historyArchive, carOrdinals, customerOrdinals);
+        overdueTracker.addListener(new OverdueTracker.Listener() {
+            @Override
+            public void onOverdue(Rental rental, LocalDate dueDate) {
+            }
+
+            // Past days can't be booked or searched any more, so their bitmaps only take up memory.
+            @Override
+            public void onNewDay(LocalDate today) {
+                calendar.forgetDaysBefore(today.toEpochDay());
+            }
+        });
     }
 
     // --- Methods for adding/updating data ---
 
     // Adds a new car to our system.
+    @Override
     public void addCar(Car car) {
-        cars.put(car.getCarId(), car);
+        addCars(Collections.singletonList(car));
+    }
+
+    // Adds a batch of cars. The search index is updated once for the whole batch, and with a
+    // journal attached the batch waits for the disk once instead of once per car.
+    @Override
+    public void addCars(List<Car> batch) {
+        RentalJournal journal = beginLoggedOp();
+        try {
+            if (journal != null) {
+                journal.beginBatch();
+                try {
+                    batch.forEach(journal::logAddCar);
+                } finally {
+                    journal.endBatch();
+                }
+            }
+            if (loading == null) {
+                putCars(batch);
+            } else {
+                synchronized (loadLock) {
+                    putCars(batch);
+                }
+            }
+        } finally {
+            searchCache.catalogChanged();
+            endLoggedOp(journal);
+        }
+    }
+
+    private void putCars(List<Car> batch) {
+        for (Car car : batch) {
+            Car previous = cars.put(car.getCarId(), car);
+            if (previous != null) {
+                // The new car replaces the old one with the same ID, so forget the old one's state.
+                availableCars.remove(previous.getCarId(), previous);
+                rentedCars.remove(previous.getCarId(), previous);
+                availableCarsByType.get(previous.getType()).remove(previous.getCarId(), previous);
+                rentedCarsByType.get(previous.getType()).remove(previous.getCarId(), previous);
+            }
+            if (car.isAvailable()) {
+                markAvailable(car);
+            } else {
+                markRented(car);
+            }
+        }
+        int[] ordinals = carOrdinals.registerAll(batch, Car::getCarId);
+        searchIndex.addAll(ordinals, batch);
+        calendar.registerAll(ordinals, batch);
+        RentalEventStream stream = events;
+        if (stream != null) {
+            batch.forEach(stream::carAdded);
+        }
     }
 
     // Adds a new customer.
+    @Override
     public void addCustomer(Customer customer) {
-        customers.put(customer.getCustomerId(), customer);
+        addCustomers(Collections.singletonList(customer));
+    }
+
+    // Adds a batch of customers, logging them to the journal as one batch.
+    @Override
+    public void addCustomers(List<Customer> batch) {
+        RentalJournal journal = beginLoggedOp();
+        try {
+            if (journal != null) {
+                journal.beginBatch();
+                try {
+                    batch.forEach(journal::logAddCustomer);
+                } finally {
+                    journal.endBatch();
+                }
+            }
+            if (loading == null) {
+                putCustomers(batch);
+            } else {
+                synchronized (loadLock) {
+                    putCustomers(batch);
+                }
+            }
+        } finally {
+            endLoggedOp(journal);
+        }
+    }
+
+    private void putCustomers(List<Customer> batch) {
+        for (Customer customer : batch) {
+            customers.put(customer.getCustomerId(), customer);
+            customerIds.observe(customer.getCustomerId());
+        }
+        int[] ordinals = customerOrdinals.registerAll(batch, Customer::getCustomerId);
+        customerSearchIndex.addAll(ordinals, batch);
+        publishCustomers(batch);
+    }
+
+    // Creates a customer under a freshly allocated ID. Unlike addCustomer, this never replaces an
+    // existing customer: if the ID turns out to be taken, it simply tries the next one.
+    @Override
+    public Customer registerNewCustomer(String name, String contactPhone) {
+        awaitLoaded(); // Until every customer is in, the allocator doesn't know which IDs are taken.
+        while (true) {
+            Customer customer = new Customer(customerIds.next(), name, contactPhone);
+            if (addCustomerIfAbsent(customer)) {
+                return customer;
+            }
+        }
+    }
+
+    // Adds the customer unless the ID is taken. Like recordRental, the ID is claimed first, then the
+    // customer is logged, and only then made visible, so nothing can see (or rent to) a customer the
+    // journal doesn't have yet.
+    private boolean addCustomerIfAbsent(Customer customer) {
+        String customerId = customer.getCustomerId();
+        if (customers.containsKey(customerId) || !claimedCustomerIds.add(customerId)) {
+            return false;
+        }
+        RentalJournal journal = beginLoggedOp();
+        try {
+            if (customers.containsKey(customerId)) {
+                return false; // Added by someone else before the claim.
+            }
+            if (journal != null) {
+                journal.logAddCustomer(customer); // Nothing is published yet if this throws.
+            }
+            putCustomers(Collections.singletonList(customer));
+            return true;
+        } finally {
+            endLoggedOp(journal);
+            claimedCustomerIds.remove(customerId);
+        }
+    }
+
+    // Rents a car to a customer. Returns true if the rental went through.
+    @Override
+    public boolean rentCar(Car car, Customer customer, int days) {
+        return rent(car, customer, days) != null;
+    }
+
+    // Rents a car to a customer and returns the new rental, or null if it didn't go through.
+    // The price is quoted now and kept with the rental, so it holds even if prices change before the return.
+    @Override
+    public Rental rent(Car car, Customer customer, int days) {
+        if (days <= 0) {
+            System.out.println("Error: Rental days must be positive.");
+            return null;
+        }
+        Rental rental = new Rental(car, customer, days, LocalDate.now(), quote(car, days));
+        return startRental(rental) ? rental : null;
+    }
+
+    // Starts a rental that has already been built, e.g. one replayed from the journal with its original date.
+    public boolean startRental(Rental rental) {
+        RentalJournal journal = beginLoggedOp();
+        try {
+            return startRental(rental, journal);
+        } finally {
+            endLoggedOp(journal);
+        }
+    }
+
+    // Starts a batch of rentals and returns how many went through. The state lock is taken once
+    // and, with a journal attached, the whole batch waits for the disk once.
+    public int rentAll(List<Rental> rentals) {
+        RentalJournal journal = beginLoggedOp();
+        if (journal != null) {
+            journal.beginBatch();
+        }
+        try {
+            int started = 0;
+            for (Rental rental : rentals) {
+                if (startRental(rental, journal)) {
+                    started++;
+                }
+            }
+            return started;
+        } finally {
+            if (journal != null) {
+                journal.endBatch();
+            }
+            endLoggedOp(journal);
+        }
     }
 
-    // Rents a car to a customer.
-    public void rentCar(Car car, Customer customer, int days) {
-        if (car.isAvailable()) {
-            car.rent();
-            activeRentals.add(new Rental(car, customer, days));
-        } else {
+    // The caller holds the state lock if there is a journal.
+    private boolean startRental(Rental rental, RentalJournal journal) {
+        long startNanos = metrics.startTimer();
+        boolean rented = tryStartRental(rental, journal);
+        metrics.record(RentalMetrics.Operation.RENT, startNanos);
+        return rented;
+    }
+
+    private boolean tryStartRental(Rental rental, RentalJournal journal) {
+        Car car = rental.getCar();
+        if (rental.getDays() <= 0) {
+            System.out.println("Error: Rental days must be positive.");
+            return false;
+        }
+        // car.rent() is atomic, so when two sessions race for the same car only one of them wins.
+        if (!car.rent()) {
+            metrics.countFailure(RentalMetrics.Failure.CAR_NOT_AVAILABLE);
             System.out.println("Error: Car is not available for rent.");
+            return false;
+        }
+        boolean recorded = false;
+        try {
+            recorded = recordRental(rental, journal);
+        } finally {
+            if (!recorded) {
+                car.returnCar(); // Nothing was recorded, so give the car back.
+            }
+            // Even a failed attempt had the car unavailable for a moment, which a search may have seen.
+            searchCache.availabilityChanged(car.getType());
         }
+        return recorded;
+    }
+
+    // Books, logs and records a rental of a car the caller already holds (car.rent() succeeded, or the
+    // car is being handed straight from a return to a waiting customer).
+    private boolean recordRental(Rental rental, RentalJournal journal) {
+        Car car = rental.getCar();
+        // The rental also holds the car in the calendar, so it can't clash with a reservation.
+        long start = rental.getRentalDate().toEpochDay();
+        int ordinal = carOrdinals.ordinalOf(car.getCarId());
+        // The return files the rental in the history, which only takes registered cars and customers;
+        // turn it away now rather than have the return fail after the rental is already closed.
+        if (ordinal < 0 || customerOrdinals.ordinalOf(rental.getCustomer().getCustomerId()) < 0) {
+            metrics.countFailure(RentalMetrics.Failure.NOT_REGISTERED);
+            System.out.println("Error: Car or customer is not registered.");
+            return false;
+        }
+        if (!calendar.tryBook(ordinal, start, start + rental.getDays(), rental)) {
+            metrics.countFailure(RentalMetrics.Failure.CAR_RESERVED);
+            System.out.println("Error: Car is reserved during that period.");
+            return false;
+        }
+        // Log before the rental becomes visible, so its return can never reach the journal first.
+        if (journal != null) {
+            try {
+                journal.logRent(rental);
+            } catch (RuntimeException e) {
+                calendar.release(ordinal, start, rental);
+                throw e;
+            }
+        }
+        markRented(car);
+        activeRentalsByCustomer.compute(rental.getCustomer().getCustomerId(), (id, rentals) -> {
+            if (rentals == null) {
+                rentals = ConcurrentHashMap.newKeySet();
+            }
+            rentals.add(rental);
+            return rentals;
+        });
+        overdueTracker.track(rental);
+        RentalEventStream stream = events;
+        if (stream != null) {
+            stream.rented(rental); // Before the return can happen, so RETURNED never comes first.
+        }
+        // Putting the rental in activeRentals is what lets returnCar find it, so it comes after the
+        // side indexes: a return racing with this can then never leave them holding a closed rental.
+        activeRentals.put(car.getCarId(), rental);
+        return true;
     }
 
     // Handles returning a car. It moves the rental record to our history.
-    public void returnCar(Car car) {
-        car.returnCar();
-        Rental rentalToRemove = null;
-        for (Rental rental : activeRentals) {
-            if (rental.getCar().equals(car)) {
-                rentalToRemove = rental;
-                break;
+    // Returns true if the car had an active rental that is now closed.
+    @Override
+    public boolean returnCar(Car car) {
+        return returnCar(car, LocalDate.now(), -1);
+    }
+
+    // Returns a car with a known return date and price in paise, used when replaying the journal.
+    // A negative price means "work it out with the current pricing engine".
+    public boolean returnCar(Car car, LocalDate returnDate, long finalPricePaise) {
+        RentalJournal journal = beginLoggedOp();
+        try {
+            return closeRental(car, journal, completeOn(returnDate, finalPricePaise));
+        } finally {
+            endLoggedOp(journal);
+        }
+    }
+
+    // Returns a batch of cars today and returns how many had an active rental. Like rentAll, the
+    // state lock is taken once and the journal waits for the disk once for the whole batch.
+    public int returnAll(List<Car> batch) {
+        Function<Rental, CompletedRental> complete = completeOn(LocalDate.now(), -1);
+        RentalJournal journal = beginLoggedOp();
+        if (journal != null) {
+            journal.beginBatch();
+        }
+        try {
+            int returned = 0;
+            for (Car car : batch) {
+                if (closeRental(car, journal, complete)) {
+                    returned++;
+                }
             }
+            return returned;
+        } finally {
+            if (journal != null) {
+                journal.endBatch();
+            }
+            endLoggedOp(journal);
+        }
+    }
+
+    // Turns a rental into its completed record. The price is the one given, else the one quoted when
+    // the car was rented, else whatever the engine says now.
+    private Function<Rental, CompletedRental> completeOn(LocalDate returnDate, long finalPricePaise) {
+        return rental -> new CompletedRental(rental.getCar(), rental.getCustomer(),
+                rental.getRentalDate(), returnDate, rental.getDays(), finalPricePaise >= 0 ? finalPricePaise
+                        : rental.isQuoted() ? rental.getQuotedPricePaise() : pricingEngine.quote(rental.getCar(), rental.getDays()));
+    }
+
+    // --- Loading a snapshot in the background ---
+
+    // Called by SnapshotFile.load on an empty manager. Until finishLoading(), cars and customers that
+    // haven't been brought in yet are fetched from the snapshot when they are looked up by ID, and
+    // rentals returned meanwhile join the history after the snapshot's own rows.
+    public void startLoading(SnapshotFile.Loading snapshot) {
+        rentalHistory.startDeferring();
+        loaded = snapshot.whenLoaded();
+        loading = snapshot;
+    }
+
+    // Called once everything in the snapshot has been brought in, or loading has failed.
+    public void finishLoading() {
+        synchronized (loadLock) {
+            loading = null;
         }
+        rentalHistory.stopDeferring();
+    }
+
+    // Waits until a snapshot loading in the background is all in; returns at once if there is none.
+    // Throws CompletionException if the loading failed.
+    public void awaitLoaded() {
+        loaded.join();
+    }
+
+    // Brings a batch of cars from a loading snapshot into the manager without journaling them. Cars
+    // whose ID is already here (looked up, added or replaced since the snapshot was taken) are left out.
+    public void restoreCars(List<Car> batch) {
+        synchronized (loadLock) {
+            List<Car> missing = new ArrayList<>(batch.size());
+            for (Car car : batch) {
+                if (!cars.containsKey(car.getCarId())) {
+                    missing.add(car);
+                }
+            }
+            if (!missing.isEmpty()) {
+                putCars(missing);
+            }
+        }
+        searchCache.catalogChanged();
+    }
+
+    // Same as restoreCars, for customers.
+    public void restoreCustomers(List<Customer> batch) {
+        synchronized (loadLock) {
+            List<Customer> missing = new ArrayList<>(batch.size());
+            for (Customer customer : batch) {
+                if (!customers.containsKey(customer.getCustomerId())) {
+                    missing.add(customer);
+                }
+            }
+            if (!missing.isEmpty()) {
+                putCustomers(missing);
+            }
+        }
+    }
+
+    // Puts an already completed rental straight into the history, used when loading a snapshot.
+    public void restoreCompletedRental(CompletedRental completedRental) {
+        rentalHistory.add(completedRental);
+    }
+
+    // Puts a block of completed rentals straight into the history, used when loading a snapshot.
+    // The rows come as columns, with cars and customers given by ordinal (see carOrdinalOf). The
+    // analytics don't see them until rebuildAnalytics() is called.
+    public void restoreCompletedRentals(int count, int[] carOrdinals, int[] customerOrdinals, int[] rentalEpochDays,
+                                        int[] returnEpochDays, int[] daysRented, long[] finalPricesPaise) {
+        rentalHistory.addAll(count, carOrdinals, customerOrdinals, rentalEpochDays, returnEpochDays, daysRented,
+                finalPricesPaise);
+    }
+
+    // The dense number a car or customer goes by in the history archive and indexes, or -1 if unknown.
+    public int carOrdinalOf(String carId) {
+        return carOrdinals.ordinalOf(carId);
+    }
+
+    public int customerOrdinalOf(String customerId) {
+        return customerOrdinals.ordinalOf(customerId);
+    }
+
+    // The caller holds the state lock if there is a journal.
+    private boolean closeRental(Car car, RentalJournal journal, Function<Rental, CompletedRental> complete) {
+        long startNanos = metrics.startTimer();
+        boolean returned = tryCloseRental(car, journal, complete);
+        metrics.record(RentalMetrics.Operation.RETURN, startNanos);
+        return returned;
+    }
 
-        if (rentalToRemove != null) {
-            activeRentals.remove(rentalToRemove);
-            rentalHistory.add(new CompletedRental(rentalToRemove)); // Add to history
-        } else {
+    private boolean tryCloseRental(Car car, RentalJournal journal, Function<Rental, CompletedRental> complete) {
+        // remove() only hands the rental to one caller, so a car can't be returned twice.
+        Rental rental = activeRentals.remove(car.getCarId());
+        if (rental == null) {
+            metrics.countFailure(RentalMetrics.Failure.NOT_RENTED);
             System.out.println("Error: Car was not found in the active rentals list.");
+            return false;
+        }
+
+        CompletedRental completedRental = complete.apply(rental);
+        if (journal != null) {
+            try {
+                journal.logReturn(completedRental);
+            } catch (RuntimeException e) {
+                activeRentals.put(car.getCarId(), rental); // Nothing was recorded, so the rental is still open.
+                throw e;
+            }
+        }
+        overdueTracker.untrack(rental);
+        activeRentalsByCustomer.computeIfPresent(rental.getCustomer().getCustomerId(), (id, rentals) -> {
+            rentals.remove(rental);
+            return rentals.isEmpty() ? null : rentals;
+        });
+        rentalHistory.add(completedRental); // Add to history
+        RentalEventStream stream = events;
+        if (stream != null) {
+            stream.returned(completedRental);
+        }
+        int ordinal = carOrdinals.ordinalOf(car.getCarId());
+        if (ordinal >= 0) {
+            calendar.release(ordinal, rental.getRentalDate().toEpochDay(), rental); // Frees any days left over.
+        }
+        // If someone is waiting for a car like this one, it goes straight to them and is never free.
+        if (!waitlist.isEmpty() && handOver(car, completedRental.getReturnDate(), journal, true)) {
+            return true;
+        }
+        markAvailable(car);
+        car.returnCar(); // Only make the car rentable again once its rental is closed.
+        searchCache.availabilityChanged(car.getType());
+        // A request queued while the car was being freed may have missed it; look once more.
+        if (!waitlist.isEmpty()) {
+            handOver(car, completedRental.getReturnDate(), journal, false);
+        }
+        return true;
+    }
+
+    // --- Waitlist ---
+
+    // Asks for any car of the type, or of the given model (null for any), for the given days.
+    // If one is free the returned future is already complete; otherwise the customer joins the
+    // waitlist and the future completes when a matching car comes back. Higher priorities go first,
+    // then the earliest requests. Cancelling the future leaves the waitlist.
+    public CompletableFuture<Rental> requestCar(Customer customer, Car.CarType type, String model, int days, int priority) {
+        awaitLoaded();
+        if (days <= 0) {
+            throw new IllegalArgumentException("Rental days must be positive, got " + days);
+        }
+        Rental rental = rentFreeCar(customer, type, model, days);
+        if (rental != null) {
+            return CompletableFuture.completedFuture(rental);
+        }
+        Waitlist.Request request = waitlist.add(customer, type, model, days, priority);
+        // A car returned between the search above and add() didn't see this request, so search again.
+        // Whoever claims the request first, this thread or a return, is the one that serves it.
+        Car car;
+        while ((car = findFreeCar(type, model, days)) != null && request.claim()) {
+            waitlist.removeClaimed(request);
+            rental = new Rental(car, customer, days, LocalDate.now(), quote(car, days));
+            if (car.isAvailable() && startRental(rental)) {
+                request.fulfil(rental);
+                break;
+            }
+            waitlist.requeue(request);
+        }
+        return request;
+    }
+
+    public CompletableFuture<Rental> requestCar(Customer customer, Car.CarType type, int days) {
+        return requestCar(customer, type, null, days, 0);
+    }
+
+    // How many customers are waiting for a car.
+    public int getWaitlistSize() {
+        return waitlist.size();
+    }
+
+    private Rental rentFreeCar(Customer customer, Car.CarType type, String model, int days) {
+        Car car;
+        while ((car = findFreeCar(type, model, days)) != null) {
+            Rental rental = new Rental(car, customer, days, LocalDate.now(), quote(car, days));
+            if (car.isAvailable() && startRental(rental)) {
+                return rental;
+            }
+        }
+        return null;
+    }
+
+    // An available car of the type (and model, if given) that isn't reserved during the stay.
+    private Car findFreeCar(Car.CarType type, String model, int days) {
+        LocalDate today = LocalDate.now();
+        for (Car car : availableCarsByType.get(type).values()) {
+            if (car.isAvailable() && (model == null || car.getModel().equalsIgnoreCase(model))
+                    && isCarFree(car, today, today.plusDays(days))) {
+                return car;
+            }
+        }
+        return null;
+    }
+
+    // Gives the car to the best waiting request it suits and can take it. With carHeld the car was just
+    // returned and is still marked rented, so nobody else can take it; otherwise it has to be won with
+    // car.rent(). Requests the car can't serve (e.g. it is reserved during part of their stay) are held
+    // back while the ones behind them are tried, then all go back in their old places.
+    // The caller holds the state lock if there is a journal.
+    private boolean handOver(Car car, LocalDate date, RentalJournal journal, boolean carHeld) {
+        List<Waitlist.Request> skipped = new ArrayList<>();
+        try {
+            Waitlist.Request request;
+            while ((request = waitlist.pollFor(car)) != null) {
+                skipped.add(request);
+                if (!carHeld && !car.isAvailable()) {
+                    return false; // Somebody else has taken it.
+                }
+                Rental rental = new Rental(car, request.getCustomer(), request.getDays(), date, quote(car, request.getDays()));
+                if (carHeld ? recordRental(rental, journal) : startRental(rental, journal)) {
+                    skipped.remove(skipped.size() - 1);
+                    request.fulfil(rental);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            for (Waitlist.Request request : skipped) {
+                waitlist.requeue(request);
+            }
+        }
+    }
+
+    // Hit and miss counts of the availability search cache.
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    // --- Change events ---
+
+    // Publishes every car and customer added and every rental started and closed to the stream from
+    // now on; null stops publishing. With no stream each change pays one volatile read for this.
+    @Override
+    public void setEventStream(RentalEventStream events) {
+        setEventStream(events, true);
+    }
+
+    // As above; ShardedRentalManager publishes its customers itself, so its shards leave them out.
+    void setEventStream(RentalEventStream events, boolean withCustomers) {
+        this.publishCustomerEvents = withCustomers;
+        this.events = events;
+    }
+
+    @Override
+    public RentalEventStream getEventStream() {
+        return events;
+    }
+
+    private void publishCustomers(List<Customer> batch) {
+        RentalEventStream stream = events;
+        if (stream != null && publishCustomerEvents) {
+            batch.forEach(stream::customerAdded);
+        }
+    }
+
+    // --- Overdue rentals ---
+
+    // Has every active rental filed by due date; ask it for the overdue ones, listen to it, or start it.
+    @Override
+    public OverdueTracker getOverdueTracker() {
+        return overdueTracker;
+    }
+
+    // --- Reservations ---
+
+    // Reserves a car for the days from start up to (not including) end.
+    // Returns the reservation, or null if the car is already booked on any of those days.
+    public Reservation reserveCar(Car car, Customer customer, LocalDate start, LocalDate end) {
+        if (!start.isBefore(end)) {
+            System.out.println("Error: A reservation must end after it starts.");
+            return null;
+        }
+        Reservation reservation = new Reservation("R" + reservationSequence.incrementAndGet(), car, customer, start, end);
+        return placeReservation(reservation) ? reservation : null;
+    }
+
+    // Places a reservation that has already been built, e.g. one replayed from the journal.
+    public boolean placeReservation(Reservation reservation) {
+        long startNanos = metrics.startTimer();
+        boolean placed = tryPlaceReservation(reservation);
+        metrics.record(RentalMetrics.Operation.RESERVE, startNanos);
+        return placed;
+    }
+
+    private boolean tryPlaceReservation(Reservation reservation) {
+        int ordinal = carOrdinals.ordinalOf(reservation.getCar().getCarId());
+        if (ordinal < 0) {
+            System.out.println("Error: Car is not part of the fleet.");
+            return false;
+        }
+        long start = reservation.getStartDate().toEpochDay();
+        RentalJournal journal = beginLoggedOp();
+        try {
+            if (!calendar.tryBook(ordinal, start, reservation.getEndDate().toEpochDay(), reservation)) {
+                metrics.countFailure(RentalMetrics.Failure.RESERVATION_CLASH);
+                System.out.println("Error: Car is already booked for some of those days.");
+                return false;
+            }
+            if (journal != null) {
+                try {
+                    journal.logReserve(reservation);
+                } catch (RuntimeException e) {
+                    calendar.release(ordinal, start, reservation);
+                    throw e;
+                }
+            }
+            reservations.put(reservation.getReservationId(), reservation);
+            observeReservationId(reservation.getReservationId());
+            return true;
+        } finally {
+            endLoggedOp(journal);
+        }
+    }
+
+    // Cancels a reservation and frees its days. Returns false if there was no such reservation.
+    public boolean cancelReservation(String reservationId) {
+        RentalJournal journal = beginLoggedOp();
+        try {
+            Reservation reservation = reservations.remove(reservationId);
+            if (reservation == null) {
+                System.out.println("Error: No reservation found with that ID.");
+                return false;
+            }
+            if (journal != null) {
+                try {
+                    journal.logCancelReservation(reservation);
+                } catch (RuntimeException e) {
+                    reservations.put(reservationId, reservation);
+                    throw e;
+                }
+            }
+            calendar.release(carOrdinals.ordinalOf(reservation.getCar().getCarId()),
+                    reservation.getStartDate().toEpochDay(), reservation);
+            return true;
+        } finally {
+            endLoggedOp(journal);
+        }
+    }
+
+    // Turns a reservation that starts today into a rental running until the reservation's end date.
+    public boolean startReservedRental(String reservationId) {
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            System.out.println("Error: No reservation found with that ID.");
+            return false;
+        }
+        LocalDate today = LocalDate.now();
+        if (today.isBefore(reservation.getStartDate()) || !today.isBefore(reservation.getEndDate())) {
+            System.out.println("Error: This reservation does not cover today.");
+            return false;
+        }
+        if (!cancelReservation(reservationId)) {
+            return false;
+        }
+        int days = (int) (reservation.getEndDate().toEpochDay() - today.toEpochDay());
+        if (rentCar(reservation.getCar(), reservation.getCustomer(), days)) {
+            return true;
+        }
+        placeReservation(reservation); // The rental didn't go through, so hold the car again.
+        return false;
+    }
+
+    public Reservation findReservation(String reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    public List<Reservation> getAllReservations() {
+        return new ArrayList<>(reservations.values());
+    }
+
+    // True if nothing is booked for the car from start up to (not including) end. A range starting
+    // before today (by the overdue tracker's clock) is never free.
+    public boolean isCarFree(Car car, LocalDate start, LocalDate end) {
+        int ordinal = carOrdinals.ordinalOf(car.getCarId());
+        return ordinal >= 0 && calendar.isFree(ordinal, start.toEpochDay(), end.toEpochDay());
+    }
+
+    // Finds every car of the type that is free from start up to (not including) end. A range starting
+    // before today (by the overdue tracker's clock) finds none.
+    public List<Car> findAvailableCars(Car.CarType type, LocalDate start, LocalDate end) {
+        awaitLoaded();
+        BitSet free = calendar.freeCars(type, start.toEpochDay(), end.toEpochDay());
+        // A car still out past its due date isn't in the calendar any more, but it isn't here either.
+        boolean includesToday = !LocalDate.now().isBefore(start) && LocalDate.now().isBefore(end);
+        List<Car> result = new ArrayList<>(free.cardinality());
+        for (int ordinal = free.nextSetBit(0); ordinal >= 0; ordinal = free.nextSetBit(ordinal + 1)) {
+            Car car = carOrdinals.get(ordinal);
+            if (!includesToday || car.isAvailable()) {
+                result.add(car);
+            }
+        }
+        return result;
+    }
+
+    // Keeps new reservation IDs ahead of any restored ones.
+    private void observeReservationId(String reservationId) {
+        try {
+            long number = Long.parseLong(reservationId.substring(1));
+            reservationSequence.accumulateAndGet(number, Math::max);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // Not one of our generated IDs, so it can't collide with them.
+        }
+    }
+
+    // Moves a car into the available sets.
+    private void markAvailable(Car car) {
+        rentedCars.remove(car.getCarId(), car);
+        rentedCarsByType.get(car.getType()).remove(car.getCarId(), car);
+        availableCars.put(car.getCarId(), car);
+        availableCarsByType.get(car.getType()).put(car.getCarId(), car);
+    }
+
+    // Moves a car into the rented sets.
+    private void markRented(Car car) {
+        availableCars.remove(car.getCarId(), car);
+        availableCarsByType.get(car.getType()).remove(car.getCarId(), car);
+        rentedCars.put(car.getCarId(), car);
+        rentedCarsByType.get(car.getType()).put(car.getCarId(), car);
+    }
+
+    // --- Pricing ---
+
+    @Override
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+
+    // Swaps in different pricing rules; rentals started from now on are priced with them.
+    // Quotes only read the field once, so the swap never needs a lock.
+    @Override
+    public void setPricingEngine(PricingEngine pricingEngine) {
+        this.pricingEngine = pricingEngine;
+    }
+
+    // Price of renting the car for the given number of days, in paise.
+    @Override
+    public long quote(Car car, int days) {
+        return pricingEngine.quote(car, days);
+    }
+
+    // --- Metrics ---
+
+    // Counters, latencies and utilization gauges for this manager.
+    public RentalMetrics getMetrics() {
+        return metrics;
+    }
+
+    // --- Analytics ---
+
+    // Running revenue, duration and utilization totals, kept up to date by every return.
+    public RentalAnalytics getAnalytics() {
+        awaitLoaded();
+        return rentalHistory.getAnalytics();
+    }
+
+    // Recomputes the analytics from the whole rental history on the common fork-join pool,
+    // e.g. after loading a history that was saved before analytics existed.
+    public RentalAnalytics rebuildAnalytics() {
+        return rebuildAnalytics(ForkJoinPool.commonPool());
+    }
+
+    public RentalAnalytics rebuildAnalytics(ForkJoinPool pool) {
+        awaitLoaded();
+        return rentalHistory.rebuildAnalytics(pool);
+    }
+
+    // Share of the current fleet's car-days in [start, end) taken up by completed rentals.
+    public double getFleetUtilization(LocalDate start, LocalDate end) {
+        return getAnalytics().utilization(start, end, cars.size());
+    }
+
+    public double getFleetUtilization(Car.CarType type, LocalDate start, LocalDate end) {
+        return getAnalytics().utilization(type, start, end, countAvailable(type) + countRented(type));
+    }
+
+    // --- Durability ---
+
+    // Starts logging every change to the journal. Call this once at startup, after recovery.
+    public void attachJournal(RentalJournal journal) {
+        this.journal = journal;
+    }
+
+    // Writes a snapshot of the current state and starts a fresh journal segment after it.
+    // Changes wait for the few moments this takes, so the snapshot lines up exactly with the journal.
+    public void checkpoint() throws IOException {
+        awaitLoaded();
+        RentalJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            current.checkpoint(this);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    // Returns the attached journal with the state lock's read side held, or null (and no lock) if there is none.
+    private RentalJournal beginLoggedOp() {
+        RentalJournal current = journal;
+        if (current != null) {
+            stateLock.readLock().lock();
+        }
+        return current;
+    }
+
+    private void endLoggedOp(RentalJournal current) {
+        if (current != null) {
+            stateLock.readLock().unlock();
         }
     }
 
     // --- Methods for finding/searching data ---
 
+    @Override
     public Car findCarById(String carId) {
-        return cars.get(carId);
+        Car car = cars.get(carId);
+        SnapshotFile.Loading snapshot = loading;
+        if (car != null || snapshot == null) {
+            return car;
+        }
+        synchronized (loadLock) { // Brings the car in from the snapshot, unless that happened meanwhile.
+            car = cars.get(carId);
+            if (car == null && loading != null && (car = snapshot.car(carId)) != null) {
+                putCars(Collections.singletonList(car));
+                searchCache.catalogChanged();
+            }
+        }
+        return car;
     }
 
+    @Override
     public Customer findCustomerById(String customerId) {
-        return customers.get(customerId);
+        Customer customer = customers.get(customerId);
+        SnapshotFile.Loading snapshot = loading;
+        if (customer != null || snapshot == null) {
+            return customer;
+        }
+        synchronized (loadLock) {
+            customer = customers.get(customerId);
+            if (customer == null && loading != null && (customer = snapshot.customer(customerId)) != null) {
+                putCustomers(Collections.singletonList(customer));
+            }
+        }
+        return customer;
     }
 
+    // Finds the active rental for a car ("who has this car?"), or null if it is not rented.
+    @Override
+    public Rental findActiveRental(String carId) {
+        return activeRentals.get(carId);
+    }
+
+    // Gets every car a customer currently has on rent.
+    @Override
+    public List<Rental> getActiveRentalsForCustomer(String customerId) {
+        Set<Rental> rentals = activeRentalsByCustomer.get(customerId);
+        return rentals == null ? new ArrayList<>() : new ArrayList<>(rentals);
+    }
+
+    @Override
+    public List<Car> getAllCars() {
+        awaitLoaded();
+        return new ArrayList<>(cars.values());
+    }
+
+    public List<Rental> getAllActiveRentals() {
+        return new ArrayList<>(activeRentals.values());
+    }
+
+    @Override
     public List<Car> getAllAvailableCars() {
-        return cars.values().stream()
-                .filter(Car::isAvailable)
-                .collect(Collectors.toList());
+        awaitLoaded();
+        // Cached until a car is added, rented or returned; the list is shared and can't be changed.
+        return searchCache.get("", results -> {
+            results.addAll(availableCars.values());
+            return SearchCache.ALL_TYPES;
+        });
     }
     
+    @Override
     public List<Car> getAllRentedCars() {
-        return cars.values().stream()
-                .filter(c -> !c.isAvailable())
-                .collect(Collectors.toList());
+        return new ArrayList<>(rentedCars.values());
+    }
+
+    @Override
+    public List<Car> getAvailableCarsByType(Car.CarType type) {
+        awaitLoaded();
+        return new ArrayList<>(availableCarsByType.get(type).values());
+    }
+
+    // --- Cheap counts, so callers don't have to build a list just to check its size ---
+
+    @Override
+    public int countAvailable() {
+        awaitLoaded();
+        return availableCars.size();
     }
 
+    @Override
+    public int countAvailable(Car.CarType type) {
+        awaitLoaded();
+        return availableCarsByType.get(type).size();
+    }
+
+    @Override
+    public int countRented() {
+        return rentedCars.size();
+    }
+
+    @Override
+    public int countRented(Car.CarType type) {
+        return rentedCarsByType.get(type).size();
+    }
+
+    @Override
+    public int countCustomers() {
+        awaitLoaded();
+        return customers.size();
+    }
+
+    // --- Walking the maps directly; changes made meanwhile may or may not show up ---
+
+    @Override
+    public Iterator<Car> availableCarsIterator() {
+        awaitLoaded();
+        return availableCars.values().iterator();
+    }
+
+    @Override
+    public Iterator<Car> rentedCarsIterator() {
+        return rentedCars.values().iterator();
+    }
+
+    @Override
+    public Iterator<Customer> customersIterator() {
+        awaitLoaded();
+        return customers.values().iterator();
+    }
+
+    @Override
     public List<Customer> getAllCustomers() {
+        awaitLoaded();
         return new ArrayList<>(customers.values());
     }
 
+    // Finds customers whose name words or phone number start with the words of the query, e.g.
+    // "priya sh" or "98765", without looking at every customer.
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        awaitLoaded();
+        return customerSearchIndex.search(query, limit);
+    }
+
     // Searches for available cars by brand, model, or type.
+    @Override
     public List<Car> searchAvailableCars(String query) {
+        awaitLoaded();
+        long startNanos = metrics.startTimer();
+        List<Car> results = findMatchingAvailableCars(query);
+        metrics.record(RentalMetrics.Operation.SEARCH, startNanos);
+        return results;
+    }
+
+    private List<Car> findMatchingAvailableCars(String query) {
         if (query == null || query.trim().isEmpty()) {
             return getAllAvailableCars();
         }
@@ -95,27 +1105,80 @@ public class RentalManager {
         // Split the search query into individual words for better matching.
         String[] searchTerms = query.toLowerCase().replaceAll("[(),]", "").trim().split("\\s+");
 
-        return getAllAvailableCars().stream()
-                .filter(car -> {
-                    // Combine car details into one string to search against.
-                    String carDetails = (car.getBrand() + " " + car.getModel() + " " + car.getType().toString()).toLowerCase();
-                    
-                    // The car is a match only if it contains ALL search terms.
-                    for (String term : searchTerms) {
-                        if (!term.isEmpty() && !carDetails.contains(term)) {
-                            return false; // A term was not found, so it's not a match.
-                        }
-                    }
-                    return true; // All terms were found.
-                })
-                .collect(Collectors.toList());
+        // The index gives us every car containing ALL search terms; availability is read straight
+        // from each matching car, so rents and returns never have to touch the index. The result only
+        // depends on the types of the cars that match, so only their rents and returns invalidate it.
+        return searchCache.get(SearchCache.keyOf(searchTerms), results -> {
+            BitSet matches = searchIndex.match(searchTerms);
+            int types = 0;
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                Car car = carOrdinals.get(ordinal);
+                types |= SearchCache.maskOf(car.getType());
+                if (car.isAvailable()) {
+                    results.add(car);
+                }
+            }
+            return types;
+        });
     }
     
-    // Gets the full rental history for a specific customer.
+    // Gets the full rental history for a specific customer, oldest first.
+    @Override
     public List<CompletedRental> getCustomerRentalHistory(String customerId) {
-        return rentalHistory.stream()
-                .filter(rental -> rental.getCustomer().getCustomerId().equals(customerId))
-                .collect(Collectors.toList());
+        awaitLoaded();
+        long startNanos = metrics.startTimer();
+        List<CompletedRental> history = rentalHistory.forCustomer(customerId);
+        metrics.record(RentalMetrics.Operation.HISTORY, startNanos);
+        return history;
+    }
+
+    // Gets one page of a customer's rental history, most recent first.
+    public List<CompletedRental> getCustomerRentalHistoryPage(String customerId, int offset, int limit) {
+        awaitLoaded();
+        long startNanos = metrics.startTimer();
+        List<CompletedRental> page = rentalHistory.customerPage(customerId, offset, limit);
+        metrics.record(RentalMetrics.Operation.HISTORY, startNanos);
+        return page;
+    }
+
+    // Streams a customer's rental history most recent first, without copying it into a list.
+    @Override
+    public Iterator<CompletedRental> customerRentalHistoryIterator(String customerId) {
+        awaitLoaded();
+        return rentalHistory.customerIterator(customerId);
+    }
+
+    // How many rentals a customer has completed, without building their history records.
+    @Override
+    public int countCustomerRentals(String customerId) {
+        awaitLoaded();
+        return rentalHistory.customerCount(customerId);
+    }
+
+    // Adds up everything a customer has paid, without building their history records.
+    @Override
+    public double getCustomerTotalSpent(String customerId) {
+        awaitLoaded();
+        return rentalHistory.customerTotalPaise(customerId) / 100.0;
+    }
+
+    // Gets every completed rental of a specific car, oldest first.
+    @Override
+    public List<CompletedRental> getCarRentalHistory(String carId) {
+        awaitLoaded();
+        return rentalHistory.forCar(carId);
+    }
+
+    // Walks the whole rental history, oldest first, without copying it.
+    public Iterator<CompletedRental> rentalHistoryIterator() {
+        awaitLoaded();
+        return rentalHistory.iterator();
+    }
+
+    @Override
+    public int getRentalHistorySize() {
+        awaitLoaded();
+        return rentalHistory.size();
     }
 }
 
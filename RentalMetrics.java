@@ -0,0 +1,200 @@
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Counters and latency histograms for the RentalManager hot paths, plus gauges read straight from
+// the manager (fleet utilization by car type, active rentals, history size).
+//
+// Everything is built from LongAdders, so recording is lock-free and cheap enough to leave on all
+// the time; "java RentalBenchmark metrics" measures what it costs. The numbers can be read over JMX
+// (see registerMBean) or as a plain-text dump in the Prometheus text format.
+public class RentalMetrics implements RentalMetricsMXBean {
+    // The timed operations.
+    public enum Operation { RENT, RETURN, SEARCH, HISTORY, RESERVE }
+
+    // The ways an operation can be turned down.
+    public enum Failure { CAR_NOT_AVAILABLE, CAR_RESERVED, NOT_RENTED, RESERVATION_CLASH, NOT_REGISTERED }
+
+    private final RentalManager manager;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] failures = new LongAdder[Failure.values().length];
+    private volatile boolean enabled = true;
+
+    public RentalMetrics(RentalManager manager) {
+        this.manager = manager;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    // --- Recording ---
+
+    // Call at the start of an operation and hand the result to record(). Returns 0 while disabled.
+    public long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(Operation operation, long startNanos) {
+        if (startNanos != 0) {
+            latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void countFailure(Failure failure) {
+        if (enabled) {
+            failures[failure.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // --- Reading ---
+
+    public LatencyHistogram latency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long failures(Failure failure) {
+        return failures[failure.ordinal()].sum();
+    }
+
+    // Share of each type's cars that are out on rent, from 0 to 1.
+    public double utilization(Car.CarType type) {
+        int rented = manager.countRented(type);
+        int total = rented + manager.countAvailable(type);
+        return total == 0 ? 0 : (double) rented / total;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            counts.put(name(operation), latency(operation).count());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Failure failure : Failure.values()) {
+            counts.put(name(failure), failures(failure));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50Micros() {
+        return latencyMicros(0.50);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99Micros() {
+        return latencyMicros(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMaxMicros() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            values.put(name(operation), latency(operation).max() / 1000.0);
+        }
+        return values;
+    }
+
+    private Map<String, Double> latencyMicros(double fraction) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            values.put(name(operation), latency(operation).percentile(fraction) / 1000.0);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getUtilizationByType() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Car.CarType type : Car.CarType.values()) {
+            values.put(type.name(), utilization(type));
+        }
+        return values;
+    }
+
+    @Override
+    public int getActiveRentals() {
+        return manager.countRented();
+    }
+
+    @Override
+    public int getRentalHistorySize() {
+        return manager.getRentalHistorySize();
+    }
+
+    @Override
+    public long getSearchCacheHits() {
+        return manager.getSearchCache().getHits();
+    }
+
+    @Override
+    public long getSearchCacheMisses() {
+        return manager.getSearchCache().getMisses();
+    }
+
+    // Everything above as plain text, one value per line.
+    @Override
+    public String getTextDump() {
+        StringBuilder out = new StringBuilder(2048);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latency(operation);
+            String label = "{operation=\"" + name(operation) + "\"}";
+            out.append("rental_operations_total").append(label).append(' ').append(histogram.count()).append('\n');
+            out.append("rental_latency_mean_micros").append(label).append(' ').append(micros(histogram.mean())).append('\n');
+            out.append("rental_latency_p50_micros").append(label).append(' ').append(micros(histogram.percentile(0.50))).append('\n');
+            out.append("rental_latency_p99_micros").append(label).append(' ').append(micros(histogram.percentile(0.99))).append('\n');
+            out.append("rental_latency_max_micros").append(label).append(' ').append(micros(histogram.max())).append('\n');
+        }
+        for (Failure failure : Failure.values()) {
+            out.append("rental_failures_total{reason=\"").append(name(failure)).append("\"} ").append(failures(failure)).append('\n');
+        }
+        for (Car.CarType type : Car.CarType.values()) {
+            out.append("rental_fleet_utilization{type=\"").append(type.name()).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.4f", utilization(type))).append('\n');
+        }
+        out.append("rental_active_rentals ").append(getActiveRentals()).append('\n');
+        out.append("rental_history_size ").append(getRentalHistorySize()).append('\n');
+        out.append("rental_search_cache_hits_total ").append(getSearchCacheHits()).append('\n');
+        out.append("rental_search_cache_misses_total ").append(getSearchCacheMisses()).append('\n');
+        return out.toString();
+    }
+
+    // Makes the metrics visible over JMX as "CarRentalSystem:type=RentalMetrics".
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("CarRentalSystem:type=RentalMetrics"));
+        } catch (JMException e) {
+            System.out.println("Error: Could not register the rental metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase();
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+}
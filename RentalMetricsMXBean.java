@@ -0,0 +1,31 @@
+import java.util.Map;
+
+// What RentalMetrics shows over JMX (e.g. in JConsole or VisualVM under "CarRentalSystem").
+// Latencies are in microseconds; maps are keyed by operation or car type.
+public interface RentalMetricsMXBean {
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    Map<String, Double> getLatencyP50Micros();
+
+    Map<String, Double> getLatencyP99Micros();
+
+    Map<String, Double> getLatencyMaxMicros();
+
+    Map<String, Double> getUtilizationByType();
+
+    int getActiveRentals();
+
+    int getRentalHistorySize();
+
+    long getSearchCacheHits();
+
+    long getSearchCacheMisses();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    String getTextDump();
+}
@@ -0,0 +1,33 @@
+import java.time.LocalDate;
+
+// Represents a future booking of a car for a range of dates.
+// The start date is the first day the car is held; the end date is the day it is free again.
+public class Reservation {
+    private String reservationId;
+    private Car car;
+    private Customer customer;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    public Reservation(String reservationId, Car car, Customer customer, LocalDate startDate, LocalDate endDate) {
+        this.reservationId = reservationId;
+        this.car = car;
+        this.customer = customer;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+
+    // --- Getters ---
+    public String getReservationId() { return reservationId; }
+    public Car getCar() { return car; }
+    public Customer getCustomer() { return customer; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+
+    // Provides a simple summary of the reservation.
+    @Override
+    public String toString() {
+        return String.format("Reservation %s: %s %s for %s from %s until %s",
+                reservationId, car.getBrand(), car.getModel(), customer.getName(), startDate, endDate);
+    }
+}
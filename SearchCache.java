@@ -0,0 +1,135 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers the results of recent availability searches until the cars they depend on change.
+//
+// Instead of clearing entries on every change, the cache keeps version numbers ("epochs"): one for
+// the catalog, bumped when cars are added or replaced, and one per car type, bumped whenever a car of
+// that type is rented or returned. Each entry records the epochs it was computed under and the car
+// types its query can match; it is served only while those are unchanged, so renting an SUV leaves
+// "honda city" cached. The entries are kept in least-recently-used order and the oldest goes once
+// there are more than the capacity. Results are unmodifiable lists shared by every caller, so a hit
+// copies nothing.
+public class SearchCache {
+    private static final int TYPES = Car.CarType.values().length;
+    public static final int ALL_TYPES = (1 << TYPES) - 1;
+
+    // Runs a search: adds the available cars it finds to results and returns the car types, as a
+    // mask of (1 << CarType.ordinal()), whose rents and returns could change the answer.
+    public interface Search {
+        int run(List<Car> results);
+    }
+
+    private final LinkedHashMap<String, Entry> entries; // Guarded by this.
+    private final AtomicLong catalogEpoch = new AtomicLong();
+    private final AtomicLongArray typeEpochs = new AtomicLongArray(TYPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SearchCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // The cached result for the key if it is still current, else the search's (which is then cached).
+    public List<Car> get(String key, Search search) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.isCurrent()) {
+            hits.increment();
+            return entry.results;
+        }
+        misses.increment();
+        // Read the epochs before searching: a change made during the search bumps them afterwards,
+        // so the entry is already out of date when it is next looked up.
+        long catalog = catalogEpoch.get();
+        long[] epochs = new long[TYPES];
+        for (int type = 0; type < TYPES; type++) {
+            epochs[type] = typeEpochs.get(type);
+        }
+        List<Car> results = new ArrayList<>();
+        int types = search.run(results);
+        entry = new Entry(Collections.unmodifiableList(results), catalog, epochs, types);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry.results;
+    }
+
+    // --- Invalidation (call after the change is visible) ---
+
+    // A car of this type was rented or returned.
+    public void availabilityChanged(Car.CarType type) {
+        typeEpochs.incrementAndGet(type.ordinal());
+    }
+
+    // Cars were added or replaced, so any query may match something new.
+    public void catalogChanged() {
+        catalogEpoch.incrementAndGet();
+    }
+
+    // --- Counters ---
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // The key for a query: its words in a fixed order, so "SUV  kia" and "kia suv" share an entry.
+    public static String keyOf(String[] terms) {
+        String[] sorted = terms.clone();
+        Arrays.sort(sorted);
+        return String.join(" ", sorted);
+    }
+
+    public static int maskOf(Car.CarType type) {
+        return 1 << type.ordinal();
+    }
+
+    // One cached result and what it was computed under.
+    private class Entry {
+        private final List<Car> results;
+        private final long catalog;
+        private final long[] epochs;
+        private final int types;
+
+        private Entry(List<Car> results, long catalog, long[] epochs, int types) {
+            this.results = results;
+            this.catalog = catalog;
+            this.epochs = epochs;
+            this.types = types;
+        }
+
+        private boolean isCurrent() {
+            if (catalogEpoch.get() != catalog) {
+                return false;
+            }
+            for (int type = 0; type < TYPES; type++) {
+                if ((types & (1 << type)) != 0 && typeEpochs.get(type) != epochs[type]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+// Spreads the fleet over several RentalManagers ("shards"), e.g. one per branch, behind the same
+// API as a single RentalManager.
+//
+// Every car lives in exactly one shard, picked from its ID: by a hash of the ID by default, or by
+// a function that maps the ID to its branch. A shard has its own maps, search index, calendar and
+// history, so renting, returning and looking up a car only ever touch that car's shard and never
+// wait on another one. Searches and listings ask every shard at once on the fork-join pool and
+// join up the answers.
+//
+// Customers can rent at any branch, so they are kept here rather than in a shard. A shard only
+// hears about a customer the first time they rent one of its cars, which keeps each customer in
+// one map plus one per branch they actually used, instead of one per shard.
+public class ShardedRentalManager implements CarRentalService {
+    private static final Comparator<CompletedRental> BY_RETURN_DATE = Comparator.comparing(CompletedRental::getReturnDate);
+
+    private final RentalManager[] shards;
+    private final ToIntFunction<String> shardOfCarId;
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private final IdAllocator customerIds = new IdAllocator("CUS");
+    private final OrdinalRegistry<Customer> customerOrdinals = new OrdinalRegistry<>();
+    private final CustomerSearchIndex customerSearchIndex = new CustomerSearchIndex(customerOrdinals);
+    private volatile PricingEngine pricingEngine = PricingEngine.standard();
+    private final OverdueTracker overdueTracker = new OverdueTracker(); // Shared by all the shards.
+    private volatile RentalEventStream events;
+
+    // Spreads cars over the shards by a hash of their ID.
+    public ShardedRentalManager(int shardCount) {
+        this(shardCount, ShardedRentalManager::hashOf);
+    }
+
+    // Puts each car in the shard the function picks for its ID (e.g. its branch number). Numbers
+    // outside 0..shardCount-1 wrap around.
+    public ShardedRentalManager(int shardCount, ToIntFunction<String> shardOfCarId) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A sharded manager needs at least one shard");
+        }
+        this.shards = new RentalManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new RentalManager(HistoryArchive.inMemory(), overdueTracker);
+        }
+        this.shardOfCarId = shardOfCarId;
+    }
+
+    private static int hashOf(String carId) {
+        int hash = carId.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    // The shard a car with this ID belongs to.
+    public RentalManager shardFor(String carId) {
+        return shards[Math.floorMod(shardOfCarId.applyAsInt(carId), shards.length)];
+    }
+
+    // The shards themselves, e.g. to attach a journal or read the metrics of each branch.
+    public List<RentalManager> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    // --- Adding data ---
+
+    @Override
+    public void addCar(Car car) {
+        shardFor(car.getCarId()).addCar(car);
+    }
+
+    // Splits the batch by shard and adds each part to its shard, all shards at once.
+    @Override
+    public void addCars(List<Car> batch) {
+        List<List<Car>> parts = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>());
+        }
+        for (Car car : batch) {
+            parts.get(Math.floorMod(shardOfCarId.applyAsInt(car.getCarId()), shards.length)).add(car);
+        }
+        IntStream.range(0, shards.length).parallel()
+                .filter(i -> !parts.get(i).isEmpty())
+                .forEach(i -> shards[i].addCars(parts.get(i)));
+    }
+
+    @Override
+    public void addCustomer(Customer customer) {
+        addCustomers(Collections.singletonList(customer));
+    }
+
+    @Override
+    public void addCustomers(List<Customer> batch) {
+        for (Customer customer : batch) {
+            customers.put(customer.getCustomerId(), customer);
+            customerIds.observe(customer.getCustomerId());
+        }
+        customerSearchIndex.addAll(customerOrdinals.registerAll(batch, Customer::getCustomerId), batch);
+        RentalEventStream stream = events;
+        if (stream != null) {
+            batch.forEach(stream::customerAdded);
+        }
+    }
+
+    @Override
+    public Customer registerNewCustomer(String name, String contactPhone) {
+        while (true) {
+            Customer customer = new Customer(customerIds.next(), name, contactPhone);
+            if (customers.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                customerSearchIndex.add(customerOrdinals.register(customer.getCustomerId(), customer), customer);
+                RentalEventStream stream = events;
+                if (stream != null) {
+                    stream.customerAdded(customer);
+                }
+                return customer;
+            }
+        }
+    }
+
+    // --- Renting and returning ---
+
+    @Override
+    public boolean rentCar(Car car, Customer customer, int days) {
+        return rent(car, customer, days) != null;
+    }
+
+    @Override
+    public Rental rent(Car car, Customer customer, int days) {
+        if (days <= 0) {
+            System.out.println("Error: Rental days must be positive.");
+            return null; // Before the customer is copied to a shard for a rental that can't happen.
+        }
+        RentalManager shard = shardFor(car.getCarId());
+        if (shard.findCustomerById(customer.getCustomerId()) == null) {
+            shard.addCustomer(customer); // Adding the same customer twice is harmless.
+        }
+        return shard.rent(car, customer, days);
+    }
+
+    @Override
+    public boolean returnCar(Car car) {
+        return shardFor(car.getCarId()).returnCar(car);
+    }
+
+    @Override
+    public PricingEngine getPricingEngine() {
+        return pricingEngine;
+    }
+
+    // Switches every shard to the given pricing engine.
+    @Override
+    public void setPricingEngine(PricingEngine pricingEngine) {
+        this.pricingEngine = pricingEngine;
+        for (RentalManager shard : shards) {
+            shard.setPricingEngine(pricingEngine);
+        }
+    }
+
+    @Override
+    public long quote(Car car, int days) {
+        return pricingEngine.quote(car, days);
+    }
+
+    // Every shard publishes its cars and rentals to the same stream. Customers are published once,
+    // here, not again by each shard that picks them up.
+    @Override
+    public void setEventStream(RentalEventStream events) {
+        this.events = events;
+        for (RentalManager shard : shards) {
+            shard.setEventStream(events, false);
+        }
+    }
+
+    @Override
+    public RentalEventStream getEventStream() {
+        return events;
+    }
+
+    // One tracker covers the rentals of every shard.
+    @Override
+    public OverdueTracker getOverdueTracker() {
+        return overdueTracker;
+    }
+
+    // --- Finding data ---
+
+    @Override
+    public Car findCarById(String carId) {
+        return shardFor(carId).findCarById(carId);
+    }
+
+    @Override
+    public Customer findCustomerById(String customerId) {
+        return customers.get(customerId);
+    }
+
+    @Override
+    public Rental findActiveRental(String carId) {
+        return shardFor(carId).findActiveRental(carId);
+    }
+
+    @Override
+    public List<Rental> getActiveRentalsForCustomer(String customerId) {
+        return gather(shard -> shard.getActiveRentalsForCustomer(customerId));
+    }
+
+    @Override
+    public List<Car> getAllCars() {
+        return gather(RentalManager::getAllCars);
+    }
+
+    @Override
+    public List<Car> getAllAvailableCars() {
+        return gather(RentalManager::getAllAvailableCars);
+    }
+
+    @Override
+    public List<Car> getAllRentedCars() {
+        return gather(RentalManager::getAllRentedCars);
+    }
+
+    @Override
+    public List<Car> getAvailableCarsByType(Car.CarType type) {
+        return gather(shard -> shard.getAvailableCarsByType(type));
+    }
+
+    // Runs the search in every shard at once and joins up the matches, shard by shard.
+    @Override
+    public List<Car> searchAvailableCars(String query) {
+        return gather(shard -> shard.searchAvailableCars(query));
+    }
+
+    @Override
+    public List<Customer> getAllCustomers() {
+        return new ArrayList<>(customers.values());
+    }
+
+    // Customers are kept here, so they are searched here too.
+    @Override
+    public List<Customer> searchCustomers(String query, int limit) {
+        return customerSearchIndex.search(query, limit);
+    }
+
+    // Counts are just map sizes, so they are added up one shard after another.
+    @Override
+    public int countAvailable() {
+        return sum(RentalManager::countAvailable);
+    }
+
+    @Override
+    public int countAvailable(Car.CarType type) {
+        return sum(shard -> shard.countAvailable(type));
+    }
+
+    @Override
+    public int countRented() {
+        return sum(RentalManager::countRented);
+    }
+
+    @Override
+    public int countRented(Car.CarType type) {
+        return sum(shard -> shard.countRented(type));
+    }
+
+    @Override
+    public int countCustomers() {
+        return customers.size();
+    }
+
+    // Walks the shards one after another.
+    @Override
+    public Iterator<Car> availableCarsIterator() {
+        return new ShardByShard<>(RentalManager::availableCarsIterator);
+    }
+
+    @Override
+    public Iterator<Car> rentedCarsIterator() {
+        return new ShardByShard<>(RentalManager::rentedCarsIterator);
+    }
+
+    @Override
+    public Iterator<Customer> customersIterator() {
+        return customers.values().iterator();
+    }
+
+    // --- Rental history ---
+
+    // A customer's rentals from every branch, oldest return first.
+    @Override
+    public List<CompletedRental> getCustomerRentalHistory(String customerId) {
+        List<CompletedRental> history = gather(shard -> shard.getCustomerRentalHistory(customerId));
+        history.sort(BY_RETURN_DATE);
+        return history;
+    }
+
+    // A customer's rentals from every branch, most recent first, merged as they are read.
+    @Override
+    public Iterator<CompletedRental> customerRentalHistoryIterator(String customerId) {
+        List<Iterator<CompletedRental>> perShard = new ArrayList<>(shards.length);
+        for (RentalManager shard : shards) {
+            perShard.add(shard.customerRentalHistoryIterator(customerId));
+        }
+        return new NewestFirst(perShard);
+    }
+
+    @Override
+    public double getCustomerTotalSpent(String customerId) {
+        double total = 0;
+        for (RentalManager shard : shards) {
+            total += shard.getCustomerTotalSpent(customerId);
+        }
+        return total;
+    }
+
+    @Override
+    public List<CompletedRental> getCarRentalHistory(String carId) {
+        return shardFor(carId).getCarRentalHistory(carId);
+    }
+
+    @Override
+    public int countCustomerRentals(String customerId) {
+        return sum(shard -> shard.countCustomerRentals(customerId));
+    }
+
+    @Override
+    public int getRentalHistorySize() {
+        return sum(RentalManager::getRentalHistorySize);
+    }
+
+    // --- Helpers ---
+
+    // Asks every shard at once and joins their answers in shard order.
+    private <T> List<T> gather(Function<RentalManager, List<T>> perShard) {
+        if (shards.length == 1) {
+            return perShard.apply(shards[0]);
+        }
+        List<?>[] answers = Arrays.stream(shards).parallel().map(perShard).toArray(List<?>[]::new);
+        int size = 0;
+        for (List<?> answer : answers) {
+            size += answer.size();
+        }
+        List<T> joined = new ArrayList<>(size);
+        for (List<?> answer : answers) {
+            @SuppressWarnings("unchecked")
+            List<T> part = (List<T>) answer;
+            joined.addAll(part);
+        }
+        return joined;
+    }
+
+    private int sum(ToIntFunction<RentalManager> perShard) {
+        int total = 0;
+        for (RentalManager shard : shards) {
+            total += perShard.applyAsInt(shard);
+        }
+        return total;
+    }
+
+    // Runs through each shard's iterator in turn, only asking a shard for one when it gets there.
+    private class ShardByShard<T> implements Iterator<T> {
+        private final Function<RentalManager, Iterator<T>> perShard;
+        private Iterator<T> current = Collections.emptyIterator();
+        private int nextShard;
+
+        private ShardByShard(Function<RentalManager, Iterator<T>> perShard) {
+            this.perShard = perShard;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextShard < shards.length) {
+                current = perShard.apply(shards[nextShard++]);
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    // Merges iterators that each run most recent first into one that does too.
+    private static class NewestFirst implements Iterator<CompletedRental> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        private NewestFirst(List<Iterator<CompletedRental>> iterators) {
+            for (Iterator<CompletedRental> iterator : iterators) {
+                if (iterator.hasNext()) {
+                    heads.add(new Head(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public CompletedRental next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+            return head.rental;
+        }
+
+        private static class Head implements Comparable<Head> {
+            private final CompletedRental rental;
+            private final Iterator<CompletedRental> rest;
+
+            private Head(CompletedRental rental, Iterator<CompletedRental> rest) {
+                this.rental = rental;
+                this.rest = rest;
+            }
+
+            @Override
+            public int compareTo(Head other) {
+                return BY_RETURN_DATE.compare(other.rental, rental); // Latest return date first.
+            }
+        }
+    }
+}
@@ -0,0 +1,661 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// Reads and writes a compact binary snapshot of everything a RentalManager holds:
+// cars, customers, active rentals and the rental history.
+//
+// The file starts with a fixed header (magic number, format version) and a table of sections, each
+// with its ID, record count, offset and length. Cars and customers are stored sorted by the UTF-8
+// bytes of their IDs, each followed by an index section of fixed-width record offsets, so one can be
+// found by ID with a binary search straight over the mapped bytes. Loading therefore does very little
+// before the manager can serve:
+//   - the sections are mapped, and only the open rentals and reservations (with their cars and
+//     customers) are decoded up front, so no car is ever seen as free while it is really out;
+//   - from then on a car or customer looked up by ID is decoded on the spot (see Loading);
+//   - a background thread brings in the rest of the cars and customers in batches, then copies the
+//     history's column chunks into the HistoryArchive in bulk and rebuilds the analytics over them.
+// Until the background thread is done, whatever needs the whole fleet, all customers or the history
+// (listings, searches, counts, history lookups, checkpoints) waits for it; see RentalManager.awaitLoaded.
+// Brand and model names are stored once in a name table, and cars refer to them by number.
+// Readers skip sections they don't know, so sections can be added without breaking older readers.
+public class SnapshotFile {
+    private static final int MAGIC = 0x43525353; // "CRSS"
+    private static final short VERSION = 1;
+
+    // Section IDs.
+    private static final int NAMES = 1;
+    private static final int CARS = 2;
+    private static final int CAR_INDEX = 3;      // The offset of each car record within CARS, in ID order.
+    private static final int CUSTOMERS = 4;
+    private static final int CUSTOMER_INDEX = 5; // Likewise for CUSTOMERS.
+    private static final int ACTIVE_RENTALS = 6;
+    private static final int HISTORY = 7;
+    private static final int RESERVATIONS = 8;
+    private static final int SECTION_COUNT = 8;
+
+    private static final int SECTION_ENTRY_BYTES = 4 + 4 + 8 + 8; // ID, count, offset, length.
+    private static final int HEADER_BYTES = 4 + 2 + 2 + SECTION_COUNT * SECTION_ENTRY_BYTES;
+    private static final int HISTORY_CHUNK = 1 << 16; // History rows per column chunk.
+    private static final int HISTORY_ROW_BYTES = 5 * 4 + 8;
+    private static final int LOAD_BATCH = 4096; // Cars or customers the background thread brings in at a time.
+
+    // Writes the manager's state to the file. The snapshot is written to a temporary file first and
+    // then moved into place, so a crash half-way through never leaves a broken snapshot behind.
+    public static void write(RentalManager manager, Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+            out.write(new byte[HEADER_BYTES]); // Filled in once the sections are written.
+            SectionTable sections = new SectionTable(channel, out);
+
+            // Cars and customers are numbered by their position in the file; everything after refers to them that way.
+            List<Car> cars = manager.getAllCars();
+            List<Customer> customers = manager.getAllCustomers();
+            byte[][] carIds = sortById(cars, Car::getCarId);
+            byte[][] customerIds = sortById(customers, Customer::getCustomerId);
+            int[] carIndexByOrdinal = indexByOrdinal(cars, car -> manager.carOrdinalOf(car.getCarId()));
+            int[] customerIndexByOrdinal = indexByOrdinal(customers,
+                    customer -> manager.customerOrdinalOf(customer.getCustomerId()));
+
+            Map<String, Integer> nameCodes = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            for (Car car : cars) {
+                nameCodes.computeIfAbsent(car.getBrand(), name -> { names.add(name); return names.size() - 1; });
+                nameCodes.computeIfAbsent(car.getModel(), name -> { names.add(name); return names.size() - 1; });
+            }
+            sections.begin(NAMES);
+            for (String name : names) {
+                writeString(out, name);
+            }
+            sections.end(names.size());
+
+            int[] offsets = new int[cars.size()];
+            long offset = 0;
+            sections.begin(CARS);
+            for (int i = 0; i < cars.size(); i++) {
+                Car car = cars.get(i);
+                offsets[i] = recordOffset(offset);
+                writeBytes(out, carIds[i]);
+                out.writeInt(nameCodes.get(car.getBrand()));
+                out.writeInt(nameCodes.get(car.getModel()));
+                out.writeLong(car.getBasePricePaise());
+                out.writeByte(car.getType().ordinal());
+                offset += 2 + carIds[i].length + 4 + 4 + 8 + 1;
+            }
+            sections.end(cars.size());
+            writeIndex(sections, out, CAR_INDEX, offsets);
+
+            offsets = new int[customers.size()];
+            offset = 0;
+            sections.begin(CUSTOMERS);
+            for (int i = 0; i < customers.size(); i++) {
+                Customer customer = customers.get(i);
+                offsets[i] = recordOffset(offset);
+                writeBytes(out, customerIds[i]);
+                offset += 2 + customerIds[i].length;
+                offset += writeString(out, customer.getName());
+                offset += writeString(out, customer.getContactPhone());
+            }
+            sections.end(customers.size());
+            writeIndex(sections, out, CUSTOMER_INDEX, offsets);
+
+            sections.begin(ACTIVE_RENTALS);
+            int rentalCount = 0;
+            for (Rental rental : manager.getAllActiveRentals()) {
+                int car = indexOf(carIndexByOrdinal, manager.carOrdinalOf(rental.getCar().getCarId()));
+                int customer = indexOf(customerIndexByOrdinal, manager.customerOrdinalOf(rental.getCustomer().getCustomerId()));
+                if (car >= 0 && customer >= 0) {
+                    out.writeInt(car);
+                    out.writeInt(customer);
+                    out.writeInt(rental.getDays());
+                    out.writeInt((int) rental.getRentalDate().toEpochDay());
+                    out.writeLong(rental.getQuotedPricePaise());
+                    rentalCount++;
+                }
+            }
+            sections.end(rentalCount);
+
+            sections.begin(HISTORY);
+            int historySize = writeHistory(manager, out, carIndexByOrdinal, customerIndexByOrdinal);
+            sections.end(historySize);
+
+            sections.begin(RESERVATIONS);
+            int reservationCount = 0;
+            for (Reservation reservation : manager.getAllReservations()) {
+                int car = indexOf(carIndexByOrdinal, manager.carOrdinalOf(reservation.getCar().getCarId()));
+                int customer = indexOf(customerIndexByOrdinal, manager.customerOrdinalOf(reservation.getCustomer().getCustomerId()));
+                if (car >= 0 && customer >= 0) {
+                    writeString(out, reservation.getReservationId());
+                    out.writeInt(car);
+                    out.writeInt(customer);
+                    out.writeInt((int) reservation.getStartDate().toEpochDay());
+                    out.writeInt((int) reservation.getEndDate().toEpochDay());
+                    reservationCount++;
+                }
+            }
+            sections.end(reservationCount);
+
+            out.flush();
+            channel.write(sections.header(), 0);
+            channel.force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeIndex(SectionTable sections, DataOutputStream out, int id, int[] offsets) throws IOException {
+        sections.begin(id);
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        sections.end(offsets.length);
+    }
+
+    private static int recordOffset(long offset) throws IOException {
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("Too many records for one snapshot section");
+        }
+        return (int) offset;
+    }
+
+    // Sorts the items by the UTF-8 bytes of their IDs, the order the loader's binary search expects,
+    // and returns those bytes in the new order.
+    private static <T> byte[][] sortById(List<T> items, Function<T, String> idOf) {
+        List<Map.Entry<byte[], T>> keyed = new ArrayList<>(items.size());
+        for (T item : items) {
+            keyed.add(Map.entry(idOf.apply(item).getBytes(StandardCharsets.UTF_8), item));
+        }
+        keyed.sort(Comparator.comparing(Map.Entry::getKey, Arrays::compareUnsigned));
+        byte[][] ids = new byte[keyed.size()][];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = keyed.get(i).getKey();
+            items.set(i, keyed.get(i).getValue());
+        }
+        return ids;
+    }
+
+    // Writes the history as chunks of up to HISTORY_CHUNK rows, each chunk stored column by column.
+    // Returns the number of rows written.
+    private static int writeHistory(RentalManager manager, DataOutputStream out, int[] carIndexByOrdinal,
+                                    int[] customerIndexByOrdinal) throws IOException {
+        int[] cars = new int[HISTORY_CHUNK];
+        int[] customers = new int[HISTORY_CHUNK];
+        int[] rentalDays = new int[HISTORY_CHUNK];
+        int[] returnDays = new int[HISTORY_CHUNK];
+        int[] days = new int[HISTORY_CHUNK];
+        long[] prices = new long[HISTORY_CHUNK];
+        int written = 0;
+        int filled = 0;
+        int historySize = manager.getRentalHistorySize();
+        Iterator<CompletedRental> history = manager.rentalHistoryIterator();
+        for (int i = 0; i < historySize; i++) {
+            CompletedRental record = history.next();
+            int car = indexOf(carIndexByOrdinal, manager.carOrdinalOf(record.getCar().getCarId()));
+            int customer = indexOf(customerIndexByOrdinal, manager.customerOrdinalOf(record.getCustomer().getCustomerId()));
+            if (car < 0 || customer < 0) {
+                continue;
+            }
+            cars[filled] = car;
+            customers[filled] = customer;
+            rentalDays[filled] = (int) record.getRentalDate().toEpochDay();
+            returnDays[filled] = (int) record.getReturnDate().toEpochDay();
+            days[filled] = record.getDaysRented();
+            prices[filled] = record.getFinalPricePaise();
+            if (++filled == HISTORY_CHUNK) {
+                writeHistoryChunk(out, filled, cars, customers, rentalDays, returnDays, days, prices);
+                written += filled;
+                filled = 0;
+            }
+        }
+        if (filled > 0) {
+            writeHistoryChunk(out, filled, cars, customers, rentalDays, returnDays, days, prices);
+            written += filled;
+        }
+        return written;
+    }
+
+    private static void writeHistoryChunk(DataOutputStream out, int count, int[] cars, int[] customers, int[] rentalDays,
+                                          int[] returnDays, int[] days, long[] prices) throws IOException {
+        for (int[] column : new int[][] {cars, customers, rentalDays, returnDays, days}) {
+            for (int i = 0; i < count; i++) {
+                out.writeInt(column[i]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            out.writeLong(prices[i]);
+        }
+    }
+
+    // Opens a snapshot into an empty manager and returns as soon as the manager can serve: the open
+    // rentals and reservations are in, and everything else follows on a background thread.
+    public static Loading load(Path file, RentalManager manager) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        Loading loading;
+        try {
+            ByteBuffer start = ByteBuffer.allocate(8);
+            channel.read(start, 0);
+            start.flip();
+            if (start.remaining() < 8 || start.getInt() != MAGIC) {
+                throw new IOException("Not a rental snapshot: " + file);
+            }
+            short version = start.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            loading = new Loading(file, channel, manager, readSectionTable(channel, start.getShort(), file));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        manager.startLoading(loading);
+        try {
+            loading.restoreOpenRentals();
+        } catch (RuntimeException e) {
+            loading.fail(e);
+            throw new IOException("Corrupt snapshot " + file, e);
+        }
+        loading.start();
+        return loading;
+    }
+
+    // --- Sections ---
+
+    // Reads the section table into ID -> {count, offset, length}, checking every section we need is there.
+    private static Map<Integer, long[]> readSectionTable(FileChannel channel, int sectionCount, Path file) throws IOException {
+        ByteBuffer table = ByteBuffer.allocate(sectionCount * SECTION_ENTRY_BYTES);
+        channel.read(table, 8);
+        table.flip();
+        if (table.remaining() < sectionCount * SECTION_ENTRY_BYTES) {
+            throw new IOException("Truncated snapshot header in " + file);
+        }
+        Map<Integer, long[]> sections = new HashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            sections.put(table.getInt(), new long[] {table.getInt(), table.getLong(), table.getLong()});
+        }
+        for (int id = NAMES; id <= RESERVATIONS; id++) {
+            long[] section = sections.get(id);
+            if (section == null || section[0] < 0 || section[1] < 0 || section[2] < 0
+                    || section[1] + section[2] > channel.size()) {
+                throw new IOException("Missing or truncated section " + id + " in " + file);
+            }
+        }
+        for (int id : new int[] {CAR_INDEX, CUSTOMER_INDEX}) {
+            if (sections.get(id)[2] != 4 * sections.get(id)[0]
+                    || sections.get(id)[0] != sections.get(id == CAR_INDEX ? CARS : CUSTOMERS)[0]) {
+                throw new IOException("Index section " + id + " doesn't match its records in " + file);
+            }
+        }
+        return sections;
+    }
+
+    // A snapshot being loaded into a manager. Cars and customers are decoded from the mapped sections
+    // when the manager looks them up by ID, and a background thread brings in the rest.
+    public static final class Loading {
+        private final Path file;
+        private final FileChannel channel; // Kept open for the history chunks until the background thread is done.
+        private final RentalManager manager;
+        private final Map<Integer, long[]> sections;
+        private final String[] names;
+        private final ByteBuffer cars;
+        private final IntBuffer carIndex;
+        private final ByteBuffer customers;
+        private final IntBuffer customerIndex;
+        private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+        private Loading(Path file, FileChannel channel, RentalManager manager, Map<Integer, long[]> sections) throws IOException {
+            this.file = file;
+            this.channel = channel;
+            this.manager = manager;
+            this.sections = sections;
+            ByteBuffer in = map(channel, sections.get(NAMES));
+            this.names = new String[count(sections.get(NAMES))];
+            byte[] scratch = new byte[1 << 16];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(in, scratch);
+            }
+            this.cars = map(channel, sections.get(CARS));
+            this.carIndex = map(channel, sections.get(CAR_INDEX)).asIntBuffer();
+            this.customers = map(channel, sections.get(CUSTOMERS));
+            this.customerIndex = map(channel, sections.get(CUSTOMER_INDEX)).asIntBuffer();
+        }
+
+        // The car with this ID as stored in the snapshot, or null if it has none. Not added to the manager.
+        public Car car(String carId) {
+            int position = find(cars, carIndex, carId);
+            return position < 0 ? null : carAt(position);
+        }
+
+        // The customer with this ID as stored in the snapshot, or null. Not added to the manager.
+        public Customer customer(String customerId) {
+            int position = find(customers, customerIndex, customerId);
+            return position < 0 ? null : customerAt(position);
+        }
+
+        // Completes once every car, customer and past rental is in the manager (the analytics may still
+        // be catching up), or completes exceptionally if loading failed.
+        public CompletableFuture<Void> whenLoaded() {
+            return loaded;
+        }
+
+        public int getCarCount() {
+            return carIndex.limit();
+        }
+
+        public int getCustomerCount() {
+            return customerIndex.limit();
+        }
+
+        public int getHistorySize() {
+            return count(sections.get(HISTORY));
+        }
+
+        // Restores the open rentals and reservations, with just the cars and customers they involve.
+        private void restoreOpenRentals() {
+            ByteBuffer rentals = mapSection(ACTIVE_RENTALS);
+            ByteBuffer reservations = mapSection(RESERVATIONS);
+            BitSet carsNeeded = new BitSet();
+            BitSet customersNeeded = new BitSet();
+            for (int i = 0, count = count(sections.get(ACTIVE_RENTALS)); i < count; i++) {
+                carsNeeded.set(rentals.getInt(i * 24));
+                customersNeeded.set(rentals.getInt(i * 24 + 4));
+            }
+            byte[] scratch = new byte[1 << 16];
+            for (int i = 0, count = count(sections.get(RESERVATIONS)); i < count; i++) {
+                readString(reservations, scratch);
+                carsNeeded.set(reservations.getInt());
+                customersNeeded.set(reservations.getInt());
+                reservations.position(reservations.position() + 8);
+            }
+            Map<Integer, Car> carsByPosition = new HashMap<>();
+            for (int position = carsNeeded.nextSetBit(0); position >= 0; position = carsNeeded.nextSetBit(position + 1)) {
+                carsByPosition.put(position, carAt(position));
+            }
+            Map<Integer, Customer> customersByPosition = new HashMap<>();
+            for (int position = customersNeeded.nextSetBit(0); position >= 0; position = customersNeeded.nextSetBit(position + 1)) {
+                customersByPosition.put(position, customerAt(position));
+            }
+            manager.restoreCars(new ArrayList<>(carsByPosition.values()));
+            manager.restoreCustomers(new ArrayList<>(customersByPosition.values()));
+
+            for (int i = 0, count = count(sections.get(ACTIVE_RENTALS)); i < count; i++) {
+                Car car = carsByPosition.get(rentals.getInt());
+                Customer customer = customersByPosition.get(rentals.getInt());
+                int days = rentals.getInt();
+                LocalDate rentalDate = LocalDate.ofEpochDay(rentals.getInt());
+                manager.startRental(new Rental(car, customer, days, rentalDate, rentals.getLong()));
+            }
+            reservations.rewind();
+            for (int i = 0, count = count(sections.get(RESERVATIONS)); i < count; i++) {
+                String reservationId = readString(reservations, scratch);
+                Car car = carsByPosition.get(reservations.getInt());
+                Customer customer = customersByPosition.get(reservations.getInt());
+                LocalDate start = LocalDate.ofEpochDay(reservations.getInt());
+                LocalDate end = LocalDate.ofEpochDay(reservations.getInt());
+                manager.placeReservation(new Reservation(reservationId, car, customer, start, end));
+            }
+        }
+
+        // Brings in everything else on a background thread.
+        private void start() {
+            Thread thread = new Thread(this::loadRest, "snapshot-loader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void loadRest() {
+            try {
+                int[] carOrdinals = new int[getCarCount()];
+                List<Car> carBatch = new ArrayList<>(LOAD_BATCH);
+                for (int first = 0; first < carOrdinals.length; first += LOAD_BATCH) {
+                    carBatch.clear();
+                    for (int i = first; i < Math.min(first + LOAD_BATCH, carOrdinals.length); i++) {
+                        carBatch.add(carAt(i));
+                    }
+                    manager.restoreCars(carBatch);
+                    for (int i = 0; i < carBatch.size(); i++) {
+                        carOrdinals[first + i] = manager.carOrdinalOf(carBatch.get(i).getCarId());
+                    }
+                }
+                int[] customerOrdinals = new int[getCustomerCount()];
+                List<Customer> customerBatch = new ArrayList<>(LOAD_BATCH);
+                for (int first = 0; first < customerOrdinals.length; first += LOAD_BATCH) {
+                    customerBatch.clear();
+                    for (int i = first; i < Math.min(first + LOAD_BATCH, customerOrdinals.length); i++) {
+                        customerBatch.add(customerAt(i));
+                    }
+                    manager.restoreCustomers(customerBatch);
+                    for (int i = 0; i < customerBatch.size(); i++) {
+                        customerOrdinals[first + i] = manager.customerOrdinalOf(customerBatch.get(i).getCustomerId());
+                    }
+                }
+                loadHistory(channel, sections.get(HISTORY), manager, carOrdinals, customerOrdinals);
+                channel.close();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+                return;
+            }
+            manager.finishLoading();
+            loaded.complete(null);
+
+            // The analytics over the restored history catch up last; the manager serves meanwhile.
+            if (getHistorySize() > 0) {
+                try {
+                    manager.rebuildAnalytics();
+                } catch (RuntimeException e) {
+                    System.out.println("Error: Rebuilding the analytics from " + file + " failed: " + e.getMessage());
+                }
+            }
+        }
+
+        private void fail(Exception e) {
+            System.out.println("Error: Loading the snapshot " + file + " failed: " + e.getMessage());
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing more to do; the failure is reported above.
+            }
+            manager.finishLoading();
+            loaded.completeExceptionally(e);
+        }
+
+        private Car carAt(int position) {
+            int offset = carIndex.get(position);
+            String carId = stringAt(cars, offset);
+            offset += 2 + Short.toUnsignedInt(cars.getShort(offset));
+            String brand = names[cars.getInt(offset)];
+            String model = names[cars.getInt(offset + 4)];
+            long basePricePaise = cars.getLong(offset + 8);
+            return new Car(carId, brand, model, basePricePaise / 100.0, Car.CarType.values()[cars.get(offset + 16)]);
+        }
+
+        private Customer customerAt(int position) {
+            int offset = customerIndex.get(position);
+            String customerId = stringAt(customers, offset);
+            offset += 2 + Short.toUnsignedInt(customers.getShort(offset));
+            String name = stringAt(customers, offset);
+            offset += 2 + Short.toUnsignedInt(customers.getShort(offset));
+            return new Customer(customerId, name, stringAt(customers, offset));
+        }
+
+        private ByteBuffer mapSection(int section) {
+            try {
+                return SnapshotFile.map(channel, sections.get(section));
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't map section " + section + " of " + file, e);
+            }
+        }
+    }
+
+    // Binary-searches a sorted record section for the ID; returns the record's position or -1.
+    private static int find(ByteBuffer records, IntBuffer index, String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = index.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int byId = compareId(records, index.get(middle), key);
+            if (byId < 0) {
+                low = middle + 1;
+            } else if (byId > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // Compares the ID stored at the offset with the key, byte by byte as unsigned values.
+    private static int compareId(ByteBuffer records, int offset, byte[] key) {
+        int length = Short.toUnsignedInt(records.getShort(offset));
+        for (int i = 0, common = Math.min(length, key.length); i < common; i++) {
+            int byByte = Byte.compareUnsigned(records.get(offset + 2 + i), key[i]);
+            if (byByte != 0) {
+                return byByte;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    // Maps the history one chunk at a time, copies each column out in bulk and hands the chunk to
+    // the manager with file positions turned into the manager's ordinals.
+    private static void loadHistory(FileChannel channel, long[] section, RentalManager manager, int[] carOrdinals,
+                                    int[] customerOrdinals) throws IOException {
+        int[] cars = new int[HISTORY_CHUNK];
+        int[] customers = new int[HISTORY_CHUNK];
+        int[] rentalDays = new int[HISTORY_CHUNK];
+        int[] returnDays = new int[HISTORY_CHUNK];
+        int[] days = new int[HISTORY_CHUNK];
+        long[] prices = new long[HISTORY_CHUNK];
+        int remaining = count(section);
+        long position = section[1];
+        while (remaining > 0) {
+            int count = Math.min(remaining, HISTORY_CHUNK);
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * HISTORY_ROW_BYTES);
+            chunk.asIntBuffer().get(cars, 0, count)
+                    .get(customers, 0, count)
+                    .get(rentalDays, 0, count)
+                    .get(returnDays, 0, count)
+                    .get(days, 0, count);
+            chunk.position(5 * 4 * count);
+            chunk.asLongBuffer().get(prices, 0, count);
+            for (int i = 0; i < count; i++) {
+                cars[i] = carOrdinals[cars[i]];
+                customers[i] = customerOrdinals[customers[i]];
+            }
+            manager.restoreCompletedRentals(count, cars, customers, rentalDays, returnDays, days, prices);
+            remaining -= count;
+            position += (long) count * HISTORY_ROW_BYTES;
+        }
+    }
+
+    // Notes where each section starts and ends while the file is written, and builds the header from that.
+    private static class SectionTable {
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        private long start;
+
+        private SectionTable(FileChannel channel, DataOutputStream out) {
+            this.channel = channel;
+            this.out = out;
+            header.putInt(MAGIC).putShort(VERSION).putShort((short) SECTION_COUNT);
+        }
+
+        private void begin(int id) throws IOException {
+            out.flush();
+            start = channel.position();
+            header.putInt(id);
+        }
+
+        private void end(int count) throws IOException {
+            out.flush();
+            header.putInt(count).putLong(start).putLong(channel.position() - start);
+        }
+
+        private ByteBuffer header() {
+            return header.flip();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long[] section) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, section[1], section[2]);
+    }
+
+    private static int count(long[] section) {
+        return (int) section[0];
+    }
+
+    // Strings are a two-byte length followed by that many bytes of UTF-8. Returns the bytes written.
+    private static int writeString(DataOutputStream out, String value) throws IOException {
+        return writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long for a snapshot: "
+                    + new String(bytes, 0, 32, StandardCharsets.UTF_8) + "...");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+        return 2 + bytes.length;
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int length = Short.toUnsignedInt(in.getShort());
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Reads the string at an absolute offset without moving the buffer, so threads can share it.
+    private static String stringAt(ByteBuffer in, int offset) {
+        byte[] bytes = new byte[Short.toUnsignedInt(in.getShort(offset))];
+        in.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // For each ordinal, the position in the list of the item with that ordinal, or -1.
+    private static <T> int[] indexByOrdinal(List<T> items, ToIntFunction<T> ordinalOf) {
+        int[] index = new int[0];
+        for (int i = 0; i < items.size(); i++) {
+            int ordinal = ordinalOf.applyAsInt(items.get(i));
+            if (ordinal < 0) {
+                continue;
+            }
+            if (ordinal >= index.length) {
+                int oldLength = index.length;
+                index = Arrays.copyOf(index, Math.max(ordinal + 1, oldLength * 2));
+                Arrays.fill(index, oldLength, index.length, -1);
+            }
+            index[ordinal] = i;
+        }
+        return index;
+    }
+
+    private static int indexOf(int[] indexByOrdinal, int ordinal) {
+        return ordinal >= 0 && ordinal < indexByOrdinal.length ? indexByOrdinal[ordinal] : -1;
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Customers waiting for a car of some type (and, optionally, a particular model) when none is free.
+//
+// There is one priority queue per car type and one per type and model. The best request comes
+// first: higher priority, then whoever asked earliest. When a car comes back, the heads of its type's
+// queue and its model's queue are compared and the better one is taken, so finding the next customer
+// is O(log n) however many are waiting. Each request is a CompletableFuture that completes with the
+// rental once a car is found, so waiting customers don't hold a thread.
+public class Waitlist {
+    private final Map<String, PriorityBlockingQueue<Request>> queues = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    // Queues a request. A null model means any car of the type will do.
+    public Request add(Customer customer, Car.CarType type, String model, int days, int priority) {
+        Request request = new Request(customer, type, model, days, priority, sequence.incrementAndGet());
+        offer(request);
+        return request;
+    }
+
+    // Takes the best request a returned car can serve and claims it, or returns null if nobody wants it.
+    // The caller must either fulfil the request or give it back with requeue().
+    public Request pollFor(Car car) {
+        PriorityBlockingQueue<Request> anyModel = queues.get(keyOf(car.getType(), null));
+        PriorityBlockingQueue<Request> thisModel = queues.get(keyOf(car.getType(), car.getModel()));
+        while (true) {
+            Request typeHead = anyModel == null ? null : anyModel.peek();
+            Request modelHead = thisModel == null ? null : thisModel.peek();
+            PriorityBlockingQueue<Request> best;
+            if (typeHead == null && modelHead == null) {
+                return null;
+            } else if (modelHead == null || (typeHead != null && typeHead.compareTo(modelHead) < 0)) {
+                best = anyModel;
+            } else {
+                best = thisModel;
+            }
+            Request request = best.poll();
+            if (request == null) {
+                continue;
+            }
+            waiting.decrementAndGet();
+            if (request.claim()) {
+                return request;
+            }
+            // Another return took it first, or it was cancelled; look again.
+        }
+    }
+
+    // Puts back a request that pollFor handed out but couldn't be served (e.g. the car is reserved for
+    // part of the stay). It keeps its place in the order.
+    public void requeue(Request request) {
+        request.release();
+        offer(request);
+    }
+
+    // Takes a request the caller claimed itself out of its queue.
+    void removeClaimed(Request request) {
+        if (queueOf(request).remove(request)) {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public boolean isEmpty() {
+        return waiting.get() == 0;
+    }
+
+    // How many requests are waiting.
+    public int size() {
+        return waiting.get();
+    }
+
+    private void offer(Request request) {
+        waiting.incrementAndGet();
+        queueOf(request).add(request);
+    }
+
+    private PriorityBlockingQueue<Request> queueOf(Request request) {
+        return queues.computeIfAbsent(keyOf(request.type, request.model), key -> new PriorityBlockingQueue<>());
+    }
+
+    private static String keyOf(Car.CarType type, String model) {
+        return model == null ? type.name() : type.name() + "/" + model.toLowerCase(Locale.ROOT);
+    }
+
+    // One customer's request. Completes with their rental once a car is found. Cancelling it takes
+    // it off the waitlist, unless a car is already being handed over.
+    public class Request extends CompletableFuture<Rental> implements Comparable<Request> {
+        private final Customer customer;
+        private final Car.CarType type;
+        private final String model;
+        private final int days;
+        private final int priority;
+        private final long sequence;
+        private final AtomicBoolean claimed = new AtomicBoolean(); // Set while a car is being handed over.
+
+        private Request(Customer customer, Car.CarType type, String model, int days, int priority, long sequence) {
+            this.customer = customer;
+            this.type = type;
+            this.model = model;
+            this.days = days;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public Car.CarType getType() {
+            return type;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getDays() {
+            return days;
+        }
+
+        // Whether the given car suits this request.
+        public boolean accepts(Car car) {
+            return car.getType() == type && (model == null || car.getModel().equalsIgnoreCase(model));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!claim()) {
+                return false;
+            }
+            removeClaimed(this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        // Higher priority first, then first come, first served.
+        @Override
+        public int compareTo(Request other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        boolean claim() {
+            return !isDone() && claimed.compareAndSet(false, true);
+        }
+
+        void release() {
+            claimed.set(false);
+        }
+
+        void fulfil(Rental rental) {
+            super.complete(rental);
+        }
+    }
+}
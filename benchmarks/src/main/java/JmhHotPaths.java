@@ -0,0 +1,51 @@
+import carrental.jmh.HotPaths;
+
+// The benchmarks' view of the application (see HotPaths for why this sits in the unnamed package).
+public class JmhHotPaths implements HotPaths {
+    private static final String[] QUERIES = {"suv", "maruti swift", "hyundai creta suv", "kia"};
+
+    private RentalManager manager;
+    private Car[] cars;
+    private Customer[] customers;
+
+    @Override
+    public void setUp(int fleetSize, int customerCount, int historySize, long seed) {
+        manager = new RentalManager();
+        FleetGenerator.populate(manager, fleetSize, customerCount, historySize, seed);
+        cars = manager.getAllCars().toArray(new Car[0]);
+        customers = manager.getAllCustomers().toArray(new Customer[0]);
+        for (int i = 0; i < cars.length; i += 3) {
+            manager.rentCar(cars[i], customers[i % customers.length], 5); // Leave about two thirds available.
+        }
+    }
+
+    @Override
+    public int rentAndReturn(int pick) {
+        Car car = cars[Math.floorMod(pick, cars.length)];
+        if (car.isAvailable() && manager.rentCar(car, customers[Math.floorMod(pick, customers.length)], 3)) {
+            manager.returnCar(car);
+            return 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public int searchAvailableCars(int pick) {
+        return manager.searchAvailableCars(QUERIES[Math.floorMod(pick, QUERIES.length)]).size();
+    }
+
+    @Override
+    public int getAllAvailableCars() {
+        return manager.getAllAvailableCars().size();
+    }
+
+    @Override
+    public int getCustomerRentalHistory(int pick) {
+        return manager.getCustomerRentalHistory(customers[Math.floorMod(pick, customers.length)].getCustomerId()).size();
+    }
+
+    @Override
+    public double calculatePrice(int pick) {
+        return cars[Math.floorMod(pick, cars.length)].calculatePrice(1 + Math.floorMod(pick, 30));
+    }
+}
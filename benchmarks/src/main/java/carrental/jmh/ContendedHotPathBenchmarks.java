@@ -0,0 +1,8 @@
+package carrental.jmh;
+
+import org.openjdk.jmh.annotations.Threads;
+
+// The same benchmarks with four threads sharing one manager, to show contention on the hot paths.
+@Threads(4)
+public class ContendedHotPathBenchmarks extends HotPathBenchmarks {
+}
@@ -0,0 +1,74 @@
+package carrental.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The RentalManager and Car hot paths on one thread, for each combination of the sizes below.
+// Run them all with "java -jar benchmarks/target/benchmarks.jar -rf json -rff results.json", or pick
+// sizes with e.g. "-p fleetSize=1000000 -p historySize=0". ContendedHotPathBenchmarks runs the same
+// benchmarks from several threads sharing one manager.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(1)
+public class HotPathBenchmarks {
+    @Param({"1000", "100000"})
+    public int fleetSize;
+
+    @Param({"10000"})
+    public int customerCount;
+
+    @Param({"100000"})
+    public int historySize;
+
+    private HotPaths hotPaths;
+
+    // A fresh manager per trial, so the history that rentAndReturn adds doesn't carry over.
+    @Setup(Level.Trial)
+    public void setUp() {
+        hotPaths = HotPaths.create();
+        hotPaths.setUp(fleetSize, customerCount, historySize, 21);
+    }
+
+    // Threads pick cars from the whole fleet, so with several threads they compete for the same cars.
+    @Benchmark
+    public int rentCarAndReturnCar() {
+        return hotPaths.rentAndReturn(ThreadLocalRandom.current().nextInt());
+    }
+
+    @Benchmark
+    public int searchAvailableCars() {
+        return hotPaths.searchAvailableCars(ThreadLocalRandom.current().nextInt());
+    }
+
+    @Benchmark
+    public int getAllAvailableCars() {
+        return hotPaths.getAllAvailableCars();
+    }
+
+    @Benchmark
+    public int getCustomerRentalHistory() {
+        return hotPaths.getCustomerRentalHistory(ThreadLocalRandom.current().nextInt());
+    }
+
+    @Benchmark
+    public double calculatePrice() {
+        return hotPaths.calculatePrice(ThreadLocalRandom.current().nextInt());
+    }
+}
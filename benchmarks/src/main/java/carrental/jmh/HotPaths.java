@@ -0,0 +1,32 @@
+package carrental.jmh;
+
+// The operations the benchmarks time, on a manager filled with synthetic data.
+//
+// JMH won't generate benchmarks for classes in the unnamed package, and a named package can't refer to
+// the application's classes, which all live in the unnamed package. So the benchmarks call through
+// this interface, and JmhHotPaths (in the unnamed package) implements it on a real RentalManager.
+// Every call site sees the one implementation, so the JIT inlines it and the indirection costs nothing.
+public interface HotPaths {
+    // Builds the manager: fleetSize cars, customerCount customers and historySize past rentals, with
+    // about a third of the fleet out on rent.
+    void setUp(int fleetSize, int customerCount, int historySize, long seed);
+
+    // Each operation picks its car, customer or query from "pick" (any int; it wraps around).
+    int rentAndReturn(int pick);
+
+    int searchAvailableCars(int pick);
+
+    int getAllAvailableCars();
+
+    int getCustomerRentalHistory(int pick);
+
+    double calculatePrice(int pick);
+
+    static HotPaths create() {
+        try {
+            return (HotPaths) Class.forName("JmhHotPaths").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JmhHotPaths is missing from the benchmark jar", e);
+        }
+    }
+}
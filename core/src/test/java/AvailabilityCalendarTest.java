@@ -0,0 +1,46 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+
+class AvailabilityCalendarTest {
+    private final Car car = new Car("C001", "Honda", "City", 2500, Car.CarType.SEDAN);
+
+    @Test
+    void tryBookRejectsEmptyRanges() {
+        AvailabilityCalendar calendar = new AvailabilityCalendar();
+        calendar.register(0, car);
+        assertFalse(calendar.tryBook(0, 10, 10, "empty"));
+        assertFalse(calendar.tryBook(0, 12, 10, "backwards"));
+        assertTrue(calendar.isFree(0, 0, 100));
+        assertTrue(calendar.tryBook(0, 10, 11, "one day"));
+        assertFalse(calendar.isFree(0, 10, 11));
+    }
+
+    @Test
+    void overdueTickForgetsPastDays() {
+        LocalDate today = LocalDate.of(2026, 3, 10);
+        OverdueTracker tracker = new OverdueTracker(Clock.fixed(today.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        RentalManager manager = new RentalManager(HistoryArchive.inMemory(), tracker);
+        manager.addCar(car);
+        Customer customer = new Customer("CUS001", "Asha", "9800000000");
+        manager.addCustomer(customer);
+        assertTrue(manager.startRental(new Rental(car, customer, 5, today.minusDays(3))));
+        assertTrue(manager.findAvailableCars(Car.CarType.SEDAN, today.minusDays(3), today.minusDays(2)).isEmpty());
+
+        tracker.tick();
+
+        // Past days are gone from the calendar, so ranges starting then are never free rather than
+        // wrongly free; the rest of the booking still counts, and the days after it are free.
+        assertTrue(manager.findAvailableCars(Car.CarType.SEDAN, today.minusDays(3), today.minusDays(2)).isEmpty());
+        assertFalse(manager.isCarFree(car, today.minusDays(3), today.minusDays(2)));
+        assertFalse(manager.isCarFree(car, today, today.plusDays(1)));
+        assertTrue(manager.findAvailableCars(Car.CarType.SEDAN, today, today.plusDays(1)).isEmpty());
+        assertEquals(1, manager.findAvailableCars(Car.CarType.SEDAN, today.plusDays(2), today.plusDays(3)).size());
+        assertTrue(manager.isCarFree(car, today.plusDays(2), today.plusDays(3)));
+    }
+}
@@ -0,0 +1,34 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BulkLoaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void rejectsPricesThatAreNotPositiveNumbers() throws IOException {
+        Path file = dir.resolve("cars.csv");
+        Files.writeString(file, "carId,brand,model,basePricePerDay,type\n"
+                + "C001,Honda,City,2500,SEDAN\n"
+                + "C002,Kia,Seltos,NaN,SUV\n"
+                + "C003,Kia,Sonet,Infinity,SUV\n"
+                + "C004,Tata,Nexon,-Infinity,SUV\n"
+                + "C005,Maruti,Swift,0,HATCHBACK\n");
+        RentalManager manager = new RentalManager();
+
+        BulkLoader.Result result = new BulkLoader(manager, 2).loadCars(file);
+
+        assertEquals(1, result.getRowsLoaded());
+        assertEquals(4, result.getRowsRejected());
+        assertNotNull(manager.findCarById("C001"));
+        assertNull(manager.findCarById("C002"));
+        assertNull(manager.findCarById("C003"));
+    }
+}
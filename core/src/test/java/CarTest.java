@@ -0,0 +1,34 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+// Brand and model names live in one table shared by every car in the process, whichever manager
+// (if any) the car belongs to.
+class CarTest {
+    @Test
+    void namesAreSharedAcrossManagers() {
+        RentalManager first = new RentalManager();
+        RentalManager second = new RentalManager();
+        Car city = new Car("C1", new String("Honda"), new String("City"), 2500, Car.CarType.SEDAN);
+        Car otherCity = new Car("C2", new String("Honda"), new String("City"), 2600, Car.CarType.SEDAN);
+        first.addCar(city);
+        second.addCar(otherCity);
+
+        // Each name is stored once, so both cars hand out the very same strings.
+        assertSame(city.getBrand(), otherCity.getBrand());
+        assertSame(city.getModel(), otherCity.getModel());
+        assertSame(city.getBrand(), second.findCarById("C2").getBrand());
+    }
+
+    @Test
+    void carOutsideAnyManagerKeepsItsNames() {
+        Car loose = new Car("X1", "Mahindra", "Thar", 4000, Car.CarType.SUV);
+        RentalManager manager = new RentalManager();
+        manager.addCar(new Car("C1", "Tata", "Nexon", 3000, Car.CarType.SUV));
+
+        assertEquals("Mahindra", loose.getBrand());
+        assertEquals("Thar", loose.getModel());
+        assertEquals("Nexon", manager.findCarById("C1").getModel());
+    }
+}
@@ -0,0 +1,51 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CustomerSearchIndexTest {
+    @Test
+    void matchesEveryWordByPrefix() {
+        RentalManager manager = new RentalManager();
+        manager.addCustomer(new Customer("CUS001", "Priya  Sharma", "+91 98765 43210"));
+        manager.addCustomer(new Customer("CUS002", "Priya Nair", "9123456789"));
+        manager.addCustomer(new Customer("CUS003", "Rahul Sharma", "9000000000"));
+
+        assertEquals(List.of("CUS001"), idsOf(manager.searchCustomers("pri sh", 10)));
+        assertEquals(List.of("CUS001"), idsOf(manager.searchCustomers("98765", 10)));
+        assertEquals(2, manager.searchCustomers("sharma", 10).size());
+        assertEquals(1, manager.searchCustomers("priya", 1).size());
+    }
+
+    @Test
+    void multiWordSearchFindsRareMatchesAmongCommonWords() {
+        RentalManager manager = new RentalManager();
+        List<Customer> batch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            batch.add(new Customer(String.format("CUS%05d", i), "Kumar Patel", "98" + String.format("%08d", i)));
+        }
+        for (int i = 0; i < 5000; i++) {
+            batch.add(new Customer(String.format("CUS1%05d", i), "Anil Iyer", "97" + String.format("%08d", i)));
+        }
+        batch.add(new Customer("CUS99999", "Kumar Iyer", "9600000000"));
+        batch.add(new Customer("CUS99998", "Kumar Shah", "9500000000"));
+        manager.addCustomers(batch);
+
+        // The walk follows the rarer word, so the one Shah is found without going past 5,000 Kumars.
+        assertEquals(List.of("CUS99998"), idsOf(manager.searchCustomers("kumar shah", 1)));
+        // Every word is common and the one match comes after 5,000 misses; it is still found.
+        assertEquals(List.of("CUS99999"), idsOf(manager.searchCustomers("kumar iyer", 1)));
+        assertEquals(List.of("CUS99999"), idsOf(manager.searchCustomers("kumar iyer 96", 1)));
+        assertTrue(manager.searchCustomers("kumar nair", 1).isEmpty());
+    }
+
+    private static List<String> idsOf(List<Customer> customers) {
+        List<String> ids = new ArrayList<>();
+        for (Customer customer : customers) {
+            ids.add(customer.getCustomerId());
+        }
+        return ids;
+    }
+}
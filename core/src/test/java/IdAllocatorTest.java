@@ -0,0 +1,40 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class IdAllocatorTest {
+    @Test
+    void handsOutIdsInOrderPastObservedOnes() {
+        IdAllocator ids = new IdAllocator("CUS");
+        assertEquals("CUS1", ids.next());
+        ids.observe("CUS7");
+        ids.observe("CAR99"); // Another prefix; ignored.
+        assertEquals("CUS8", ids.next());
+    }
+
+    @Test
+    void shortLivedThreadsDoNotWasteIds() throws InterruptedException {
+        IdAllocator ids = new IdAllocator("CUS");
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(ids::next);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("CUS9", ids.next());
+    }
+
+    @Test
+    void nodesUseTheirOwnNumbers() {
+        IdAllocator second = new IdAllocator("CUS", 1, 3);
+        assertEquals("CUS2", second.next());
+        assertEquals("CUS5", second.next());
+        second.observe("CUS10");
+        assertEquals("CUS11", second.next());
+    }
+}
@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// A rental has to be for at least one day; anything else is turned away cleanly at every way in.
+class RentalDaysTest {
+    private RentalManager manager;
+    private Car car;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        manager = new RentalManager();
+        car = new Car("C001", "Honda", "City", 2500, Car.CarType.SEDAN);
+        customer = new Customer("CUS001", "Asha", "9800000000");
+        manager.addCar(car);
+        manager.addCustomer(customer);
+    }
+
+    @Test
+    void rentCarRejectsNonPositiveDays() {
+        assertFalse(manager.rentCar(car, customer, 0));
+        assertFalse(manager.rentCar(car, customer, -3));
+        assertNull(manager.rent(car, customer, -1));
+        assertTrue(car.isAvailable());
+        assertEquals(0, manager.countRented());
+        assertTrue(manager.rentCar(car, customer, 1));
+    }
+
+    @Test
+    void startRentalRejectsNonPositiveDays() {
+        assertFalse(manager.startRental(new Rental(car, customer, 0, LocalDate.now())));
+        assertTrue(car.isAvailable());
+        assertEquals(0, manager.getOverdueTracker().countTracked());
+    }
+
+    @Test
+    void requestCarRejectsNonPositiveDays() {
+        assertThrows(IllegalArgumentException.class, () -> manager.requestCar(customer, Car.CarType.SEDAN, 0));
+        assertThrows(IllegalArgumentException.class, () -> manager.requestCar(customer, Car.CarType.SEDAN, -2));
+        assertTrue(car.isAvailable());
+        assertEquals(0, manager.getWaitlistSize());
+    }
+
+    @Test
+    void quoteRejectsNonPositiveDays() {
+        PricingEngine pricing = manager.getPricingEngine();
+        assertThrows(IllegalArgumentException.class, () -> pricing.quote(car, 0));
+        assertThrows(IllegalArgumentException.class, () -> pricing.quote(car, -5));
+        assertTrue(pricing.quote(car, 1) > 0);
+    }
+
+    @Test
+    void shardedRentCarRejectsNonPositiveDays() {
+        ShardedRentalManager sharded = new ShardedRentalManager(2);
+        Car other = new Car("C002", "Kia", "Seltos", 3000, Car.CarType.SUV);
+        sharded.addCar(other);
+        sharded.addCustomer(customer);
+        assertFalse(sharded.rentCar(other, customer, 0));
+        assertNull(sharded.rent(other, customer, -1));
+        assertTrue(other.isAvailable());
+    }
+}
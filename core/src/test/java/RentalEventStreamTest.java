@@ -0,0 +1,159 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+// Consumers see events in order; when one falls a whole ring behind, OVERWRITE_OLDEST skips it past
+// what it missed and DROP_NEWEST turns new events away until it catches up.
+class RentalEventStreamTest {
+    @Test
+    void deliversEventsInOrderInBatches() {
+        RentalEventStream stream = new RentalEventStream(8, RentalEventStream.Policy.OVERWRITE_OLDEST);
+        RentalEventStream.Consumer consumer = stream.subscribe(3);
+        publish(stream, 0, 5);
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(3, consumer.poll((events, count) -> copy(events, count, seen)));
+        assertEquals(2, consumer.poll((events, count) -> copy(events, count, seen)));
+        assertEquals(0, consumer.poll((events, count) -> copy(events, count, seen)));
+        assertEquals(List.of("#0 C0", "#1 C1", "#2 C2", "#3 C3", "#4 C4"), seen);
+        assertEquals(0, consumer.getLag());
+    }
+
+    @Test
+    void overwriteOldestSkipsALappedConsumerPastWhatItMissed() {
+        RentalEventStream stream = new RentalEventStream(4, RentalEventStream.Policy.OVERWRITE_OLDEST);
+        RentalEventStream.Consumer slow = stream.subscribe(16);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(stream.publish(RentalEventStream.Type.RENTED, "C" + i, "CUS" + i, 1, 0, 0));
+        }
+
+        // Only the last ring's worth is left; the six before it are counted as missed.
+        List<String> seen = new ArrayList<>();
+        assertEquals(4, slow.poll((events, count) -> copy(events, count, seen)));
+        assertEquals(List.of("#6 C6", "#7 C7", "#8 C8", "#9 C9"), seen);
+        assertEquals(6, slow.getMissed());
+        assertEquals(10, slow.getPosition());
+        assertEquals(0, stream.getDropped());
+
+        // Once caught up it reads on normally.
+        publish(stream, 10, 1);
+        seen.clear();
+        assertEquals(1, slow.poll((events, count) -> copy(events, count, seen)));
+        assertEquals(List.of("#10 C10"), seen);
+        assertEquals(6, slow.getMissed());
+    }
+
+    @Test
+    void dropNewestTurnsEventsAwayUntilTheSlowestConsumerCatchesUp() {
+        RentalEventStream stream = new RentalEventStream(4, RentalEventStream.Policy.DROP_NEWEST);
+        RentalEventStream.Consumer consumer = stream.subscribe(2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(stream.publish(RentalEventStream.Type.RENTED, "C" + i, null, 1, 0, 0));
+        }
+        assertFalse(stream.publish(RentalEventStream.Type.RENTED, "C4", null, 1, 0, 0));
+        assertFalse(stream.publish(RentalEventStream.Type.RENTED, "C5", null, 1, 0, 0));
+        assertEquals(2, stream.getDropped());
+        assertEquals(4, stream.getPublished());
+
+        // Reading two frees two slots; the old events were never overwritten.
+        List<String> seen = new ArrayList<>();
+        assertEquals(2, consumer.poll((events, count) -> copy(events, count, seen)));
+        assertTrue(stream.publish(RentalEventStream.Type.RENTED, "C6", null, 1, 0, 0));
+        assertTrue(stream.publish(RentalEventStream.Type.RENTED, "C7", null, 1, 0, 0));
+        assertFalse(stream.publish(RentalEventStream.Type.RENTED, "C8", null, 1, 0, 0));
+        while (consumer.poll((events, count) -> copy(events, count, seen)) > 0) {
+            // Drain.
+        }
+        assertEquals(List.of("#0 C0", "#1 C1", "#2 C2", "#3 C3", "#4 C6", "#5 C7"), seen);
+        assertEquals(0, consumer.getMissed());
+        assertEquals(3, stream.getDropped());
+    }
+
+    @Test
+    void dropNewestWithoutConsumersDropsNothing() {
+        RentalEventStream stream = new RentalEventStream(2, RentalEventStream.Policy.DROP_NEWEST);
+        publish(stream, 0, 10);
+        assertEquals(0, stream.getDropped());
+        assertEquals(10, stream.getPublished());
+    }
+
+    @Test
+    void concurrentProducersLoseNothingTheyWereNotToldAbout() throws InterruptedException {
+        RentalEventStream stream = new RentalEventStream(64, RentalEventStream.Policy.DROP_NEWEST);
+        RentalEventStream.Consumer consumer = stream.subscribe(32);
+        int producers = 4;
+        int perProducer = 20_000;
+        long[] accepted = new long[producers];
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (stream.publish(RentalEventStream.Type.RENTED, "P" + producer, null, i, 0, 0)) {
+                        accepted[producer]++;
+                    }
+                }
+            }));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        long[] next = {0};
+        int[] lastDays = new int[producers];
+        Arrays.fill(lastDays, -1);
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            RentalEventStream.BatchHandler check = (events, count) -> {
+                for (int i = 0; i < count; i++) {
+                    assertEquals(next[0]++, events[i].getSequence());
+                    int producer = events[i].getCarId().charAt(1) - '0';
+                    assertTrue(events[i].getDays() > lastDays[producer]); // Each producer's events stay in order.
+                    lastDays[producer] = events[i].getDays();
+                }
+            };
+            try {
+                while (!done.get() || consumer.getLag() > 0) {
+                    consumer.poll(check);
+                }
+            } catch (Throwable e) {
+                readerFailure.set(e);
+            }
+        });
+        reader.start();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        reader.join();
+        if (readerFailure.get() != null) {
+            throw new AssertionError("The consumer saw events out of order", readerFailure.get());
+        }
+
+        long total = 0;
+        for (long count : accepted) {
+            total += count;
+        }
+        assertEquals(total, next[0]);
+        assertEquals(total, stream.getPublished());
+        assertEquals((long) producers * perProducer, total + stream.getDropped());
+        assertEquals(0, consumer.getMissed());
+    }
+
+    private static void publish(RentalEventStream stream, int first, int count) {
+        for (int i = first; i < first + count; i++) {
+            assertTrue(stream.publish(RentalEventStream.Type.RENTED, "C" + i, "CUS" + i, 1, 0, 0));
+        }
+    }
+
+    private static void copy(RentalEventStream.Event[] events, int count, List<String> into) {
+        for (int i = 0; i < count; i++) {
+            into.add("#" + events[i].getSequence() + " " + events[i].getCarId());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Whatever was logged, through a snapshot and the journal after it, comes back on the next start.
+class RentalJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoversSnapshotAndJournal() throws IOException {
+        RentalManager manager = new RentalManager();
+        try (RentalJournal journal = RentalJournal.open(dir, RentalJournal.FsyncPolicy.EVERY_COMMIT, 10, manager)) {
+            assertTrue(journal.isEmpty());
+            Car city = new Car("C001", "Honda", "City", 2500, Car.CarType.SEDAN);
+            Car seltos = new Car("C002", "Kia", "Seltos", 3000, Car.CarType.SUV);
+            Customer asha = new Customer("CUS001", "Asha", "9800000000");
+            manager.addCar(city);
+            manager.addCar(seltos);
+            manager.addCustomer(asha);
+            assertTrue(manager.rentCar(city, asha, 3));
+            manager.checkpoint(); // Everything so far goes into the snapshot.
+            assertTrue(manager.returnCar(city));
+            assertTrue(manager.rentCar(seltos, asha, 2));
+            assertNotNull(manager.reserveCar(city, asha, LocalDate.now().plusDays(10), LocalDate.now().plusDays(12)));
+        }
+
+        RentalManager recovered = new RentalManager();
+        try (RentalJournal journal = RentalJournal.open(dir, RentalJournal.FsyncPolicy.EVERY_COMMIT, 10, recovered)) {
+            assertFalse(journal.isEmpty());
+            assertEquals(2, recovered.getAllCars().size());
+            assertEquals(1, recovered.countCustomers());
+            assertTrue(recovered.findCarById("C001").isAvailable());
+            Rental rental = recovered.findActiveRental("C002");
+            assertNotNull(rental);
+            assertEquals(manager.findActiveRental("C002").getQuotedPricePaise(), rental.getQuotedPricePaise());
+            assertEquals(1, recovered.getCustomerRentalHistory("CUS001").size());
+            assertEquals(1, recovered.getAllReservations().size());
+        }
+    }
+
+    @Test
+    void customerIsNotAddedWhenLoggingFails() throws IOException {
+        RentalManager manager = new RentalManager();
+        RentalJournal journal = RentalJournal.open(dir, RentalJournal.FsyncPolicy.EVERY_COMMIT, 10, manager);
+        journal.close(); // Still attached, so every change now fails to log.
+
+        assertThrows(IllegalStateException.class, () -> manager.registerNewCustomer("Asha", "9800000000"));
+        assertEquals(0, manager.countCustomers());
+        assertTrue(manager.searchCustomers("asha", 10).isEmpty());
+    }
+}
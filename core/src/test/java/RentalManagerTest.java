@@ -0,0 +1,39 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RentalManagerTest {
+    @Test
+    void rentalToUnregisteredCustomerIsTurnedAway() {
+        RentalManager manager = new RentalManager();
+        Car car = new Car("C1", "Honda", "City", 2500, Car.CarType.SEDAN);
+        manager.addCar(car);
+        Customer stranger = new Customer("X1", "Walk In", "9000000000");
+
+        assertFalse(manager.rentCar(car, stranger, 2));
+        assertTrue(car.isAvailable());
+        assertNull(manager.findActiveRental("C1"));
+        assertEquals(1, manager.getMetrics().failures(RentalMetrics.Failure.NOT_REGISTERED));
+
+        // Once registered, the same customer can rent and return the car as usual.
+        manager.addCustomer(stranger);
+        assertTrue(manager.rentCar(car, stranger, 2));
+        assertTrue(manager.returnCar(car));
+        assertTrue(car.isAvailable());
+        assertEquals(1, manager.getCustomerRentalHistory("X1").size());
+    }
+
+    @Test
+    void rentalOfUnregisteredCarIsTurnedAway() {
+        RentalManager manager = new RentalManager();
+        Customer customer = new Customer("CUS1", "Asha", "9800000000");
+        manager.addCustomer(customer);
+        Car stray = new Car("C9", "Kia", "Seltos", 3000, Car.CarType.SUV);
+
+        assertFalse(manager.rentCar(stray, customer, 1));
+        assertTrue(stray.isAvailable());
+    }
+}
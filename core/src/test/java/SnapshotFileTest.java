@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A snapshot serves cars and customers by ID as soon as it is opened, and whatever happens while the
+// rest is loading in the background survives the loading.
+class SnapshotFileTest {
+    private static final int FLEET = 5000;
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void writeSnapshot() throws IOException {
+        RentalManager manager = new RentalManager();
+        for (int i = 0; i < FLEET; i++) {
+            manager.addCar(new Car(String.format("C%04d", i), "Brand" + i % 7, "Model" + i % 11, 1000 + i, Car.CarType.SEDAN));
+            manager.addCustomer(new Customer(String.format("CUS%04d", i), "Customer " + i, "98" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(manager.rentCar(manager.findCarById(String.format("C%04d", i)),
+                    manager.findCustomerById(String.format("CUS%04d", i)), 2));
+        }
+        assertTrue(manager.returnCar(manager.findCarById("C0000")));
+        assertTrue(manager.rentCar(manager.findCarById("C0000"), manager.findCustomerById("CUS0000"), 1));
+        file = dir.resolve("snapshot.bin");
+        SnapshotFile.write(manager, file);
+    }
+
+    @Test
+    void findsCarsAndCustomersByIdInTheMappedFile() throws IOException {
+        RentalManager manager = new RentalManager();
+        SnapshotFile.Loading loading = SnapshotFile.load(file, manager);
+        assertEquals(FLEET, loading.getCarCount());
+        assertEquals(FLEET, loading.getCustomerCount());
+        assertEquals(1, loading.getHistorySize());
+        for (int i = 0; i < FLEET; i += 97) {
+            Car car = loading.car(String.format("C%04d", i));
+            assertEquals("Brand" + i % 7, car.getBrand());
+            assertEquals("Model" + i % 11, car.getModel());
+            assertEquals((1000 + i) * 100L, car.getBasePricePaise());
+            assertEquals("Customer " + i, loading.customer(String.format("CUS%04d", i)).getName());
+        }
+        assertNull(loading.car("C9999"));
+        assertNull(loading.car(""));
+        assertNull(loading.customer("CUS00000"));
+        manager.awaitLoaded();
+    }
+
+    @Test
+    void openRentalsAreInBeforeTheRestLoads() throws IOException {
+        RentalManager manager = new RentalManager();
+        SnapshotFile.load(file, manager);
+        assertEquals(10, manager.countRented());
+        Car rented = manager.findCarById("C0003");
+        assertFalse(rented.isAvailable());
+        assertSame(rented, manager.findActiveRental("C0003").getCar());
+        assertTrue(manager.findCarById("C4999").isAvailable());
+        manager.awaitLoaded();
+        assertEquals(FLEET, manager.getAllCars().size());
+        assertEquals(FLEET, manager.countCustomers());
+        assertEquals(FLEET - 10, manager.countAvailable());
+        assertSame(rented, manager.findCarById("C0003"));
+    }
+
+    @Test
+    void changesMadeWhileLoadingAreKept() throws IOException {
+        RentalManager manager = new RentalManager();
+        SnapshotFile.load(file, manager);
+        manager.addCar(new Car("C4000", "Tata", "Nexon", 4000, Car.CarType.SUV));
+        manager.addCustomer(new Customer("CUS4000", "Meera", "9700000000"));
+        assertTrue(manager.returnCar(manager.findCarById("C0000")));
+        manager.awaitLoaded();
+
+        assertEquals("Nexon", manager.findCarById("C4000").getModel());
+        assertEquals("Meera", manager.findCustomerById("CUS4000").getName());
+        assertEquals(FLEET, manager.getAllCars().size());
+        List<CompletedRental> history = manager.getCustomerRentalHistory("CUS0000");
+        assertEquals(2, history.size());
+        assertEquals(2, manager.getRentalHistorySize());
+        assertEquals(1, history.get(1).getDaysRented()); // The return made while loading comes after the snapshot's.
+    }
+
+    @Test
+    void loadedSnapshotWritesTheSameState() throws IOException {
+        RentalManager manager = new RentalManager();
+        SnapshotFile.load(file, manager);
+        Path copy = dir.resolve("copy.bin");
+        SnapshotFile.write(manager, copy);
+
+        RentalManager reloaded = new RentalManager();
+        SnapshotFile.load(copy, reloaded);
+        reloaded.awaitLoaded();
+        assertEquals(FLEET, reloaded.getAllCars().size());
+        assertEquals(10, reloaded.countRented());
+        assertNotNull(reloaded.findActiveRental("C0009"));
+        assertEquals(1, reloaded.getCustomerRentalHistory("CUS0000").size());
+    }
+}
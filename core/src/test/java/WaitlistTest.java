@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Returned cars go to waiting customers in order, skipping those the car can't serve without
+// starving anyone, and cancelled requests never get a car.
+class WaitlistTest {
+    private RentalManager manager;
+    private Car first;
+    private Car second;
+    private Customer holder;
+
+    @BeforeEach
+    void rentOutBothSuvs() {
+        manager = new RentalManager();
+        first = new Car("C1", "Kia", "Seltos", 3000, Car.CarType.SUV);
+        second = new Car("C2", "Kia", "Seltos", 3000, Car.CarType.SUV);
+        holder = customer("CUS0", "Holder");
+        manager.addCar(first);
+        manager.addCar(second);
+        assertTrue(manager.rentCar(first, holder, 1));
+        assertTrue(manager.rentCar(second, holder, 1));
+    }
+
+    @Test
+    void returnedCarSkipsRequestsItCannotServe() {
+        LocalDate today = LocalDate.now();
+        assertNotNull(manager.reserveCar(first, holder, today.plusDays(2), today.plusDays(4)));
+        CompletableFuture<Rental> longStay = manager.requestCar(customer("CUS1", "Long"), Car.CarType.SUV, null, 5, 1);
+        CompletableFuture<Rental> shortStay = manager.requestCar(customer("CUS2", "Short"), Car.CarType.SUV, null, 1, 0);
+        CompletableFuture<Rental> later = manager.requestCar(customer("CUS3", "Later"), Car.CarType.SUV, null, 1, 0);
+
+        // The first car is reserved during the long stay, so it goes to the next request instead.
+        assertTrue(manager.returnCar(first));
+        assertFalse(longStay.isDone());
+        assertSame(first, shortStay.join().getCar());
+        assertEquals(2, manager.getWaitlistSize());
+
+        // The skipped request kept its place ahead of the one that came after it.
+        assertTrue(manager.returnCar(second));
+        assertSame(second, longStay.join().getCar());
+        assertFalse(later.isDone());
+        assertEquals(1, manager.getWaitlistSize());
+    }
+
+    @Test
+    void cancelledRequestIsPassedOver() {
+        CompletableFuture<Rental> cancelled = manager.requestCar(customer("CUS1", "Gone"), Car.CarType.SUV, null, 2, 5);
+        CompletableFuture<Rental> waiting = manager.requestCar(customer("CUS2", "Still here"), Car.CarType.SUV, null, 2, 0);
+        assertTrue(cancelled.cancel(false));
+        assertEquals(1, manager.getWaitlistSize());
+
+        assertTrue(manager.returnCar(first));
+        assertTrue(cancelled.isCancelled());
+        assertSame(first, waiting.join().getCar());
+        assertEquals(0, manager.getWaitlistSize());
+
+        // Once a car has been handed over, the request can no longer be cancelled.
+        assertFalse(waiting.cancel(false));
+        assertSame(waiting.join(), manager.findActiveRental("C1"));
+    }
+
+    private Customer customer(String id, String name) {
+        Customer customer = new Customer(id, name, "9800000000");
+        manager.addCustomer(customer);
+        return customer;
+    }
+}